@@ -0,0 +1,98 @@
+package tickettoride;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.LongestRouteCalculator;
+import tickettoride.players.RandomAI;
+
+/**
+ * Benchmarks for {@link LongestRouteCalculator} on the default (full USA) map, with a player that has
+ * claimed {@link #trains} trains worth of random connections (45 is a full set of trains).
+ * </br></br>
+ * Run with <pre>mvn -P benchmarks test-compile exec:exec -Djmh.args=LongestRoute</pre>
+ * @author nate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongestRouteBenchmark {
+
+	private static final long SEED = 20191026L;
+	private static final int NUM_MASKS = 64;
+
+	@Param({"15", "30", "45"})
+	public int trains;
+
+	private LongestRouteCalculator calculator;
+	/** Different sets of claimed connections, so that the uncached benchmark doesn't just measure one lucky set */
+	private long[][] masks;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		GameState gameState = new GameState(List.of(new RandomAI(), new RandomAI()),
+				GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json")), SEED);
+		IndexedMapData map = gameState.getIndexedMap();
+		calculator = new LongestRouteCalculator(map);
+
+		SplittableRandom random = new SplittableRandom(SEED);
+		masks = new long[NUM_MASKS][(map.getNumConnections() + 63) / 64];
+		for(long[] mask : masks) {
+			int trainsUsed = 0;
+			for(int attempt = 0; attempt < 1000 && trainsUsed < trains; attempt++) {
+				int conn = random.nextInt(map.getNumConnections());
+				int length = map.getConnectionLength(conn);
+				if((mask[conn / 64] & 1L << conn) == 0 && trainsUsed + length <= trains) {
+					mask[conn / 64] |= 1L << conn;
+					trainsUsed += length;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searches every component from scratch
+	 */
+	@Benchmark
+	public int uncached() {
+		calculator.clearCache();
+		return calculator.getLongestRoute(nextMask());
+	}
+
+	/**
+	 * Every component is already in the cache (which is what AIs mostly see, since each move only changes
+	 * one component)
+	 */
+	@Benchmark
+	public int cached() {
+		return calculator.getLongestRoute(nextMask());
+	}
+
+	private long[] nextMask() {
+		next = (next + 1) % NUM_MASKS;
+		return masks[next];
+	}
+}
@@ -0,0 +1,257 @@
+package tickettoride;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tickettoride.Mover.DestinationCardSelectionMove;
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+/**
+ * Benchmarks for the move checks and moves in {@link GameMover} on the default (full USA) map. Each
+ * benchmark is run against a game that has been set up to look like the early, middle or end of a game
+ * (see {@link Stage}). The setup is seeded, so every run measures exactly the same positions.
+ * </br></br>
+ * The check benchmarks sweep over every connection / card / subset so that a single number covers all of
+ * the cases an AI would try in a turn. The move benchmarks undo their move afterwards so that the game
+ * stays in the same stage for the whole run; the undo is included in the time.
+ * </br></br>
+ * Run with <pre>mvn -P benchmarks test-compile exec:exec</pre>
+ * @author nate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoverBenchmark {
+
+	private static final long SEED = 20191026L;
+	private static final int DECK_INDEX = GameState.NUM_FACE_UP_CARDS;
+
+	/**
+	 * How far into the game the benchmarks are run. Each player has claimed random connections using up
+	 * {@link #trainsUsed} trains and has drawn {@link #extraCards} cards on top of their initial hand.
+	 */
+	public enum Stage {
+		EARLY(0, 0),
+		MID(12, 8),
+		END(21, 16);
+
+		private final int trainsUsed;
+		private final int extraCards;
+
+		private Stage(int trainsUsed, int extraCards) {
+			this.trainsUsed = trainsUsed;
+			this.extraCards = extraCards;
+		}
+	}
+
+	@Param({"EARLY", "MID", "END"})
+	public Stage stage;
+
+	private GameState gameState;
+	private IndexedMapData map;
+	private Player player;
+	private int playerIndex;
+
+	/** Mover used by the check benchmarks (which never make a move with it) */
+	private GameMover checkMover;
+	/** Every connection on the map */
+	private Connection[] connections;
+	/**
+	 * The cards that an AI would most likely try for each connection: the connection's color, or for grey
+	 * connections the color the player has the most of. The player won't always have enough of them.
+	 */
+	private List<List<CardColor>> cardsForConnection;
+	/** Connections that the player could build if they had the cards */
+	private int[] buildableConnections;
+	private int nextBuild = 0;
+
+	/** Reused by {@link #generateLegalMoves()} */
+	private final MoveList moveList = new MoveList();
+
+	private DestinationCardSelectionMove selectionMove;
+	/** Every non empty subset of the destination card options */
+	private List<Set<DestinationCard>> selections;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		List<Player> players = List.of(new RandomAI(), new RandomAI());
+		gameState = new GameState(players, definition, SEED);
+		map = gameState.getIndexedMap();
+		player = players.get(0);
+		playerIndex = 0;
+
+		SplittableRandom random = new SplittableRandom(SEED);
+		for(int p = 0; p < players.size(); p++) {
+			int trainsUsed = 0;
+			for(int attempt = 0; attempt < 1000 && trainsUsed < stage.trainsUsed; attempt++) {
+				int conn = random.nextInt(map.getNumConnections());
+				int length = map.getConnectionLength(conn);
+				if(map.getOwner(conn) == null && trainsUsed + length <= stage.trainsUsed) {
+					map.claim(conn, players.get(p));
+					gameState.useTrains(p, length);
+					trainsUsed += length;
+				}
+			}
+		}
+		for(int i = 0; i < stage.extraCards; i++) {
+			gameState.addTransportationCardToPlayersHand(playerIndex, gameState.drawTransportationCard(DECK_INDEX));
+		}
+
+		checkMover = new GameMover(gameState, player, false);
+		connections = new Connection[map.getNumConnections()];
+		cardsForConnection = new ArrayList<>();
+		List<Integer> buildable = new ArrayList<>();
+		for(int i = 0; i < connections.length; i++) {
+			connections[i] = map.getConnection(i);
+			CardColor color = map.getConnectionColor(i);
+			if(color == CardColor.ANY) {
+				color = mostCommonColor();
+			}
+			List<CardColor> cards = Collections.nCopies(map.getConnectionLength(i), color);
+			cardsForConnection.add(cards);
+
+			//See whether the connection could be built if the player had the cards
+			for(CardColor card : cards) {
+				gameState.addTransportationCardToPlayersHand(playerIndex, card);
+			}
+			if(checkMover.canBuildConnection(connections[i], cards)) {
+				buildable.add(i);
+			}
+			gameState.removeTransportationCardsFromPlayersHand(playerIndex, color, cards.size());
+		}
+		buildableConnections = buildable.stream().mapToInt(Integer::intValue).toArray();
+
+		selectionMove = new GameMover(gameState, player, false).getDestinationCardsSelectionMove();
+		List<DestinationCard> options = new ArrayList<>(selectionMove.getDestinationCardOptions());
+		selections = new ArrayList<>();
+		for(int mask = 1; mask < 1 << options.size(); mask++) {
+			Set<DestinationCard> selection = new HashSet<>();
+			for(int i = 0; i < options.size(); i++) {
+				if((mask & 1 << i) != 0) {
+					selection.add(options.get(i));
+				}
+			}
+			selections.add(selection);
+		}
+	}
+
+	private CardColor mostCommonColor() {
+		CardColor best = CardColor.RED;
+		for(CardColor color : CardColor.values()) {
+			if(color != CardColor.ANY &&
+					gameState.getNumTransportationCards(playerIndex, color) > gameState.getNumTransportationCards(playerIndex, best)) {
+				best = color;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Checks every connection on the map with the cards an AI would most likely try
+	 */
+	@Benchmark
+	public void canBuildConnection(Blackhole blackhole) {
+		for(int i = 0; i < connections.length; i++) {
+			blackhole.consume(checkMover.canBuildConnection(connections[i], cardsForConnection.get(i)));
+		}
+	}
+
+	/**
+	 * Builds the next buildable connection (giving the player the cards first), then undoes the build
+	 */
+	@Benchmark
+	public void buildConnection() {
+		if(buildableConnections.length == 0) {
+			return;
+		}
+		int conn = buildableConnections[nextBuild];
+		nextBuild = (nextBuild + 1) % buildableConnections.length;
+		List<CardColor> cards = cardsForConnection.get(conn);
+		for(CardColor card : cards) {
+			gameState.addTransportationCardToPlayersHand(playerIndex, card);
+		}
+
+		new GameMover(gameState, player, false).buildConnection(connections[conn], cards);
+
+		map.claim(conn, null);
+		gameState.useTrains(playerIndex, -cards.size());
+	}
+
+	/**
+	 * Checks each of the face up cards and the deck
+	 */
+	@Benchmark
+	public void canDrawTransportationCard(Blackhole blackhole) {
+		for(int i = 0; i <= DECK_INDEX; i++) {
+			blackhole.consume(checkMover.canDrawTransportationCard(i));
+		}
+	}
+
+	/**
+	 * Draws the first face up card and then a card from the deck, then discards both of them so that
+	 * the player's hand stays the same size
+	 */
+	@Benchmark
+	public void drawTransportationCard() {
+		GameMover mover = new GameMover(gameState, player, false);
+		CardColor first = mover.drawTransportationCard(0);
+		gameState.removeTransportationCardsFromPlayersHand(playerIndex, first, 1);
+		if(!mover.getTurnCompletedBinding().get()) {
+			CardColor second = mover.drawTransportationCard(DECK_INDEX);
+			gameState.removeTransportationCardsFromPlayersHand(playerIndex, second, 1);
+		}
+	}
+
+	/**
+	 * Generates every legal move at the start of a turn (compare with {@link #canBuildConnection(Blackhole)},
+	 * which only tries one way of paying for each connection)
+	 */
+	@Benchmark
+	public int generateLegalMoves() {
+		checkMover.generateLegalMoves(moveList);
+		return moveList.size();
+	}
+
+	/**
+	 * Checks every non empty subset of the drawn destination cards
+	 */
+	@Benchmark
+	public void canSelectDestinationCards(Blackhole blackhole) {
+		for(Set<DestinationCard> selection : selections) {
+			blackhole.consume(selectionMove.canSelectDestinationCards(selection));
+		}
+	}
+}
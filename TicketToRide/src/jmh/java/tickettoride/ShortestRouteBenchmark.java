@@ -0,0 +1,91 @@
+package tickettoride;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.ShortestRouteTable;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+/**
+ * Benchmarks for {@link ShortestRouteTable} on the default (full USA) map
+ * </br></br>
+ * Run with <pre>mvn -P benchmarks test-compile exec:exec -Djmh.args=ShortestRoute</pre>
+ * @author nate
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortestRouteBenchmark {
+
+	private IndexedMapData map;
+	private Player player;
+	private Player opponent;
+	private ShortestRouteTable table;
+	private int nextConnection = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		player = new RandomAI();
+		opponent = new RandomAI();
+		map = new GameState(List.of(player, opponent),
+				GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json")), 1).getIndexedMap();
+		table = new ShortestRouteTable(map, player);
+	}
+
+	/**
+	 * Looks up every pair of destinations
+	 */
+	@Benchmark
+	public void getDistance(Blackhole blackhole) {
+		int n = map.getNumDestinations();
+		for(int from = 0; from < n; from++) {
+			for(int to = 0; to < n; to++) {
+				blackhole.consume(table.getDistance(from, to));
+			}
+		}
+	}
+
+	/**
+	 * Builds the whole table from scratch
+	 */
+	@Benchmark
+	public ShortestRouteTable build() {
+		return new ShortestRouteTable(map, player);
+	}
+
+	/**
+	 * The opponent claims the next connection (blocking it) and then gives it back, updating the table both times
+	 */
+	@Benchmark
+	public int blockAndUnblock() {
+		int conn = nextConnection;
+		nextConnection = (nextConnection + 1) % map.getNumConnections();
+		map.claim(conn, opponent);
+		table.connectionClaimed(map, conn);
+		map.claim(conn, null);
+		table.connectionClaimed(map, conn);
+		return table.getDistance(0, 1);
+	}
+}
@@ -1,39 +1,217 @@
 package tickettoride;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import tickettoride.Mover.IllegalMoveException;
 import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.LongestRouteCalculator;
 import tickettoride.players.Player;
 
 /**
- * This is the class that handles the main game flow.
- * At this point, this class is obviously far from done.
- * This is really just a stub to get students on a potential right
- * track, but since it is not directly related to the Player interface or
- * any other interfaces that are required to remain unchanged, students are
- * free to modify this file however they want, or even get rid of it if they
- * prefer to handle the game flow elsewhere.
+ * This is the class that handles the main game flow. It gives each player a turn (with a fresh
+ * {@link GameMover}) until the game is over and then calculates the final scores.
+ * </br></br>
+ * Nothing in here depends on the JavaFX toolkit, so games can be run headless (see {@link Simulator}). The
+ * moves can be recorded with {@link #setMoveJournal(MoveJournal)}.
  * @author nate
  */
 public class GameController {
 
+	/** Once a player has this many trains or fewer, every player gets one final turn */
+	public static final int FINAL_ROUND_TRAIN_THRESHOLD = 2;
+
+	/**
+	 * Safety valve so that players that never complete a move can't keep a game going forever.
+	 * Real games are nowhere close to this many turns.
+	 */
+	public static final int MAX_TURNS = 2000;
+
+	/** Points awarded for claiming a connection, indexed by the number of segments in the connection */
+	private static final int[] CONNECTION_POINTS = {0, 1, 2, 4, 7, 10, 15, 18, 21, 27};
+
+	/** Bonus points for the player (or players, if there's a tie) with the longest continuous route */
+	public static final int LONGEST_ROUTE_BONUS = 10;
+
+	private final GameState gameState;
+
+	/** Map from player descriptions to players (in turn order) */
+	private final Map<String, Player> players;
+
+	/** Final score for each player. Empty until the game is over */
+	private final Map<Player, Integer> scores = new LinkedHashMap<>();
+
+	/** Total number of turns taken so far */
+	private int numTurns = 0;
+
+	/** Journal that the game is recorded in (null if it isn't being recorded) */
+	private MoveJournal journal;
+
 	/**
 	 * Instantiates a game controller object
 	 * @param gameState initial game state. This object will be modified by the controller
 	 * @param players map from player descriptions to players participating
-	 * in the game. The player description could be as simple as "Player 1", 
+	 * in the game. The player description could be as simple as "Player 1",
 	 * "Player 2", etc, or could be an actual name, or description of player type
-	 * combined with a number or name.
+	 * combined with a number or name. The iteration order of the map is the turn order.
 	 */
 	public GameController(GameState gameState, Map<String, ? extends Player> players) {
-		//TODO to be implemented by student
-		
+		this.gameState = gameState;
+		this.players = Collections.unmodifiableMap(new LinkedHashMap<>(players));
 	}
-	
+
 	/**
-	 * This is the main game loop
+	 * @param journal {@link #journal}. This has to be set before {@link #runGame()} is called.
+	 */
+	public void setMoveJournal(MoveJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * This is the main game loop. It returns once the game is over. The final scores
+	 * are then available from {@link #getScores()}.
 	 */
 	public void runGame() {
-		//TODO to be implemented by student
+		List<Player> turnOrder = new ArrayList<>(players.values());
+		for(Player player : turnOrder) {
+			player.initialize(gameState.gameDefinition(), turnOrder.size());
+			player.setTransportationCardsMapView(gameState.getPlayersTransportationCardsHand(player));
+			player.setDestinationCardsView(gameState.getPlayersDestinationCards(player));
+			player.setNumberOfTrainsRemainingView(gameState.getNumTrainsRemaining());
+			player.setFaceUpTransportationCardsView(gameState.getFaceUpTransportationCards());
+		}
+
+		if(journal != null) {
+			journal.startGame(gameState.getSeed(), turnOrder.size());
+		}
+
+		//Number of turns left once the final round has been triggered (-1 means not triggered yet)
+		int finalTurnsRemaining = -1;
+		//If a whole round (after the first one) goes by without anyone completing a turn, nobody can
+		//do anything and the game is stuck
+		int consecutiveIncompleteTurns = 0;
+
+		try {
+			while(finalTurnsRemaining != 0 && consecutiveIncompleteTurns < turnOrder.size() && numTurns < MAX_TURNS) {
+				Player player = turnOrder.get(numTurns % turnOrder.size());
+				boolean firstTurn = numTurns < turnOrder.size();
+
+				boolean completed = executeTurn(player, firstTurn);
+				if(journal != null) {
+					journal.endTurn();
+				}
+				consecutiveIncompleteTurns = completed || firstTurn ? 0 : consecutiveIncompleteTurns + 1;
+				numTurns++;
+
+				if(finalTurnsRemaining > 0) {
+					finalTurnsRemaining--;
+				}
+				else if(gameState.getNumTrainsRemaining().get(player) <= FINAL_ROUND_TRAIN_THRESHOLD) {
+					finalTurnsRemaining = turnOrder.size();
+				}
+			}
+		}
+		finally {
+			//Even if a player throws an exception part way through, the game still needs to be ended so
+			//that the next game in the journal doesn't get mixed up with this one
+			if(journal != null) {
+				journal.endGame();
+			}
+		}
+
+		calculateScores();
+	}
+
+	/**
+	 * Gives the specified player a turn.
+	 * @return true if the player completed the turn. Players that attempt an illegal move or
+	 * return without finishing their move simply lose the rest of their turn.
+	 */
+	private boolean executeTurn(Player player, boolean firstTurn) {
+		Mover mover = new GameMover(gameState, player, firstTurn, journal);
+		try {
+			player.executeMove(gameState.getMap(), mover);
+		}
+		catch(IllegalMoveException e) {
+			return false;
+		}
+		return mover.getTurnCompletedBinding().get();
+	}
+
+	/**
+	 * Populates {@link #scores} (see {@link #calculateScores(GameState, LongestRouteCalculator)})
+	 */
+	private void calculateScores() {
+		int[] points = calculateScores(gameState, new LongestRouteCalculator(gameState.getIndexedMap()));
+		for(Player player : players.values()) {
+			scores.put(player, points[gameState.getPlayerIndex(player)]);
+		}
+	}
+
+	/**
+	 * Calculates each player's score: points for each claimed connection, plus the points for each
+	 * completed destination card minus the points for each incomplete destination card, plus
+	 * {@link #LONGEST_ROUTE_BONUS} for whoever has the longest continuous route. This can be used on
+	 * a game that isn't over yet (AIs use it to evaluate simulated games).
+	 * @param gameState the game
+	 * @param longestRouteCalculator calculator created for the game's map
+	 * @return the score for each player in turn order
+	 */
+	public static int[] calculateScores(GameState gameState, LongestRouteCalculator longestRouteCalculator) {
+		IndexedMapData map = gameState.getIndexedMap();
+		int numPlayers = gameState.getPlayers().size();
+		int[] points = new int[numPlayers];
+		int[] longestRoutes = new int[numPlayers];
+		int longest = 0;
+		for(int p = 0; p < numPlayers; p++) {
+			points[p] = gameState.getDestinationCardPoints(p);
+			longestRoutes[p] = longestRouteCalculator.getLongestRoute(map, gameState.getPlayer(p));
+			longest = Math.max(longest, longestRoutes[p]);
+		}
+		for(int i = 0; i < map.getNumConnections(); i++) {
+			Player owner = map.getOwner(i);
+			if(owner != null) {
+				points[gameState.getPlayerIndex(owner)] += CONNECTION_POINTS[Math.min(map.getConnectionLength(i), CONNECTION_POINTS.length - 1)];
+			}
+		}
+		for(int p = 0; p < numPlayers; p++) {
+			if(longest > 0 && longestRoutes[p] == longest) {
+				points[p] += LONGEST_ROUTE_BONUS;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * @return map from player to final score (in turn order). This is empty until {@link #runGame()}
+	 * has returned.
+	 */
+	public Map<Player, Integer> getScores() {
+		return Collections.unmodifiableMap(scores);
+	}
+
+	/**
+	 * @return the player with the highest score, or null if the game hasn't been played yet. Ties go
+	 * to the player that is earliest in the turn order.
+	 */
+	public Player getWinner() {
+		Player winner = null;
+		for(Map.Entry<Player, Integer> entry : scores.entrySet()) {
+			if(winner == null || entry.getValue() > scores.get(winner)) {
+				winner = entry.getKey();
+			}
+		}
+		return winner;
+	}
+
+	/**
+	 * @return the number of turns that have been taken
+	 */
+	public int getNumTurns() {
+		return numTurns;
 	}
 }
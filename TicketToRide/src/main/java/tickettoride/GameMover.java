@@ -0,0 +1,507 @@
+package tickettoride;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.value.ObservableBooleanValue;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.players.Player;
+
+/**
+ * Implementation of {@link Mover} that validates and executes the moves of a single player for
+ * a single turn. A new instance should be created at the beginning of every turn.
+ * </br></br>
+ * Besides the {@link Mover} methods, AIs that know they are playing with a GameMover can ask for every
+ * legal move at once with {@link #generateLegalMoves(MoveList)} and then play one of them with
+ * {@link #makeMove(int)}. Builds are checked against the player's count of each color rather than a
+ * collection of cards, so generating every build is a single pass over the connections.
+ * </br></br>
+ * If the mover is given a {@link MoveJournal}, every move that is made (through either set of methods) is
+ * recorded in it.
+ * @author nate
+ */
+public class GameMover implements Mover {
+
+	/** Index used by {@link #drawTransportationCard(int)} to indicate the top of the deck */
+	private static final int DECK_INDEX = GameState.NUM_FACE_UP_CARDS;
+
+	private static final CardColor[] COLORS = CardColor.values();
+	private static final int WILD = CardColor.ANY.ordinal();
+
+	/**
+	 * The types of moves that a player can make. Only one type of move can be made
+	 * per turn.
+	 */
+	private enum MoveType {
+		NONE,
+		DRAW_TRANSPORTATION_CARDS,
+		DRAW_DESTINATION_CARDS,
+		BUILD_CONNECTION
+	}
+
+	/** The state of the game that will be modified by the moves */
+	private final GameState gameState;
+	/** The player whose turn this is */
+	private final Player player;
+	/** Index of {@link #player} in the turn order */
+	private final int playerIndex;
+	/** Whether or not this is the player's first turn of the game */
+	private final boolean firstTurn;
+	/** Journal that the moves are recorded in (null if they aren't being recorded) */
+	private final MoveJournal journal;
+
+	/** The type of move that has been started this turn */
+	private MoveType moveType = MoveType.NONE;
+	/** Number of transportation cards drawn so far this turn */
+	private int numTransportationCardsDrawn = 0;
+	/** The destination cards that were drawn this turn (null if none have been drawn) */
+	private SelectionMove selectionMove;
+
+	/** Number of cards of each color in the player's hand (filled in by {@link #generateBuilds(MoveList)}) */
+	private final int[] hand = new int[COLORS.length];
+
+	private final ReadOnlyBooleanWrapper turnCompleted = new ReadOnlyBooleanWrapper(false);
+
+	/**
+	 * Creates a mover for a single turn
+	 * @param gameState {@link #gameState}
+	 * @param player {@link #player}
+	 * @param firstTurn {@link #firstTurn}
+	 */
+	public GameMover(GameState gameState, Player player, boolean firstTurn) {
+		this(gameState, player, firstTurn, null);
+	}
+
+	/**
+	 * Creates a mover for a single turn that records its moves
+	 * @param gameState {@link #gameState}
+	 * @param player {@link #player}
+	 * @param firstTurn {@link #firstTurn}
+	 * @param journal {@link #journal}
+	 */
+	public GameMover(GameState gameState, Player player, boolean firstTurn, MoveJournal journal) {
+		this.gameState = gameState;
+		this.player = player;
+		this.playerIndex = gameState.getPlayerIndex(player);
+		this.firstTurn = firstTurn;
+		this.journal = journal;
+	}
+
+	@Override
+	public DestinationCardSelectionMove getDestinationCardsSelectionMove() {
+		if(getNumDestinationCardsThatCanBeDrawn() == 0) {
+			throw new IllegalMoveException("Destination cards cannot be drawn right now");
+		}
+		moveType = MoveType.DRAW_DESTINATION_CARDS;
+		//Keep the draw order (rather than using Set.copyOf) so that games replayed from a seed play out the same way
+		selectionMove = new SelectionMove(Collections.unmodifiableSet(new LinkedHashSet<>(gameState.drawDestinationCards())));
+		record(Move.drawDestinationCards());
+		return selectionMove;
+	}
+
+	@Override
+	public int getNumDestinationCardsThatCanBeDrawn() {
+		if(moveType != MoveType.NONE) {
+			return 0;
+		}
+		return Math.min(GameState.DESTINATION_CARDS_PER_DRAW,
+				gameState.getDestinationCardsDeckRemainingProperty().get());
+	}
+
+	@Override
+	public CardColor drawTransportationCard(int cardNumber) {
+		if(!canDrawTransportationCard(cardNumber)) {
+			throw new IllegalMoveException("Transportation card " + cardNumber + " cannot be drawn right now");
+		}
+		boolean faceUpWild = cardNumber != DECK_INDEX &&
+				gameState.getFaceUpTransportationCard(cardNumber) == CardColor.ANY;
+
+		moveType = MoveType.DRAW_TRANSPORTATION_CARDS;
+		CardColor color = gameState.drawTransportationCard(cardNumber);
+		gameState.addTransportationCardToPlayersHand(playerIndex, color);
+		numTransportationCardsDrawn++;
+		record(Move.drawTransportationCard(cardNumber));
+
+		if(faceUpWild || numTransportationCardsDrawn == 2) {
+			turnCompleted.set(true);
+		}
+		return color;
+	}
+
+	@Override
+	public boolean canDrawTransportationCard(int cardNumber) {
+		if(firstTurn || turnCompleted.get() || cardNumber < 0 || cardNumber > DECK_INDEX) {
+			return false;
+		}
+		if(moveType != MoveType.NONE && moveType != MoveType.DRAW_TRANSPORTATION_CARDS) {
+			return false;
+		}
+		if(cardNumber == DECK_INDEX) {
+			return gameState.getTransportationCardsDeckRemainingProperty().get();
+		}
+		CardColor faceUpCard = gameState.getFaceUpTransportationCard(cardNumber);
+		//A face up wild can only be taken as the first card of the turn
+		return faceUpCard != null && (faceUpCard != CardColor.ANY || numTransportationCardsDrawn == 0);
+	}
+
+	@Override
+	public void buildConnection(Connection connectionToBuild, Collection<CardColor> cardsToUse) {
+		if(!canBuildConnection(connectionToBuild, cardsToUse)) {
+			throw new IllegalMoveException("The connection cannot be built with the specified cards");
+		}
+		CardColor color = getNonWildColor(cardsToUse);
+		buildConnection(gameState.getConnectionIndex(connectionToBuild), color == null ? CardColor.ANY : color,
+				Collections.frequency(cardsToUse, CardColor.ANY));
+	}
+
+	@Override
+	public boolean canBuildConnection(Connection connectionToBuild, Collection<CardColor> cardsToUse) {
+		if(connectionToBuild == null || cardsToUse == null) {
+			return false;
+		}
+		int connectionIndex = gameState.getConnectionIndex(connectionToBuild);
+		if(connectionIndex < 0 || cardsToUse.size() != connectionToBuild.getNumSegments()) {
+			return false;
+		}
+		//All of the non-wild cards need to be the same color
+		CardColor color = getNonWildColor(cardsToUse);
+		for(CardColor card : cardsToUse) {
+			if(card == null || (card != CardColor.ANY && card != color)) {
+				return false;
+			}
+		}
+		return canBuildConnection(connectionIndex, color == null ? CardColor.ANY : color,
+				Collections.frequency(cardsToUse, CardColor.ANY));
+	}
+
+	/**
+	 * Same as {@link #canBuildConnection(Connection, Collection)}, but with the cards given as counts
+	 * instead of a collection
+	 * @param connectionIndex index of the connection in the game's {@link IndexedMapData}
+	 * @param color color of the non-wild cards ({@link CardColor#ANY} if only wilds are used)
+	 * @param numWilds number of wild cards to use. The rest of the connection is paid for with cards
+	 * of the specified color.
+	 * @return true if the connection can be built with those cards
+	 */
+	public boolean canBuildConnection(int connectionIndex, CardColor color, int numWilds) {
+		if(firstTurn || moveType != MoveType.NONE || color == null) {
+			return false;
+		}
+		IndexedMapData map = gameState.getIndexedMap();
+		if(connectionIndex < 0 || connectionIndex >= map.getNumConnections()) {
+			return false;
+		}
+		int numSegments = map.getConnectionLength(connectionIndex);
+		int numColored = numSegments - numWilds;
+		if(numWilds < 0 || numColored < 0 || (color == CardColor.ANY && numColored != 0)) {
+			return false;
+		}
+		CardColor connectionColor = map.getConnectionColor(connectionIndex);
+		if(numColored > 0 && connectionColor != CardColor.ANY && connectionColor != color) {
+			return false;
+		}
+		if(gameState.getNumTransportationCards(playerIndex, CardColor.ANY) < numWilds ||
+				(numColored > 0 && gameState.getNumTransportationCards(playerIndex, color) < numColored)) {
+			return false;
+		}
+		return canClaim(map, connectionIndex);
+	}
+
+	/**
+	 * Same as {@link #buildConnection(Connection, Collection)}, but with the cards given as counts
+	 * instead of a collection
+	 * @param connectionIndex index of the connection in the game's {@link IndexedMapData}
+	 * @param color color of the non-wild cards ({@link CardColor#ANY} if only wilds are used)
+	 * @param numWilds number of wild cards to use
+	 * @throws IllegalMoveException if {@link #canBuildConnection(int, CardColor, int)} would have
+	 * returned false
+	 */
+	public void buildConnection(int connectionIndex, CardColor color, int numWilds) {
+		if(!canBuildConnection(connectionIndex, color, numWilds)) {
+			throw new IllegalMoveException("The connection cannot be built with the specified cards");
+		}
+		IndexedMapData map = gameState.getIndexedMap();
+		int numSegments = map.getConnectionLength(connectionIndex);
+		moveType = MoveType.BUILD_CONNECTION;
+		map.claim(connectionIndex, player);
+		gameState.useTrains(playerIndex, numSegments);
+		if(numWilds < numSegments) {
+			gameState.removeTransportationCardsFromPlayersHand(playerIndex, color, numSegments - numWilds);
+		}
+		if(numWilds > 0) {
+			gameState.removeTransportationCardsFromPlayersHand(playerIndex, CardColor.ANY, numWilds);
+		}
+		record(Move.buildConnection(connectionIndex, color, numWilds));
+		turnCompleted.set(true);
+	}
+
+	@Override
+	public ObservableBooleanValue getTurnCompletedBinding() {
+		return turnCompleted.getReadOnlyProperty();
+	}
+
+	/**
+	 * Fills the list with every move that is legal right now (the list is cleared first). The moves
+	 * are encoded with {@link Move}. At the start of a turn this includes every transportation card
+	 * draw, drawing destination cards, and every distinct way of paying for every connection that can
+	 * be built. After destination cards have been drawn, it is every allowed selection of them.
+	 * </br></br>
+	 * Nothing is allocated as long as the list is big enough, so an AI can call this as often as it likes.
+	 * @param moves list to fill
+	 */
+	public void generateLegalMoves(MoveList moves) {
+		moves.clear();
+		if(turnCompleted.get()) {
+			return;
+		}
+		if(moveType == MoveType.DRAW_DESTINATION_CARDS) {
+			int numOptions = selectionMove.optionList.size();
+			int minCards = firstTurn ? Math.min(2, numOptions) : 1;
+			for(int mask = 1; mask < 1 << numOptions; mask++) {
+				if(Integer.bitCount(mask) >= minCards) {
+					moves.add(Move.selectDestinationCards(mask));
+				}
+			}
+			return;
+		}
+		for(int cardNumber = 0; cardNumber <= DECK_INDEX; cardNumber++) {
+			if(canDrawTransportationCard(cardNumber)) {
+				moves.add(Move.drawTransportationCard(cardNumber));
+			}
+		}
+		if(moveType != MoveType.NONE) {
+			return;
+		}
+		if(getNumDestinationCardsThatCanBeDrawn() > 0) {
+			moves.add(Move.drawDestinationCards());
+		}
+		if(!firstTurn) {
+			generateBuilds(moves);
+		}
+	}
+
+	/**
+	 * Adds every legal way of building every connection, based on how many cards of each color the
+	 * player has
+	 */
+	private void generateBuilds(MoveList moves) {
+		for(int c = 0; c < COLORS.length; c++) {
+			hand[c] = gameState.getNumTransportationCards(playerIndex, COLORS[c]);
+		}
+		int wilds = hand[WILD];
+
+		IndexedMapData map = gameState.getIndexedMap();
+		for(int conn = 0; conn < map.getNumConnections(); conn++) {
+			if(!canClaim(map, conn)) {
+				continue;
+			}
+			int length = map.getConnectionLength(conn);
+			CardColor connectionColor = map.getConnectionColor(conn);
+			if(connectionColor == CardColor.ANY) {
+				for(int c = 0; c < COLORS.length; c++) {
+					if(c != WILD) {
+						addBuilds(moves, conn, COLORS[c], hand[c], wilds, length);
+					}
+				}
+			}
+			else {
+				addBuilds(moves, conn, connectionColor, hand[connectionColor.ordinal()], wilds, length);
+			}
+			if(wilds >= length) {
+				moves.add(Move.buildConnection(conn, CardColor.ANY, length));
+			}
+		}
+	}
+
+	/**
+	 * Adds the builds that use at least one card of the specified color
+	 */
+	private static void addBuilds(MoveList moves, int conn, CardColor color, int numColor, int numWilds, int length) {
+		for(int w = Math.max(0, length - numColor); w <= Math.min(length - 1, numWilds); w++) {
+			moves.add(Move.buildConnection(conn, color, w));
+		}
+	}
+
+	/**
+	 * @param move move encoded with {@link Move}
+	 * @return true if the move can be made right now
+	 */
+	public boolean canMakeMove(int move) {
+		switch(Move.getType(move)) {
+		case Move.TYPE_DRAW_TRANSPORTATION_CARD:
+			return canDrawTransportationCard(Move.getCardNumber(move));
+		case Move.TYPE_DRAW_DESTINATION_CARDS:
+			return getNumDestinationCardsThatCanBeDrawn() > 0;
+		case Move.TYPE_SELECT_DESTINATION_CARDS:
+			return selectionMove != null && selectionMove.canSelectDestinationCards(Move.getDestinationCardMask(move));
+		case Move.TYPE_BUILD_CONNECTION:
+			return canBuildConnection(Move.getConnectionIndex(move), Move.getColor(move), Move.getNumWilds(move));
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Makes a move generated by {@link #generateLegalMoves(MoveList)}
+	 * @param move move encoded with {@link Move}
+	 * @throws IllegalMoveException if {@link #canMakeMove(int)} would return false
+	 */
+	public void makeMove(int move) {
+		switch(Move.getType(move)) {
+		case Move.TYPE_DRAW_TRANSPORTATION_CARD:
+			drawTransportationCard(Move.getCardNumber(move));
+			break;
+		case Move.TYPE_DRAW_DESTINATION_CARDS:
+			getDestinationCardsSelectionMove();
+			break;
+		case Move.TYPE_SELECT_DESTINATION_CARDS:
+			if(selectionMove == null) {
+				throw new IllegalMoveException("Destination cards haven't been drawn");
+			}
+			selectionMove.selectDestinationCards(Move.getDestinationCardMask(move));
+			break;
+		case Move.TYPE_BUILD_CONNECTION:
+			buildConnection(Move.getConnectionIndex(move), Move.getColor(move), Move.getNumWilds(move));
+			break;
+		default:
+			throw new IllegalMoveException("Unknown move " + move);
+		}
+	}
+
+	/**
+	 * Checks the parts of building a connection that don't depend on the cards: it has to be unclaimed,
+	 * the player needs enough trains, and the player can't take a parallel connection if they already own
+	 * one of them (or if anyone does in a two player game).
+	 */
+	private boolean canClaim(IndexedMapData map, int connectionIndex) {
+		if(map.getOwner(connectionIndex) != null ||
+				gameState.getNumTrainsRemaining(playerIndex) < map.getConnectionLength(connectionIndex)) {
+			return false;
+		}
+		for(int other = map.getNextParallelConnection(connectionIndex); other != connectionIndex;
+				other = map.getNextParallelConnection(other)) {
+			Player otherOwner = map.getOwner(other);
+			if(otherOwner == player || (otherOwner != null && gameState.getPlayers().size() <= 2)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records a move in the {@link #journal} (if there is one)
+	 */
+	private void record(int move) {
+		if(journal != null) {
+			journal.recordMove(move);
+		}
+	}
+
+	/**
+	 * @return the color of the first non-wild card, or null if they are all wild
+	 */
+	private static CardColor getNonWildColor(Collection<CardColor> cards) {
+		for(CardColor card : cards) {
+			if(card != CardColor.ANY) {
+				return card;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Second half of a destination card draw. Allows the player to choose which of the drawn
+	 * cards to keep.
+	 * @author nate
+	 */
+	private class SelectionMove implements DestinationCardSelectionMove {
+
+		/** The cards that were drawn (unmodifiable) */
+		private final Set<DestinationCard> options;
+		/** Same as {@link #options}, for looking cards up by their bit in a {@link Move} */
+		private final List<DestinationCard> optionList;
+
+		private SelectionMove(Set<DestinationCard> options) {
+			this.options = options;
+			this.optionList = new ArrayList<>(options);
+		}
+
+		@Override
+		public Set<DestinationCard> getDestinationCardOptions() {
+			return options;
+		}
+
+		@Override
+		public void selectDestinationCards(Set<DestinationCard> cardsToKeep) {
+			if(!canSelectDestinationCards(cardsToKeep)) {
+				throw new IllegalMoveException("Those destination cards cannot be selected");
+			}
+			selectDestinationCards(toMask(cardsToKeep));
+		}
+
+		@Override
+		public boolean canSelectDestinationCards(Set<DestinationCard> cardsToKeep) {
+			if(cardsToKeep == null || !options.containsAll(cardsToKeep)) {
+				return false;
+			}
+			return canSelectDestinationCards(toMask(cardsToKeep));
+		}
+
+		/**
+		 * Same as {@link #canSelectDestinationCards(Set)}, but without building any sets
+		 * @param mask bit i set to keep the i-th option
+		 */
+		private boolean canSelectDestinationCards(int mask) {
+			if(turnCompleted.get() || mask <= 0 || mask >= 1 << optionList.size()) {
+				return false;
+			}
+			//On the first turn, at least 2 cards must be kept (unless fewer than that were drawn)
+			return !firstTurn || Integer.bitCount(mask) >= Math.min(2, optionList.size());
+		}
+
+		/**
+		 * Keeps the cards in the mask and puts the rest at the bottom of the deck, one card at a time so
+		 * that nothing is allocated
+		 * @param mask bit i set to keep the i-th option
+		 */
+		private void selectDestinationCards(int mask) {
+			if(!canSelectDestinationCards(mask)) {
+				throw new IllegalMoveException("Those destination cards cannot be selected");
+			}
+			for(int i = 0; i < optionList.size(); i++) {
+				if((mask & 1 << i) != 0) {
+					gameState.addDestinationCardToPlayersHand(playerIndex, optionList.get(i));
+				}
+			}
+			for(int i = 0; i < optionList.size(); i++) {
+				if((mask & 1 << i) == 0) {
+					gameState.placeDestinationCardAtBottomOfDeck(optionList.get(i));
+				}
+			}
+			record(Move.selectDestinationCards(mask));
+			turnCompleted.set(true);
+		}
+
+		/**
+		 * @return bit mask with bit i set if the i-th option is in the cards
+		 */
+		private int toMask(Set<DestinationCard> cards) {
+			int mask = 0;
+			for(int i = 0; i < optionList.size(); i++) {
+				if(cards.contains(optionList.get(i))) {
+					mask |= 1 << i;
+				}
+			}
+			return mask;
+		}
+	}
+}
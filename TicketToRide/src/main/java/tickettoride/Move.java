@@ -0,0 +1,135 @@
+package tickettoride;
+
+import tickettoride.model.MapData.CardColor;
+
+/**
+ * Static methods for packing a complete move into a single int, so that AIs can generate and store
+ * moves without creating any objects (see {@link GameMover#generateLegalMoves(MoveList)} and
+ * {@link MoveList}).
+ * </br></br>
+ * The top bits hold the type of the move and the rest depend on the type:
+ * <ul>
+ * <li>{@link #TYPE_DRAW_TRANSPORTATION_CARD}: the card number (0-4 for face up cards, 5 for the deck)</li>
+ * <li>{@link #TYPE_DRAW_DESTINATION_CARDS}: nothing</li>
+ * <li>{@link #TYPE_SELECT_DESTINATION_CARDS}: bit mask of the destination card options to keep (bit i is the
+ * i-th card in the order of {@link Mover.DestinationCardSelectionMove#getDestinationCardOptions()})</li>
+ * <li>{@link #TYPE_BUILD_CONNECTION}: connection index, the color of the non-wild cards and the number of
+ * wild cards. A build that only uses wilds has color {@link CardColor#ANY}.</li>
+ * </ul>
+ * @author nate
+ */
+public final class Move {
+
+	public static final int TYPE_DRAW_TRANSPORTATION_CARD = 1;
+	public static final int TYPE_DRAW_DESTINATION_CARDS = 2;
+	public static final int TYPE_SELECT_DESTINATION_CARDS = 3;
+	public static final int TYPE_BUILD_CONNECTION = 4;
+
+	private static final int TYPE_SHIFT = 28;
+	private static final int CONNECTION_SHIFT = 12;
+	private static final int COLOR_SHIFT = 8;
+	private static final int COLOR_MASK = 0xF;
+	private static final int WILDS_MASK = 0xFF;
+	private static final int VALUE_MASK = (1 << TYPE_SHIFT) - 1;
+
+	/** Largest connection index that can be stored in a move */
+	public static final int MAX_CONNECTION_INDEX = VALUE_MASK >>> CONNECTION_SHIFT;
+	/**
+	 * Largest number of wilds that can be stored in a move. Game definitions can't have connections longer
+	 * than this (see {@link tickettoride.model.GameDefinitionLoader#MAX_CONNECTION_LENGTH}).
+	 */
+	public static final int MAX_WILDS = WILDS_MASK;
+
+	private static final CardColor[] COLORS = CardColor.values();
+
+	private Move() {
+	}
+
+	/**
+	 * @param cardNumber 0-4 for a face up card, 5 for the deck
+	 * @return the move that draws the specified transportation card
+	 */
+	public static int drawTransportationCard(int cardNumber) {
+		return TYPE_DRAW_TRANSPORTATION_CARD << TYPE_SHIFT | cardNumber;
+	}
+
+	/**
+	 * @return the move that draws destination cards
+	 */
+	public static int drawDestinationCards() {
+		return TYPE_DRAW_DESTINATION_CARDS << TYPE_SHIFT;
+	}
+
+	/**
+	 * @param mask bit mask of the options to keep
+	 * @return the move that keeps the specified destination cards
+	 */
+	public static int selectDestinationCards(int mask) {
+		return TYPE_SELECT_DESTINATION_CARDS << TYPE_SHIFT | (mask & VALUE_MASK);
+	}
+
+	/**
+	 * @param connectionIndex index of the connection in the game's {@link tickettoride.model.IndexedMapData}
+	 * @param color color of the non-wild cards ({@link CardColor#ANY} if only wilds are used)
+	 * @param numWilds number of wild cards used
+	 * @return the move that builds the connection with those cards
+	 * @throws IllegalArgumentException if the connection index or number of wilds is too big to store
+	 * (see {@link #MAX_CONNECTION_INDEX} and {@link #MAX_WILDS})
+	 */
+	public static int buildConnection(int connectionIndex, CardColor color, int numWilds) {
+		if(connectionIndex < 0 || connectionIndex > MAX_CONNECTION_INDEX || numWilds < 0 || numWilds > MAX_WILDS) {
+			throw new IllegalArgumentException("Can't store a build of connection " + connectionIndex + " with " + numWilds + " wilds");
+		}
+		return TYPE_BUILD_CONNECTION << TYPE_SHIFT | connectionIndex << CONNECTION_SHIFT |
+				color.ordinal() << COLOR_SHIFT | numWilds;
+	}
+
+	/** @return the type of the move (one of the TYPE constants) */
+	public static int getType(int move) {
+		return move >>> TYPE_SHIFT;
+	}
+
+	/** @return the card number of a {@link #TYPE_DRAW_TRANSPORTATION_CARD} move */
+	public static int getCardNumber(int move) {
+		return move & VALUE_MASK;
+	}
+
+	/** @return the bit mask of cards kept by a {@link #TYPE_SELECT_DESTINATION_CARDS} move */
+	public static int getDestinationCardMask(int move) {
+		return move & VALUE_MASK;
+	}
+
+	/** @return the connection index of a {@link #TYPE_BUILD_CONNECTION} move */
+	public static int getConnectionIndex(int move) {
+		return (move & VALUE_MASK) >>> CONNECTION_SHIFT;
+	}
+
+	/** @return the color of the non-wild cards in a {@link #TYPE_BUILD_CONNECTION} move */
+	public static CardColor getColor(int move) {
+		return COLORS[move >>> COLOR_SHIFT & COLOR_MASK];
+	}
+
+	/** @return the number of wild cards in a {@link #TYPE_BUILD_CONNECTION} move */
+	public static int getNumWilds(int move) {
+		return move & WILDS_MASK;
+	}
+
+	/**
+	 * @return human readable description of the move (for debugging)
+	 */
+	public static String toString(int move) {
+		switch(getType(move)) {
+		case TYPE_DRAW_TRANSPORTATION_CARD:
+			return "Draw card " + getCardNumber(move);
+		case TYPE_DRAW_DESTINATION_CARDS:
+			return "Draw destination cards";
+		case TYPE_SELECT_DESTINATION_CARDS:
+			return "Keep destination cards " + Integer.toBinaryString(getDestinationCardMask(move));
+		case TYPE_BUILD_CONNECTION:
+			return "Build connection " + getConnectionIndex(move) + " with " + getColor(move) + " and " +
+					getNumWilds(move) + " wilds";
+		default:
+			return "Unknown move " + move;
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package tickettoride;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameState;
+import tickettoride.players.Player;
+
+/**
+ * Records every move made in a game (or in lots of games, one after the other) to a file, so that games
+ * can be archived and replayed later (see {@link Reader}).
+ * </br></br>
+ * A game is completely determined by its seed and its moves, so that's all that is stored. Every record is
+ * a single 4 byte int. Moves are stored exactly as {@link Move} encodes them (connection index, color
+ * ordinal and number of wilds for builds, and the bit mask of the kept options for destination card
+ * selections), and the rest of the records are markers whose top 4 bits can't be a move type:
+ * <ul>
+ * <li>{@link #END_OF_TURN}: the current player's turn is over (whether or not they completed it)</li>
+ * <li>{@link #START_OF_GAME}: followed by 3 more records: the high and low halves of the game's seed, and
+ * the number of players</li>
+ * <li>{@link #END_OF_GAME}</li>
+ * </ul>
+ * The file starts with {@link #MAGIC} and {@link #VERSION}. Records are collected in a buffer and written
+ * to the file with a {@link FileChannel} whenever the buffer fills up, so recording a move is normally just
+ * putting an int in the buffer.
+ * </br></br>
+ * A journal is meant to be used by one thread at a time (give each thread of a
+ * {@link Tournament} its own file).
+ * @author nate
+ */
+public class MoveJournal implements Closeable {
+
+	/** First int in a journal file */
+	public static final int MAGIC = 0x54544D4A;
+	/** Second int in a journal file. Change this if the format ever changes. */
+	public static final int VERSION = 2;
+
+	/** Marks the end of a turn */
+	public static final int END_OF_TURN = 0;
+	/** Marks the start of a game */
+	public static final int START_OF_GAME = 0xF << 28;
+	/** Marks the end of a game */
+	public static final int END_OF_GAME = 0xE << 28;
+
+	/** Size of the buffer that records are collected in before they're written */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * Opens a journal file for writing. If the file already exists, the new games are added to the end of it.
+	 * @param path the journal file
+	 * @throws IOException if the file can't be opened, or if it exists but isn't a journal
+	 */
+	public MoveJournal(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+		try {
+			if(channel.size() == 0) {
+				buffer.putInt(MAGIC);
+				buffer.putInt(VERSION);
+			}
+			else {
+				checkHeader(channel);
+				channel.position(channel.size());
+			}
+		}
+		catch(IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Records the start of a game
+	 * @param seed seed of the game's {@link GameState}
+	 * @param numPlayers number of players in the game
+	 */
+	public void startGame(long seed, int numPlayers) {
+		record(START_OF_GAME);
+		record((int)(seed >>> 32));
+		record((int)seed);
+		record(numPlayers);
+	}
+
+	/**
+	 * Records a move
+	 * @param move move encoded with {@link Move}
+	 */
+	public void recordMove(int move) {
+		record(move);
+	}
+
+	/**
+	 * Records the end of the current player's turn
+	 */
+	public void endTurn() {
+		record(END_OF_TURN);
+	}
+
+	/**
+	 * Records the end of the game
+	 */
+	public void endGame() {
+		record(END_OF_GAME);
+	}
+
+	private void record(int value) {
+		if(!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Writes everything that has been recorded so far to the file
+	 * @throws UncheckedIOException if the file can't be written (this is usually called in the middle
+	 * of a game, so it can't throw a checked exception)
+	 */
+	public void flush() {
+		buffer.flip();
+		try {
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finally {
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Writes anything that hasn't been written yet and closes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		}
+		catch(UncheckedIOException e) {
+			channel.close();
+			throw e.getCause();
+		}
+		channel.close();
+	}
+
+	private static void checkHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(8);
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		header.flip();
+		if(header.remaining() < 8 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+			throw new IOException("Not a move journal (or from a different version)");
+		}
+	}
+
+	/**
+	 * Reads the games in a journal file back one at a time
+	 * @author nate
+	 */
+	public static class Reader implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		/**
+		 * @param path the journal file
+		 * @throws IOException if the file can't be opened or isn't a journal
+		 */
+		public Reader(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			try {
+				checkHeader(channel);
+				channel.position(8);
+			}
+			catch(IOException e) {
+				channel.close();
+				throw e;
+			}
+			buffer.limit(0);
+		}
+
+		/**
+		 * @return the next game in the file, or null if there aren't any more. A game that was cut off (because
+		 * the program writing it stopped in the middle) is returned with the moves that were written, whether
+		 * it's at the end of the file or more games were added after it.
+		 * @throws IOException if the file can't be read or isn't formatted correctly
+		 */
+		public RecordedGame next() throws IOException {
+			if(!fill()) {
+				return null;
+			}
+			if(buffer.getInt() != START_OF_GAME) {
+				throw new IOException("Expected the start of a game at " + (channel.position() - buffer.remaining() - 4));
+			}
+			long seed = (long)readInt() << 32 | readInt() & 0xFFFFFFFFL;
+			int numPlayers = readInt();
+
+			int[] records = new int[256];
+			int numRecords = 0;
+			while(fill()) {
+				int record = buffer.getInt();
+				if(record == END_OF_GAME) {
+					break;
+				}
+				if(record == START_OF_GAME) {
+					//This game was never finished and the next one has started. Leave the marker for the next call.
+					buffer.position(buffer.position() - 4);
+					break;
+				}
+				if(numRecords == records.length) {
+					records = Arrays.copyOf(records, numRecords * 2);
+				}
+				records[numRecords++] = record;
+			}
+			return new RecordedGame(seed, numPlayers, Arrays.copyOf(records, numRecords));
+		}
+
+		private int readInt() throws IOException {
+			if(!fill()) {
+				throw new IOException("The journal ends in the middle of a game header");
+			}
+			return buffer.getInt();
+		}
+
+		/**
+		 * Makes sure there's at least one whole record in the buffer
+		 * @return false at the end of the file
+		 */
+		private boolean fill() throws IOException {
+			if(buffer.remaining() >= 4) {
+				return true;
+			}
+			buffer.compact();
+			while(buffer.position() < 4) {
+				if(channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer.remaining() >= 4;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * One game read from a journal
+	 * @author nate
+	 */
+	public static class RecordedGame {
+
+		/** Seed of the game's {@link GameState} */
+		private final long seed;
+		private final int numPlayers;
+		/** The moves (encoded with {@link Move}) and {@link MoveJournal#END_OF_TURN} markers, in order */
+		private final int[] records;
+
+		private RecordedGame(long seed, int numPlayers, int[] records) {
+			this.seed = seed;
+			this.numPlayers = numPlayers;
+			this.records = records;
+		}
+
+		/**
+		 * @return {@link #seed}
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return {@link #numPlayers}
+		 */
+		public int getNumPlayers() {
+			return numPlayers;
+		}
+
+		/**
+		 * @return number of moves made in the game
+		 */
+		public int getNumMoves() {
+			int numMoves = 0;
+			for(int record : records) {
+				if(record != END_OF_TURN) {
+					numMoves++;
+				}
+			}
+			return numMoves;
+		}
+
+		/**
+		 * Plays the game again on a new game state. The players are only used to identify whose cards and
+		 * connections are whose; their {@link Player#executeMove} methods are never called.
+		 * @param gameDefinition definition the game was played with
+		 * @param players players in turn order (there must be {@link #numPlayers} of them)
+		 * @return the game state after the last recorded move
+		 * @throws Mover.IllegalMoveException if a move can't be made (which means the definition isn't the
+		 * one the game was played with)
+		 */
+		public GameState replay(GameDefinition gameDefinition, List<Player> players) {
+			if(players.size() != numPlayers) {
+				throw new IllegalArgumentException("The game was played with " + numPlayers + " players, not " + players.size());
+			}
+			GameState gameState = new GameState(players, gameDefinition, seed);
+			int turn = 0;
+			GameMover mover = new GameMover(gameState, gameState.getPlayer(0), true);
+			for(int record : records) {
+				if(record == END_OF_TURN) {
+					turn++;
+					mover = new GameMover(gameState, gameState.getPlayer(turn % numPlayers), turn < numPlayers);
+				}
+				else {
+					mover.makeMove(record);
+				}
+			}
+			return gameState;
+		}
+	}
+}
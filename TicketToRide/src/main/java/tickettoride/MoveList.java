@@ -0,0 +1,90 @@
+package tickettoride;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of moves encoded with {@link Move}. AIs should keep one of these around and pass it to
+ * {@link GameMover#generateLegalMoves(MoveList)} every turn; once it has grown to fit the largest turn it
+ * never allocates again.
+ * @author nate
+ */
+public final class MoveList {
+
+	private int[] moves;
+	private int size = 0;
+
+	/**
+	 * Creates a list with room for a typical turn's worth of moves
+	 */
+	public MoveList() {
+		this(256);
+	}
+
+	/**
+	 * @param initialCapacity number of moves the list can hold before it has to grow
+	 */
+	public MoveList(int initialCapacity) {
+		moves = new int[Math.max(1, initialCapacity)];
+	}
+
+	/**
+	 * Removes all of the moves (without shrinking the buffer)
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Adds a move to the end of the list
+	 * @param move encoded move
+	 */
+	public void add(int move) {
+		if(size == moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		moves[size++] = move;
+	}
+
+	/** @return the number of moves in the list */
+	public int size() {
+		return size;
+	}
+
+	/** @return true if there are no moves in the list */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param index number between 0 and {@link #size()} - 1
+	 * @return the encoded move at that index
+	 */
+	public int get(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(index);
+		}
+		return moves[index];
+	}
+
+	/**
+	 * @param move encoded move
+	 * @return true if the list contains the move
+	 */
+	public boolean contains(int move) {
+		for(int i = 0; i < size; i++) {
+			if(moves[i] == move) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("[");
+		for(int i = 0; i < size; i++) {
+			s.append(i == 0 ? "" : ", ").append(Move.toString(moves[i]));
+		}
+		return s.append(']').toString();
+	}
+}
@@ -0,0 +1,123 @@
+package tickettoride;
+
+import tickettoride.model.GameState;
+
+/**
+ * Plays out a game on a {@link GameState} with moves encoded by {@link Move} instead of {@link tickettoride.players.Player}
+ * objects. The turns follow the same rules as {@link GameController}: each player's first turn is drawing
+ * destination cards, the final round starts once somebody is down to {@link GameController#FINAL_ROUND_TRAIN_THRESHOLD}
+ * trains, and the game also ends if a whole round goes by without anybody being able to complete a turn.
+ * </br></br>
+ * AIs use this to simulate the rest of a game from a (guessed) game state, which is changed as moves are made.
+ * @author nate
+ */
+public class SimulatedGame {
+
+	private final GameState gameState;
+	private final int numPlayers;
+	/** True for each player that still has their first turn to take */
+	private final boolean[] firstTurnPending;
+
+	/** Whose turn it is */
+	private int currentPlayer;
+	/** Mover for the current turn */
+	private GameMover mover;
+	/** Number of turns left once the final round has been triggered (-1 means not triggered yet) */
+	private int finalTurnsRemaining;
+	private int consecutiveIncompleteTurns = 0;
+	private int numTurns = 0;
+
+	/**
+	 * Starts a simulation at the beginning of a player's turn
+	 * @param gameState the game state to play out. This will be modified.
+	 * @param currentPlayer index of the player whose turn it is
+	 * @param firstTurnPending true for each player that hasn't had their first turn yet. This isn't modified.
+	 * @param finalTurnsRemaining number of turns left in the game (including this one) if the final round has
+	 * started, otherwise -1
+	 */
+	public SimulatedGame(GameState gameState, int currentPlayer, boolean[] firstTurnPending, int finalTurnsRemaining) {
+		this.gameState = gameState;
+		this.numPlayers = gameState.getPlayers().size();
+		this.firstTurnPending = firstTurnPending.clone();
+		this.currentPlayer = currentPlayer;
+		this.finalTurnsRemaining = finalTurnsRemaining;
+		startTurn();
+	}
+
+	/** @return {@link #gameState} */
+	public GameState getGameState() {
+		return gameState;
+	}
+
+	/** @return {@link #currentPlayer} */
+	public int getCurrentPlayer() {
+		return currentPlayer;
+	}
+
+	/**
+	 * @return true once the game is over
+	 */
+	public boolean isOver() {
+		return finalTurnsRemaining == 0 || consecutiveIncompleteTurns >= numPlayers || numTurns >= GameController.MAX_TURNS;
+	}
+
+	/**
+	 * Fills the list with the current player's legal moves. If the current player can't do anything, their
+	 * turn is skipped (as many times as needed), so the list is only empty once the game is over.
+	 * @param moves cleared and then filled with the moves
+	 */
+	public void generateLegalMoves(MoveList moves) {
+		moves.clear();
+		while(!isOver()) {
+			mover.generateLegalMoves(moves);
+			if(!moves.isEmpty()) {
+				return;
+			}
+			endTurn(false);
+		}
+	}
+
+	/**
+	 * @param move encoded move
+	 * @return true if the current player can make the move
+	 */
+	public boolean canMakeMove(int move) {
+		return !isOver() && mover.canMakeMove(move);
+	}
+
+	/**
+	 * Makes a move for the current player. Once the move finishes the player's turn, it's the next player's turn.
+	 * @param move encoded move, which must be legal
+	 */
+	public void makeMove(int move) {
+		mover.makeMove(move);
+		if(mover.getTurnCompletedBinding().get()) {
+			endTurn(true);
+		}
+	}
+
+	/**
+	 * Ends the current player's turn (for moves that were made directly on the game state rather than
+	 * through {@link #makeMove(int)}) and moves on to the next player
+	 * @param completed true if the player completed their turn
+	 */
+	public void endTurn(boolean completed) {
+		boolean firstTurn = firstTurnPending[currentPlayer];
+		firstTurnPending[currentPlayer] = false;
+		consecutiveIncompleteTurns = completed || firstTurn ? 0 : consecutiveIncompleteTurns + 1;
+		numTurns++;
+
+		if(finalTurnsRemaining > 0) {
+			finalTurnsRemaining--;
+		}
+		else if(gameState.getNumTrainsRemaining(currentPlayer) <= GameController.FINAL_ROUND_TRAIN_THRESHOLD) {
+			finalTurnsRemaining = numPlayers;
+		}
+		currentPlayer = (currentPlayer + 1) % numPlayers;
+		startTurn();
+	}
+
+	private void startTurn() {
+		mover = new GameMover(gameState, gameState.getPlayer(currentPlayer), firstTurnPending[currentPlayer]);
+	}
+}
@@ -0,0 +1,152 @@
+package tickettoride;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+import tickettoride.utilities.ImageLoader;
+
+/**
+ * Headless game simulator for evaluating AI players. It plays games back to back on the
+ * calling thread without ever starting the JavaFX toolkit, so it can be run on a machine
+ * without a display.
+ * </br></br>
+ * Every game is dealt from its own seed, taken from a generator created from the simulator's seed. Running
+ * the simulator twice with the same seed (and deterministic players) plays exactly the same games.
+ * </br></br>
+ * Every game can be recorded with {@link #setMoveJournal(MoveJournal)} so that it can be replayed later.
+ * </br></br>
+ * Usage: <pre>Simulator [numGames] [numPlayers] [gameDefinition.json] [seed] [journalFile]</pre>
+ * @author nate
+ */
+public class Simulator {
+
+	/** The definition of the game to be simulated */
+	private final GameDefinition gameDefinition;
+
+	/**
+	 * Creates new players for each game. Players are allowed to keep state between calls to
+	 * {@link Player#executeMove}, so they can't be shared between games.
+	 */
+	private final List<Supplier<? extends Player>> playerFactories;
+
+	/** Generates the seed for each game */
+	private final SplittableRandom seeds;
+
+	/** Total number of turns taken over all of the games that have been run */
+	private long totalTurns = 0;
+
+	/** Journal that the games are recorded in (null if they aren't being recorded) */
+	private MoveJournal journal;
+
+	/**
+	 * @param gameDefinition {@link #gameDefinition}
+	 * @param playerFactories {@link #playerFactories} (one per player, in turn order)
+	 */
+	public Simulator(GameDefinition gameDefinition, List<Supplier<? extends Player>> playerFactories) {
+		this(gameDefinition, playerFactories, System.nanoTime());
+	}
+
+	/**
+	 * @param gameDefinition {@link #gameDefinition}
+	 * @param playerFactories {@link #playerFactories} (one per player, in turn order)
+	 * @param seed seed for the generator that the seeds for each game come from
+	 */
+	public Simulator(GameDefinition gameDefinition, List<Supplier<? extends Player>> playerFactories, long seed) {
+		this.gameDefinition = gameDefinition;
+		this.playerFactories = new ArrayList<>(playerFactories);
+		this.seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * @param journal {@link #journal}
+	 */
+	public void setMoveJournal(MoveJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Plays a single game to completion
+	 * @return the controller of the completed game (for looking up scores, winner, etc.)
+	 */
+	public GameController playGame() {
+		Map<String, Player> players = new LinkedHashMap<>();
+		for(Supplier<? extends Player> factory : playerFactories) {
+			Player player = factory.get();
+			players.put("Player " + (players.size() + 1) + " (" + player.getDescription() + ")", player);
+		}
+		GameState gameState = new GameState(players.values(), gameDefinition, seeds.nextLong());
+		GameController controller = new GameController(gameState, players);
+		controller.setMoveJournal(journal);
+		controller.runGame();
+		totalTurns += controller.getNumTurns();
+		return controller;
+	}
+
+	/**
+	 * Plays the specified number of games one after the other
+	 * @param numGames the number of games to play
+	 * @return the number of games per second that were played
+	 */
+	public double playGames(int numGames) {
+		long start = System.nanoTime();
+		for(int i = 0; i < numGames; i++) {
+			playGame();
+		}
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		return numGames / (elapsed / 1e9);
+	}
+
+	/**
+	 * @return {@link #totalTurns}
+	 */
+	public long getTotalTurns() {
+		return totalTurns;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int numGames = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int numPlayers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		File definitionFile = new File(args.length > 2 ? args[2] : "resources/gameDefinitions/default.json");
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+		File journalFile = args.length > 4 ? new File(args[4]) : null;
+
+		//Nothing is ever displayed, so don't bother decoding any images
+		ImageLoader.setHeadless(true);
+
+		List<Supplier<? extends Player>> factories = new ArrayList<>();
+		for(int i = 0; i < numPlayers; i++) {
+			factories.add(RandomAI::new);
+		}
+		Simulator simulator = new Simulator(GameDefinitionLoader.load(definitionFile), factories, seed);
+
+		//Warm up the JIT before timing anything
+		simulator.playGames(Math.min(numGames, 1000));
+
+		//Only the timed games are recorded
+		MoveJournal journal = journalFile == null ? null : new MoveJournal(journalFile.toPath());
+		simulator.setMoveJournal(journal);
+		double gamesPerSecond;
+		try {
+			gamesPerSecond = simulator.playGames(numGames);
+		}
+		finally {
+			if(journal != null) {
+				journal.close();
+			}
+		}
+		System.out.println(String.format("Played %d games with %d players: %.1f games/second (%.1f turns/game, seed %d)",
+				numGames, numPlayers, gamesPerSecond, (double)simulator.getTotalTurns() / (numGames + Math.min(numGames, 1000)),
+				seed));
+	}
+}
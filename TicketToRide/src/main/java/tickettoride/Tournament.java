@@ -0,0 +1,358 @@
+package tickettoride;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+/**
+ * Plays two player games between a set of AI players and keeps track of how often each one wins.
+ * </br></br>
+ * Games are split up recursively and run on a {@link ForkJoinPool}, so idle threads steal work from busy
+ * ones and the tournament keeps every core busy. Every game gets its own {@link GameState}, {@link GameMover}s
+ * and freshly created players, and each task keeps its own tally that is only merged with the others when
+ * the tasks are joined. The only thing games share is the (read only) {@link GameDefinition}.
+ * </br></br>
+ * Two formats are supported:
+ * <ul>
+ * <li>Round robin: every entrant plays every other entrant the same number of times.</li>
+ * <li>Swiss: entrants are paired with opponents that have a similar record for a fixed number of rounds.
+ * The games within a round are played in parallel.</li>
+ * </ul>
+ * In either format, each pairing plays an even number of games when possible, alternating who goes first.
+ * </br></br>
+ * The seed for each game is picked before any games are started (in the order the games are scheduled),
+ * so a tournament run twice with the same seed deals the same cards in every game no matter which threads
+ * end up playing which games.
+ * </br></br>
+ * Usage: <pre>Tournament [roundRobin|swiss] [gamesPerPairing] [numEntrants] [gameDefinition.json] [seed]</pre>
+ * @author nate
+ */
+public class Tournament {
+
+	/** Number of games a task plays itself rather than splitting up further */
+	private static final int GAMES_PER_TASK = 4;
+
+	/** The definition of the game that every match is played on */
+	private final GameDefinition gameDefinition;
+	/** Name of each entrant */
+	private final List<String> names;
+	/** Creates a new player for each game for each entrant (same order as {@link #names}) */
+	private final List<Supplier<? extends Player>> playerFactories;
+	/** Pool that the games are run on */
+	private final ForkJoinPool pool;
+	/** Generates the seed for each game */
+	private final SplittableRandom seeds;
+
+	/**
+	 * Creates a tournament that runs on the common fork join pool
+	 * @param gameDefinition {@link #gameDefinition}
+	 * @param entrants map from the name of each entrant to a factory for creating their players. Players
+	 * are allowed to keep state between moves, so a new one is created for every game.
+	 */
+	public Tournament(GameDefinition gameDefinition, Map<String, ? extends Supplier<? extends Player>> entrants) {
+		this(gameDefinition, entrants, ForkJoinPool.commonPool(), System.nanoTime());
+	}
+
+	/**
+	 * @param gameDefinition {@link #gameDefinition}
+	 * @param entrants map from the name of each entrant to a factory for creating their players
+	 * @param pool {@link #pool}
+	 * @param seed seed for the generator that the seeds for each game come from
+	 */
+	public Tournament(GameDefinition gameDefinition, Map<String, ? extends Supplier<? extends Player>> entrants,
+			ForkJoinPool pool, long seed) {
+		if(entrants.size() < 2) {
+			throw new IllegalArgumentException("A tournament needs at least 2 entrants");
+		}
+		this.gameDefinition = gameDefinition;
+		this.names = new ArrayList<>(entrants.keySet());
+		this.playerFactories = new ArrayList<>(entrants.values());
+		this.pool = pool;
+		this.seeds = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Every entrant plays every other entrant
+	 * @param gamesPerPairing number of games each pair of entrants plays
+	 * @return the final standings
+	 */
+	public Standings playRoundRobin(int gamesPerPairing) {
+		List<int[]> games = new ArrayList<>();
+		for(int i = 0; i < names.size(); i++) {
+			for(int j = i + 1; j < names.size(); j++) {
+				addGames(games, i, j, gamesPerPairing);
+			}
+		}
+		Standings standings = new Standings(names);
+		standings.add(playGames(games));
+		return standings;
+	}
+
+	/**
+	 * Plays a Swiss tournament. Each round, entrants are sorted by their record so far and paired off from
+	 * the top, avoiding rematches where possible. If there is an odd number of entrants, the lowest ranked
+	 * entrant that hasn't had a bye yet sits out the round and is awarded a win. Once everybody has had a
+	 * bye, they start over from the lowest ranked entrant again.
+	 * @param numRounds number of rounds to play
+	 * @param gamesPerPairing number of games each pair plays in each round
+	 * @return the final standings
+	 */
+	public Standings playSwiss(int numRounds, int gamesPerPairing) {
+		Standings standings = new Standings(names);
+		boolean[][] played = new boolean[names.size()][names.size()];
+		boolean[] hadBye = new boolean[names.size()];
+
+		for(int round = 0; round < numRounds; round++) {
+			List<Integer> ranked = standings.getRanking();
+			if(ranked.size() % 2 == 1) {
+				int bye = ranked.size() - 1;
+				while(bye >= 0 && hadBye[ranked.get(bye)]) {
+					bye--;
+				}
+				if(bye < 0) {
+					//Everybody has had one, so go around again
+					Arrays.fill(hadBye, false);
+					bye = ranked.size() - 1;
+				}
+				hadBye[ranked.get(bye)] = true;
+				standings.byes[ranked.get(bye)]++;
+				ranked.remove(bye);
+			}
+
+			List<int[]> games = new ArrayList<>();
+			while(!ranked.isEmpty()) {
+				int first = ranked.remove(0);
+				//Take the highest ranked entrant that hasn't been played yet, or the lowest ranked one if
+				//they've all been played
+				int opponent = 0;
+				while(opponent < ranked.size() - 1 && played[first][ranked.get(opponent)]) {
+					opponent++;
+				}
+				int second = ranked.remove(opponent);
+				played[first][second] = played[second][first] = true;
+				addGames(games, first, second, gamesPerPairing);
+			}
+			standings.add(playGames(games));
+		}
+		return standings;
+	}
+
+	/**
+	 * Adds the games for one pairing, alternating which entrant goes first
+	 */
+	private static void addGames(List<int[]> games, int entrant1, int entrant2, int numGames) {
+		for(int g = 0; g < numGames; g++) {
+			games.add(g % 2 == 0 ? new int[] { entrant1, entrant2 } : new int[] { entrant2, entrant1 });
+		}
+	}
+
+	private Standings playGames(List<int[]> games) {
+		long[] gameSeeds = new long[games.size()];
+		for(int g = 0; g < gameSeeds.length; g++) {
+			gameSeeds[g] = seeds.nextLong();
+		}
+		return pool.invoke(new GamesTask(games.toArray(new int[games.size()][]), gameSeeds, 0, games.size()));
+	}
+
+	/**
+	 * Plays a single game between two entrants and records the result
+	 * @param seats entrant indices in turn order
+	 * @param seed seed for the game's shuffles
+	 * @param standings where to record the result
+	 */
+	private void playGame(int[] seats, long seed, Standings standings) {
+		Map<String, Player> players = new LinkedHashMap<>();
+		Player[] seated = new Player[seats.length];
+		for(int s = 0; s < seats.length; s++) {
+			seated[s] = playerFactories.get(seats[s]).get();
+			players.put(names.get(seats[s]) + " (seat " + (s + 1) + ")", seated[s]);
+		}
+		GameController controller = new GameController(new GameState(players.values(), gameDefinition, seed), players);
+		controller.runGame();
+
+		Player winner = controller.getWinner();
+		for(int s = 0; s < seats.length; s++) {
+			standings.games[seats[s]]++;
+			standings.points[seats[s]] += controller.getScores().get(seated[s]);
+			if(seated[s] == winner) {
+				standings.wins[seats[s]]++;
+			}
+		}
+	}
+
+	/**
+	 * Plays a range of games, splitting the range in half until it is small enough to play directly.
+	 * Each task returns its own standings, which are merged as the tasks are joined.
+	 */
+	private class GamesTask extends RecursiveTask<Standings> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[][] games;
+		private final long[] gameSeeds;
+		private final int from;
+		private final int to;
+
+		GamesTask(int[][] games, long[] gameSeeds, int from, int to) {
+			this.games = games;
+			this.gameSeeds = gameSeeds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Standings compute() {
+			if(to - from <= GAMES_PER_TASK) {
+				Standings standings = new Standings(names);
+				for(int g = from; g < to; g++) {
+					playGame(games[g], gameSeeds[g], standings);
+				}
+				return standings;
+			}
+			int middle = (from + to) >>> 1;
+			GamesTask second = new GamesTask(games, gameSeeds, middle, to);
+			second.fork();
+			Standings standings = new GamesTask(games, gameSeeds, from, middle).compute();
+			standings.add(second.join());
+			return standings;
+		}
+	}
+
+	/**
+	 * Results for each entrant in a tournament
+	 * @author nate
+	 */
+	public static class Standings {
+
+		private final List<String> names;
+		private final int[] wins;
+		private final int[] games;
+		private final long[] points;
+		/** Rounds sat out in a Swiss tournament (each counts as a win when ranking) */
+		private final int[] byes;
+
+		private Standings(List<String> names) {
+			this.names = names;
+			this.wins = new int[names.size()];
+			this.games = new int[names.size()];
+			this.points = new long[names.size()];
+			this.byes = new int[names.size()];
+		}
+
+		private void add(Standings other) {
+			for(int i = 0; i < names.size(); i++) {
+				wins[i] += other.wins[i];
+				games[i] += other.games[i];
+				points[i] += other.points[i];
+				byes[i] += other.byes[i];
+			}
+		}
+
+		/**
+		 * @return entrant indices, best first. Entrants are ranked by wins (including byes), then average score.
+		 */
+		private List<Integer> getRanking() {
+			List<Integer> ranking = new ArrayList<>();
+			for(int i = 0; i < names.size(); i++) {
+				ranking.add(i);
+			}
+			ranking.sort(Comparator.<Integer>comparingInt(i -> wins[i] + byes[i])
+					.thenComparingDouble(i -> games[i] == 0 ? 0 : (double)points[i] / games[i])
+					.reversed());
+			return ranking;
+		}
+
+		/** @return names of the entrants, best first */
+		public List<String> getRankedNames() {
+			List<String> ranked = new ArrayList<>();
+			getRanking().forEach(i -> ranked.add(names.get(i)));
+			return ranked;
+		}
+
+		/** @return the number of games the entrant won (not counting byes) */
+		public int getWins(String entrant) {
+			return wins[indexOf(entrant)];
+		}
+
+		/** @return the number of games the entrant played */
+		public int getGamesPlayed(String entrant) {
+			return games[indexOf(entrant)];
+		}
+
+		/** @return fraction of games played that the entrant won (0 if they haven't played any) */
+		public double getWinRate(String entrant) {
+			int i = indexOf(entrant);
+			return games[i] == 0 ? 0 : (double)wins[i] / games[i];
+		}
+
+		/** @return the entrant's average final score */
+		public double getAverageScore(String entrant) {
+			int i = indexOf(entrant);
+			return games[i] == 0 ? 0 : (double)points[i] / games[i];
+		}
+
+		/** @return total number of games played in the tournament */
+		public int getTotalGames() {
+			//Every game has two entrants
+			return Arrays.stream(games).sum() / 2;
+		}
+
+		private int indexOf(String entrant) {
+			int i = names.indexOf(entrant);
+			if(i < 0) {
+				throw new IllegalArgumentException(entrant + " is not in the tournament");
+			}
+			return i;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder table = new StringBuilder();
+			for(String name : getRankedNames()) {
+				table.append(String.format("%-30s %6d/%-6d %6.1f%% win rate %8.1f avg score%n", name,
+						getWins(name), getGamesPlayed(name), 100 * getWinRate(name), getAverageScore(name)));
+			}
+			return table.toString();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean swiss = args.length > 0 && args[0].equalsIgnoreCase("swiss");
+		int gamesPerPairing = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int numEntrants = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+		File definitionFile = new File(args.length > 3 ? args[3] : "resources/gameDefinitions/default.json");
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+		Map<String, Supplier<? extends Player>> entrants = new LinkedHashMap<>();
+		for(int i = 0; i < numEntrants; i++) {
+			entrants.put("Random AI " + (i + 1), RandomAI::new);
+		}
+		Tournament tournament = new Tournament(GameDefinitionLoader.load(definitionFile), entrants,
+				ForkJoinPool.commonPool(), seed);
+
+		long start = System.nanoTime();
+		Standings standings = swiss ? tournament.playSwiss(Math.max(1, numEntrants - 1), gamesPerPairing) :
+				tournament.playRoundRobin(gamesPerPairing);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.print(standings);
+		System.out.println(String.format("Played %d games on %d threads: %.1f games/second (seed %d)",
+				standings.getTotalGames(), ForkJoinPool.commonPool().getParallelism(),
+				standings.getTotalGames() / seconds, seed));
+	}
+}
@@ -0,0 +1,154 @@
+package tickettoride.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ObservableSet;
+import javafx.collections.SetChangeListener;
+
+/**
+ * Unmodifiable {@link ObservableSet} view over a {@link BitSet}. Bit i being set means that
+ * element i of {@link #elements} is in the set.
+ * </br></br>
+ * Like {@link IntArrayMapView}, this reads straight through to the bits and the owner calls
+ * {@link #fireElementAdded(int)} after setting a bit (or {@link #fireElementRemoved(int)} after clearing one).
+ * Nothing is allocated when nobody is listening.
+ * @author nate
+ *
+ * @param <E> element type
+ */
+class BitSetSetView<E> extends AbstractSet<E> implements ObservableSet<E> {
+
+	/** Every element that could possibly be in the set */
+	private final E[] elements;
+	/** Map from element to its index in {@link #elements} */
+	private final Map<E, Integer> indices;
+	/** The bits indicating which elements are in the set (shared with the owner of the view) */
+	private final BitSet bits;
+
+	private final List<SetChangeListener<? super E>> changeListeners = new ArrayList<>(1);
+	private final List<InvalidationListener> invalidationListeners = new ArrayList<>(1);
+
+	/**
+	 * @param elements {@link #elements}
+	 * @param indices {@link #indices}
+	 * @param bits {@link #bits}
+	 */
+	BitSetSetView(E[] elements, Map<E, Integer> indices, BitSet bits) {
+		this.elements = elements;
+		this.indices = indices;
+		this.bits = bits;
+	}
+
+	/**
+	 * Notifies any listeners that the element at the specified index was added. The bit should
+	 * already be set.
+	 * @param index index of the element that was added
+	 */
+	void fireElementAdded(int index) {
+		fireChange(index, true);
+	}
+
+	/**
+	 * Notifies any listeners that the element at the specified index was removed. The bit should
+	 * already be cleared.
+	 * @param index index of the element that was removed
+	 */
+	void fireElementRemoved(int index) {
+		fireChange(index, false);
+	}
+
+	private void fireChange(int index, boolean added) {
+		if(changeListeners.isEmpty() && invalidationListeners.isEmpty()) {
+			return;
+		}
+		for(InvalidationListener listener : new ArrayList<>(invalidationListeners)) {
+			listener.invalidated(this);
+		}
+		if(!changeListeners.isEmpty()) {
+			SetChangeListener.Change<E> change = new SetChangeListener.Change<E>(this) {
+				@Override
+				public boolean wasAdded() {
+					return added;
+				}
+
+				@Override
+				public boolean wasRemoved() {
+					return !added;
+				}
+
+				@Override
+				public E getElementAdded() {
+					return added ? elements[index] : null;
+				}
+
+				@Override
+				public E getElementRemoved() {
+					return added ? null : elements[index];
+				}
+			};
+			for(SetChangeListener<? super E> listener : new ArrayList<>(changeListeners)) {
+				listener.onChanged(change);
+			}
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		Integer index = indices.get(o);
+		return index != null && bits.get(index);
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int next = bits.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public E next() {
+				if(next < 0) {
+					throw new NoSuchElementException();
+				}
+				E element = elements[next];
+				next = bits.nextSetBit(next + 1);
+				return element;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return bits.cardinality();
+	}
+
+	@Override
+	public void addListener(InvalidationListener listener) {
+		invalidationListeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(InvalidationListener listener) {
+		invalidationListeners.remove(listener);
+	}
+
+	@Override
+	public void addListener(SetChangeListener<? super E> listener) {
+		changeListeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(SetChangeListener<? super E> listener) {
+		changeListeners.remove(listener);
+	}
+}
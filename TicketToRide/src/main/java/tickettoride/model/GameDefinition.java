@@ -1,11 +1,16 @@
 package tickettoride.model;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import tickettoride.model.MapData.CardColor;
 import tickettoride.model.MapData.Destination;
+import tickettoride.utilities.LazyImage;
 
 /**
  * Defines a Ticket to ride game (there are a variety of releases of ticket to 
@@ -24,6 +29,11 @@ public class GameDefinition {
 	 * Image file containing the background image to be displayed in the map pane 
 	 */
 	private final File backgroundImage;
+	/**
+	 * The {@link #backgroundImage} itself, which is only loaded when a UI asks for it. It's shared by every
+	 * game played with this definition.
+	 */
+	private final LazyImage background;
 	/**
 	 * {@link MapData} object containing the destination and connection information.
 	 */
@@ -32,17 +42,35 @@ public class GameDefinition {
 	 * Number of train pieces that each player will start the game with
 	 */
 	private final int initialNumberOfTrainsPerPlayer;
+	/**
+	 * Number of transportation cards of each color in the deck
+	 */
+	private final Map<CardColor, Integer> transportationCardCounts;
+	/**
+	 * All of the destination cards in the game (the order is preserved so that a shuffle
+	 * of the deck is reproducible)
+	 */
+	private final Set<DestinationCard> destinationCards;
 	
 	/**
 	 * Initializes a game definition with the specified parameters
 	 * @param backgroundImage {@link #backgroundImage}
 	 * @param initialMapData {@link #initialMapData}
 	 * @param numTrains {@link #initialNumberOfTrainsPerPlayer}
+	 * @param transportationCardCounts {@link #transportationCardCounts}. Colors that are missing
+	 * from the map will not be in the deck.
+	 * @param destinationCards {@link #destinationCards}
 	 */
-	public GameDefinition(File backgroundImage, MapData initialMapData, int numTrains) {
+	public GameDefinition(File backgroundImage, MapData initialMapData, int numTrains,
+							Map<CardColor, Integer> transportationCardCounts,
+							Collection<DestinationCard> destinationCards) {
 		this.backgroundImage = backgroundImage;
+		this.background = new LazyImage(backgroundImage);
 		this.initialMapData = initialMapData;
 		this.initialNumberOfTrainsPerPlayer = numTrains;
+		this.transportationCardCounts = new EnumMap<>(CardColor.class);
+		this.transportationCardCounts.putAll(transportationCardCounts);
+		this.destinationCards = Collections.unmodifiableSet(new LinkedHashSet<>(destinationCards));
 	}
 
 	/**
@@ -52,6 +80,13 @@ public class GameDefinition {
 		return backgroundImage;
 	}
 
+	/**
+	 * @return {@link #background}
+	 */
+	public LazyImage getBackground() {
+		return background;
+	}
+
 	/**
 	 * @return a copy of the {@link #initialMapData}
 	 */
@@ -74,19 +109,14 @@ public class GameDefinition {
 	 * @return the number of cards of that color for this game
 	 */
 	public int getNumberOfTransportationCards(CardColor color) {
-		//TODO should return a number from the game definition file.
-		//to be completed by student.
-		//Note that the student will also have to either modify the constructor or add a
-		//mutator to get this to work.
-		return 10;
+		return transportationCardCounts.getOrDefault(color, 0);
 	}
 	
+	/**
+	 * @return unmodifiable view of {@link #destinationCards}
+	 */
 	public Set<DestinationCard> getDestinationCards() {
-		//TODO should return all of the destination cards for the game. To
-		//be completed by the student.
-		//Note that the student will also have to either modify the constructor or add a
-		//mutator to get this to work.
-		return Collections.emptySet();
+		return destinationCards;
 	}
 	
 	public static class DestinationCard {
@@ -0,0 +1,492 @@
+package tickettoride.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.model.MapData.Destination;
+
+/**
+ * Loads {@link GameDefinition}s from game definition JSON files (see resources/gameDefinitions/default.json
+ * for the format).
+ * </br></br>
+ * The JSON is read in a single pass with a streaming parser. Connections and destination cards refer to
+ * destinations by name, so they are only resolved once the whole file has been read (this means the
+ * sections can appear in any order).
+ * </br></br>
+ * After a JSON file has been parsed, a compact binary snapshot of it is written next to it (with
+ * {@link #CACHE_SUFFIX} appended to the file name). Later loads memory map the snapshot instead of
+ * parsing the JSON again, as long as the JSON file's size and modification time haven't changed. Writing
+ * the snapshot is best effort; if the directory isn't writable, the JSON is simply parsed every time.
+ * @author nate
+ */
+public class GameDefinitionLoader {
+
+	/** Appended to the name of the JSON file to get the name of the binary snapshot */
+	public static final String CACHE_SUFFIX = ".bin";
+
+	/** Longest connection a game definition can have, since moves can't store more wilds than that (see {@link tickettoride.Move}) */
+	public static final int MAX_CONNECTION_LENGTH = 255;
+	/** Most connections a game definition can have, since moves can't store a bigger connection index */
+	public static final int MAX_CONNECTIONS = 1 << 16;
+
+	/** First 4 bytes of every snapshot ("TTRB") */
+	private static final int CACHE_MAGIC = 0x54545242;
+	/** Must be incremented whenever the snapshot layout changes */
+	private static final int CACHE_VERSION = 2;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * Loads the game definition from the specified JSON file, using the binary snapshot if there is
+	 * an up to date one.
+	 * @param jsonFile game definition file
+	 * @return the game definition
+	 * @throws IOException if the file can't be read or isn't a valid game definition. The message
+	 * describes what is wrong with it.
+	 */
+	public static GameDefinition load(File jsonFile) throws IOException {
+		File cacheFile = getCacheFile(jsonFile);
+		long jsonLength = jsonFile.length();
+		long jsonLastModified = jsonFile.lastModified();
+
+		if(cacheFile.isFile()) {
+			try {
+				RawDefinition cached = readCache(cacheFile, jsonLength, jsonLastModified);
+				if(cached != null) {
+					return cached.toGameDefinition(jsonFile);
+				}
+			}
+			catch(IOException | RuntimeException e) {
+				//A corrupt or truncated snapshot is no worse than a missing one. Fall through and reparse.
+			}
+		}
+
+		RawDefinition raw = parseJson(jsonFile);
+		GameDefinition definition = raw.toGameDefinition(jsonFile);
+		try {
+			writeCache(cacheFile, raw, jsonLength, jsonLastModified);
+		}
+		catch(IOException e) {
+			//The snapshot is only an optimization
+		}
+		return definition;
+	}
+
+	/**
+	 * @param jsonFile game definition file
+	 * @return the file that the binary snapshot of the specified game definition file is stored in
+	 */
+	public static File getCacheFile(File jsonFile) {
+		return new File(jsonFile.getPath() + CACHE_SUFFIX);
+	}
+
+	/**
+	 * Reads the entire JSON file in one pass
+	 */
+	static RawDefinition parseJson(File jsonFile) throws IOException {
+		RawDefinition raw = new RawDefinition();
+		try(JsonParser parser = JSON_FACTORY.createParser(jsonFile)) {
+			expect(parser, parser.nextToken(), JsonToken.START_OBJECT, "game definition");
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				switch(field) {
+				case "backgroundImage":
+					raw.backgroundImage = parser.getValueAsString();
+					break;
+				case "map":
+					expect(parser, value, JsonToken.START_OBJECT, field);
+					parseMap(parser, raw);
+					break;
+				case "gameRules":
+					expect(parser, value, JsonToken.START_OBJECT, field);
+					parseGameRules(parser, raw);
+					break;
+				default:
+					parser.skipChildren();
+				}
+			}
+		}
+		raw.validate();
+		return raw;
+	}
+
+	private static void parseMap(JsonParser parser, RawDefinition raw) throws IOException {
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if(field.equals("destinations")) {
+				expect(parser, value, JsonToken.START_ARRAY, field);
+				while(parser.nextToken() == JsonToken.START_OBJECT) {
+					String name = null;
+					double x = Double.NaN;
+					double y = Double.NaN;
+					while(parser.nextToken() == JsonToken.FIELD_NAME) {
+						String destField = parser.getCurrentName();
+						parser.nextToken();
+						switch(destField) {
+						case "name": name = parser.getValueAsString(); break;
+						case "xFraction": x = parser.getValueAsDouble(); break;
+						case "yFraction": y = parser.getValueAsDouble(); break;
+						default: parser.skipChildren();
+						}
+					}
+					if(name == null || Double.isNaN(x) || Double.isNaN(y)) {
+						throw new IOException("Every destination needs a name, xFraction and yFraction (" +
+								parser.getCurrentLocation() + ")");
+					}
+					raw.destinationNames.add(name);
+					raw.destinationXs.add(x);
+					raw.destinationYs.add(y);
+				}
+			}
+			else if(field.equals("connections")) {
+				expect(parser, value, JsonToken.START_ARRAY, field);
+				while(parser.nextToken() == JsonToken.START_OBJECT) {
+					String start = null;
+					String end = null;
+					int numSegments = 0;
+					CardColor color = null;
+					while(parser.nextToken() == JsonToken.FIELD_NAME) {
+						String connField = parser.getCurrentName();
+						parser.nextToken();
+						switch(connField) {
+						case "start": start = parser.getValueAsString(); break;
+						case "end": end = parser.getValueAsString(); break;
+						case "numSegments": numSegments = parser.getValueAsInt(); break;
+						case "color": color = parseColor(parser); break;
+						default: parser.skipChildren();
+						}
+					}
+					if(start == null || end == null || numSegments <= 0 || numSegments > MAX_CONNECTION_LENGTH || color == null) {
+						throw new IOException("Every connection needs a start, end, color and numSegments from 1 to " + MAX_CONNECTION_LENGTH + " (" +
+								parser.getCurrentLocation() + ")");
+					}
+					raw.connectionStarts.add(start);
+					raw.connectionEnds.add(end);
+					raw.connectionColors.add(color);
+					raw.connectionSegments.add(numSegments);
+				}
+			}
+			else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private static void parseGameRules(JsonParser parser, RawDefinition raw) throws IOException {
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if(field.equals("numTrainsPerPlayer")) {
+				raw.numTrains = parser.getValueAsInt();
+			}
+			else if(field.equals("cardInfo")) {
+				expect(parser, value, JsonToken.START_OBJECT, field);
+				parseCardInfo(parser, raw);
+			}
+			else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private static void parseCardInfo(JsonParser parser, RawDefinition raw) throws IOException {
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if(field.equals("transportationCardCounts")) {
+				expect(parser, value, JsonToken.START_OBJECT, field);
+				while(parser.nextToken() == JsonToken.FIELD_NAME) {
+					CardColor color = parseColor(parser);
+					parser.nextToken();
+					raw.cardCounts.put(color, parser.getValueAsInt());
+				}
+			}
+			else if(field.equals("destinationCards")) {
+				expect(parser, value, JsonToken.START_ARRAY, field);
+				while(parser.nextToken() == JsonToken.START_OBJECT) {
+					String start = null;
+					String end = null;
+					int points = 0;
+					while(parser.nextToken() == JsonToken.FIELD_NAME) {
+						String cardField = parser.getCurrentName();
+						parser.nextToken();
+						switch(cardField) {
+						case "start": start = parser.getValueAsString(); break;
+						case "end": end = parser.getValueAsString(); break;
+						case "points": points = parser.getValueAsInt(); break;
+						default: parser.skipChildren();
+						}
+					}
+					if(start == null || end == null) {
+						throw new IOException("Every destination card needs a start and end (" +
+								parser.getCurrentLocation() + ")");
+					}
+					raw.ticketStarts.add(start);
+					raw.ticketEnds.add(end);
+					raw.ticketPoints.add(points);
+				}
+			}
+			else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	/**
+	 * Parses the current token (either a value or a field name) as a card color
+	 */
+	private static CardColor parseColor(JsonParser parser) throws IOException {
+		String text = parser.getText();
+		try {
+			return CardColor.valueOf(text.toUpperCase(Locale.ROOT));
+		}
+		catch(IllegalArgumentException e) {
+			throw new IOException("Unknown color \"" + text + "\" (" + parser.getCurrentLocation() + ")");
+		}
+	}
+
+	private static void expect(JsonParser parser, JsonToken actual, JsonToken expected, String what) throws IOException {
+		if(actual != expected) {
+			throw new IOException("Expected " + what + " to be " + expected + " but found " + actual +
+					" (" + parser.getCurrentLocation() + ")");
+		}
+	}
+
+	/**
+	 * Memory maps the snapshot and decodes it.
+	 * @return the definition, or null if the snapshot is from a different version of the JSON file
+	 * or a different snapshot format
+	 */
+	private static RawDefinition readCache(File cacheFile, long jsonLength, long jsonLastModified) throws IOException {
+		try(FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION ||
+					buffer.getLong() != jsonLength || buffer.getLong() != jsonLastModified) {
+				return null;
+			}
+
+			RawDefinition raw = new RawDefinition();
+			raw.backgroundImage = readString(buffer);
+			raw.numTrains = buffer.getInt();
+
+			int numColors = buffer.getInt();
+			for(int i = 0; i < numColors; i++) {
+				raw.cardCounts.put(CardColor.values()[buffer.get()], buffer.getInt());
+			}
+
+			int numDestinations = buffer.getInt();
+			for(int i = 0; i < numDestinations; i++) {
+				raw.destinationNames.add(readString(buffer));
+				raw.destinationXs.add(buffer.getDouble());
+				raw.destinationYs.add(buffer.getDouble());
+			}
+
+			int numConnections = buffer.getInt();
+			for(int i = 0; i < numConnections; i++) {
+				raw.connectionStarts.add(raw.destinationNames.get(buffer.getShort()));
+				raw.connectionEnds.add(raw.destinationNames.get(buffer.getShort()));
+				raw.connectionColors.add(CardColor.values()[buffer.get()]);
+				raw.connectionSegments.add((int)buffer.getShort());
+			}
+
+			int numTickets = buffer.getInt();
+			for(int i = 0; i < numTickets; i++) {
+				raw.ticketStarts.add(raw.destinationNames.get(buffer.getShort()));
+				raw.ticketEnds.add(raw.destinationNames.get(buffer.getShort()));
+				raw.ticketPoints.add(buffer.getInt());
+			}
+			return raw;
+		}
+	}
+
+	/**
+	 * Writes the snapshot to a temporary file and then moves it into place, so that other processes
+	 * loading the same definition never see a partially written snapshot.
+	 */
+	private static void writeCache(File cacheFile, RawDefinition raw, long jsonLength, long jsonLastModified) throws IOException {
+		Map<String, Integer> destinationIndices = new HashMap<>();
+		for(int i = 0; i < raw.destinationNames.size(); i++) {
+			destinationIndices.put(raw.destinationNames.get(i), i);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(CACHE_MAGIC);
+		out.writeInt(CACHE_VERSION);
+		out.writeLong(jsonLength);
+		out.writeLong(jsonLastModified);
+		writeString(out, raw.backgroundImage);
+		out.writeInt(raw.numTrains);
+
+		out.writeInt(raw.cardCounts.size());
+		for(Map.Entry<CardColor, Integer> entry : raw.cardCounts.entrySet()) {
+			out.writeByte(entry.getKey().ordinal());
+			out.writeInt(entry.getValue());
+		}
+
+		out.writeInt(raw.destinationNames.size());
+		for(int i = 0; i < raw.destinationNames.size(); i++) {
+			writeString(out, raw.destinationNames.get(i));
+			out.writeDouble(raw.destinationXs.get(i));
+			out.writeDouble(raw.destinationYs.get(i));
+		}
+
+		out.writeInt(raw.connectionStarts.size());
+		for(int i = 0; i < raw.connectionStarts.size(); i++) {
+			out.writeShort(destinationIndices.get(raw.connectionStarts.get(i)));
+			out.writeShort(destinationIndices.get(raw.connectionEnds.get(i)));
+			out.writeByte(raw.connectionColors.get(i).ordinal());
+			out.writeShort(raw.connectionSegments.get(i));
+		}
+
+		out.writeInt(raw.ticketStarts.size());
+		for(int i = 0; i < raw.ticketStarts.size(); i++) {
+			out.writeShort(destinationIndices.get(raw.ticketStarts.get(i)));
+			out.writeShort(destinationIndices.get(raw.ticketEnds.get(i)));
+			out.writeInt(raw.ticketPoints.get(i));
+		}
+		out.flush();
+
+		Path target = cacheFile.toPath();
+		Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), cacheFile.getName(), ".tmp");
+		try {
+			Files.write(temp, bytes.toByteArray());
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] utf8 = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] utf8 = new byte[buffer.getInt()];
+		buffer.get(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Everything read from a game definition file, before destination names are resolved into
+	 * {@link Destination} objects. This is also exactly what goes into the binary snapshot.
+	 */
+	static class RawDefinition {
+		String backgroundImage;
+		int numTrains = -1;
+		final Map<CardColor, Integer> cardCounts = new EnumMap<>(CardColor.class);
+
+		final List<String> destinationNames = new ArrayList<>();
+		final List<Double> destinationXs = new ArrayList<>();
+		final List<Double> destinationYs = new ArrayList<>();
+
+		final List<String> connectionStarts = new ArrayList<>();
+		final List<String> connectionEnds = new ArrayList<>();
+		final List<CardColor> connectionColors = new ArrayList<>();
+		final List<Integer> connectionSegments = new ArrayList<>();
+
+		final List<String> ticketStarts = new ArrayList<>();
+		final List<String> ticketEnds = new ArrayList<>();
+		final List<Integer> ticketPoints = new ArrayList<>();
+
+		/**
+		 * Checks that all of the required sections were present and that every destination name
+		 * that is referred to exists.
+		 */
+		void validate() throws IOException {
+			if(backgroundImage == null) {
+				throw new IOException("Game definition is missing backgroundImage");
+			}
+			if(numTrains < 0) {
+				throw new IOException("Game definition is missing gameRules.numTrainsPerPlayer");
+			}
+			if(destinationNames.isEmpty()) {
+				throw new IOException("Game definition is missing map.destinations");
+			}
+			if(cardCounts.isEmpty()) {
+				throw new IOException("Game definition is missing gameRules.cardInfo.transportationCardCounts");
+			}
+			if(destinationNames.size() > Short.MAX_VALUE) {
+				throw new IOException("Game definitions can't have more than " + Short.MAX_VALUE + " destinations");
+			}
+			if(connectionStarts.size() > MAX_CONNECTIONS) {
+				throw new IOException("Game definitions can't have more than " + MAX_CONNECTIONS + " connections");
+			}
+			//Big maps have thousands of references, so look the names up in a set rather than the list
+			Set<String> names = new HashSet<>(destinationNames);
+			for(List<String> referenced : List.of(connectionStarts, connectionEnds, ticketStarts, ticketEnds)) {
+				for(String name : referenced) {
+					if(!names.contains(name)) {
+						throw new IOException("Unknown destination \"" + name + "\"");
+					}
+				}
+			}
+		}
+
+		/**
+		 * @param jsonFile the file this was read from. Relative background image paths are relative to
+		 * the directory that the file is in.
+		 */
+		GameDefinition toGameDefinition(File jsonFile) {
+			Map<String, Destination> destinations = new HashMap<>();
+			List<Destination> orderedDestinations = new ArrayList<>(destinationNames.size());
+			for(int i = 0; i < destinationNames.size(); i++) {
+				Destination dest = new Destination(destinationNames.get(i), destinationXs.get(i), destinationYs.get(i));
+				destinations.put(dest.getName(), dest);
+				orderedDestinations.add(dest);
+			}
+
+			List<Connection> connections = new ArrayList<>(connectionStarts.size());
+			for(int i = 0; i < connectionStarts.size(); i++) {
+				connections.add(new Connection(destinations.get(connectionStarts.get(i)),
+						destinations.get(connectionEnds.get(i)),
+						connectionColors.get(i),
+						connectionSegments.get(i)));
+			}
+
+			List<DestinationCard> tickets = new ArrayList<>(ticketStarts.size());
+			for(int i = 0; i < ticketStarts.size(); i++) {
+				tickets.add(new DestinationCard(destinations.get(ticketStarts.get(i)),
+						destinations.get(ticketEnds.get(i)),
+						ticketPoints.get(i)));
+			}
+
+			File background = new File(backgroundImage);
+			if(!background.isAbsolute()) {
+				background = new File(jsonFile.getAbsoluteFile().getParentFile(), backgroundImage);
+			}
+			return new GameDefinition(background, new IndexedMapData(orderedDestinations, connections),
+					numTrains, cardCounts, tickets);
+		}
+	}
+}
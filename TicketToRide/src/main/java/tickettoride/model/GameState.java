@@ -1,91 +1,354 @@
 package tickettoride.model;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableBooleanValue;
 import javafx.beans.value.ObservableIntegerValue;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
 import javafx.collections.ObservableMap;
 import javafx.collections.ObservableSet;
 import javafx.scene.image.Image;
 import tickettoride.model.GameDefinition.DestinationCard;
 import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
 import tickettoride.players.Player;
-import tickettoride.utilities.ImageLoader;
 
 /**
  * This class keeps track of the entire state of the game (including the map, various decks, players
  * hands, etc.)
  * </br></br>
- * Students will need to modify this file, but I wouldn't recommend modifying it yet because there are still
- * some more changes that I need to make to it.
+ * The game state only stores the state, it doesn't validate whether or not a change is legal. That is
+ * the job of the {@link tickettoride.Mover}.
  * </br></br>
- * TODO for Nate: add more documentation to this class once it's a little more solidified.
+ * Internally, everything is stored in primitive arrays (card counts are indexed by
+ * {@link CardColor#ordinal()}, players by their position in the turn order, and claimed connections and
+ * destination cards are bit sets) so that simulations don't box integers or fire listeners on every move.
+ * The observable collections returned by the getters are read-only views over those arrays. They are
+ * only created when something asks for them, and they only do any work when something is listening
+ * to them.
+ * </br></br>
+ * Nothing in here requires the JavaFX toolkit to be running (the observable collections are part of
+ * javafx.base), so a game state can be created and played in a headless simulation. The only exception
+ * is {@link #getBackgroundImage()}, which is only loaded the first time a UI asks for it (and is then shared
+ * by every game with the same {@link GameDefinition}).
  * @author nate
  *
  */
 public class GameState {
 
+	/** Number of face up transportation cards */
+	public static final int NUM_FACE_UP_CARDS = 5;
+	/** Number of transportation cards dealt to each player at the start of the game */
+	public static final int INITIAL_HAND_SIZE = 4;
+	/** Maximum number of destination cards that are drawn at once */
+	public static final int DESTINATION_CARDS_PER_DRAW = 3;
+	/** If this many wilds are ever face up at once, all the face up cards are discarded and replaced */
+	private static final int MAX_FACE_UP_WILDS = 3;
+	/** Value in {@link #faceUpCards} indicating that there is no card in that position */
+	private static final int NO_CARD = -1;
+
+	private static final CardColor[] COLORS = CardColor.values();
+	private static final int WILD = CardColor.ANY.ordinal();
+
 	private final GameDefinition gameDefinition;
-	private final MapData mapData;
-	private final Image background;
-	
-	
+
+	/** The players in turn order */
+	private final Player[] players;
+	private final List<Player> playersList;
+
+	/** Seed that {@link #random} was created with. Replaying a game with the same seed deals the same cards. */
+	private final long seed;
+	/**
+	 * Used for all of the shuffling. Every game has its own generator, so games being simulated on
+	 * different threads don't contend over a shared one.
+	 */
+	private final SplittableRandom random;
+
+	/** Face down transportation cards (color ordinals). Index {@link #deckSize} - 1 is the top of the deck */
+	private int[] transportationDeck;
+	private int deckSize = 0;
+	/** Number of cards of each color in the discard pile. These are shuffled back in when the deck runs out */
+	private final int[] discardCounts = new int[COLORS.length];
+	private int discardSize = 0;
+	/** Color ordinals of the face up cards, or {@link #NO_CARD} */
+	private final int[] faceUpCards = new int[NUM_FACE_UP_CARDS];
+	private final BooleanProperty transportationDeckRemaining = new SimpleBooleanProperty();
+
+	/** Every destination card in the game. The indices into this array are used everywhere else */
+	private final DestinationCard[] allDestinationCards;
+	/** Map from destination card to its index in {@link #allDestinationCards}. Shared by copies of the game state. */
+	private final Map<DestinationCard, Integer> destinationCardIndices;
+	/** Circular buffer of destination card indices. {@link #destinationDeckTop} is the top of the deck */
+	private final int[] destinationDeck;
+	private int destinationDeckTop = 0;
+	private int destinationDeckSize = 0;
+	private final IntegerProperty destinationCardsRemaining = new SimpleIntegerProperty();
+
+	/** Number of transportation cards of each color in each player's hand, [player][color] */
+	private final int[][] hands;
+	/** Destination cards in each player's hand */
+	private final BitSet[] playersDestinationCards;
+	/** Number of unused trains for each player */
+	private final int[] trainsRemaining;
+
+	/**
+	 * The map for this game (a clone of the definition's map). The connection indices are used for the
+	 * bit sets below
+	 */
+	private final IndexedMapData indexedMap;
+	/** Connections that have been claimed by anybody */
+	private final BitSet claimedConnections;
+	/** Connections claimed by each player */
+	private final BitSet[] playersConnections;
+	/**
+	 * Destinations connected by each player's connections, over the destination indices. These are updated
+	 * as connections are claimed so that destination cards can be checked at any point in the game.
+	 */
+	private final UnionFind[] playersNetworks;
+
+	//Observable views. These are created lazily by the getters.
+	private IntArrayMapView<CardColor>[] handViews;
+	private BitSetSetView<DestinationCard>[] destinationCardViews;
+	private IntArrayMapView<Player> trainsView;
+	private FaceUpCardsView faceUpCardsView;
+
+	/**
+	 * Sets up a new game. The decks are shuffled, the face up cards are dealt and each player is
+	 * dealt their initial hand.
+	 * @param players the players in turn order
+	 * @param gameDefinition the definition of the game to be played
+	 */
 	public GameState(Collection<Player> players, GameDefinition gameDefinition) {
+		this(players, gameDefinition, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Sets up a new game with the decks shuffled by a generator created from the specified seed. Two games
+	 * created with the same seed, definition and number of players start out identical, and stay identical
+	 * as long as the players make the same moves.
+	 * @param players the players in turn order
+	 * @param gameDefinition the definition of the game to be played
+	 * @param seed {@link #seed}
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public GameState(Collection<Player> players, GameDefinition gameDefinition, long seed) {
 		this.gameDefinition = gameDefinition;
-		mapData = this.gameDefinition.getInitialMapData();
-		
-		Image nonFinalBackgroundImage = null;
-		try {
-			nonFinalBackgroundImage = ImageLoader.load(gameDefinition.getBackgroundImage());
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		this.players = players.toArray(new Player[players.size()]);
+		this.playersList = Collections.unmodifiableList(List.of(this.players));
+		int numPlayers = this.players.length;
+
+		int totalCards = 0;
+		for(CardColor color : COLORS) {
+			totalCards += gameDefinition.getNumberOfTransportationCards(color);
+		}
+		transportationDeck = new int[totalCards];
+		for(CardColor color : COLORS) {
+			for(int i = 0; i < gameDefinition.getNumberOfTransportationCards(color); i++) {
+				transportationDeck[deckSize++] = color.ordinal();
+			}
+		}
+		shuffle(transportationDeck, deckSize);
+
+		allDestinationCards = gameDefinition.getDestinationCards().toArray(new DestinationCard[0]);
+		destinationCardIndices = new HashMap<>();
+		destinationDeck = new int[allDestinationCards.length];
+		for(int i = 0; i < allDestinationCards.length; i++) {
+			destinationCardIndices.put(allDestinationCards[i], i);
+			destinationDeck[i] = i;
+		}
+		destinationDeckSize = allDestinationCards.length;
+		shuffle(destinationDeck, destinationDeckSize);
+
+		//Definitions built from some other kind of map get indexed here (which copies the map)
+		MapData mapData = gameDefinition.getInitialMapData();
+		indexedMap = mapData instanceof IndexedMapData ?
+				(IndexedMapData)mapData : new IndexedMapData(mapData.getDestinations(), mapData.getConnections());
+		indexedMap.setClaimListener(this::connectionClaimed);
+		int numConnections = indexedMap.getNumConnections();
+		claimedConnections = new BitSet(numConnections);
+
+		hands = new int[numPlayers][COLORS.length];
+		playersDestinationCards = new BitSet[numPlayers];
+		playersConnections = new BitSet[numPlayers];
+		playersNetworks = new UnionFind[numPlayers];
+		trainsRemaining = new int[numPlayers];
+		handViews = new IntArrayMapView[numPlayers];
+		destinationCardViews = new BitSetSetView[numPlayers];
+		for(int p = 0; p < numPlayers; p++) {
+			playersDestinationCards[p] = new BitSet(allDestinationCards.length);
+			playersConnections[p] = new BitSet(numConnections);
+			playersNetworks[p] = new UnionFind(indexedMap.getNumDestinations());
+			trainsRemaining[p] = gameDefinition.getInitialNumberOfTrainsPerPlayer();
+
+			for(int i = 0; i < INITIAL_HAND_SIZE && deckSize > 0; i++) {
+				hands[p][drawFromDeck()]++;
+			}
+		}
+
+		for(int i = 0; i < NUM_FACE_UP_CARDS; i++) {
+			faceUpCards[i] = drawFromDeck();
+		}
+		replaceFaceUpCardsIfTooManyWilds();
+		updateDeckProperties();
+	}
+
+
+	/**
+	 * Creates a copy of another game state (for example, so that an AI can try out moves without changing
+	 * the real game). The copy shuffles with its own generator, created from the specified seed, so it
+	 * doesn't change the other game state's shuffles. Nothing listening to the other game state's views or
+	 * map is notified of changes to the copy.
+	 * @param other the game state to copy
+	 * @param seed {@link #seed} for the copy
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public GameState(GameState other, long seed) {
+		this.gameDefinition = other.gameDefinition;
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		this.players = other.players;
+		this.playersList = other.playersList;
+		int numPlayers = players.length;
+
+		transportationDeck = other.transportationDeck.clone();
+		deckSize = other.deckSize;
+		System.arraycopy(other.discardCounts, 0, discardCounts, 0, discardCounts.length);
+		discardSize = other.discardSize;
+		System.arraycopy(other.faceUpCards, 0, faceUpCards, 0, faceUpCards.length);
+
+		allDestinationCards = other.allDestinationCards;
+		destinationCardIndices = other.destinationCardIndices;
+		destinationDeck = other.destinationDeck.clone();
+		destinationDeckTop = other.destinationDeckTop;
+		destinationDeckSize = other.destinationDeckSize;
+
+		indexedMap = other.indexedMap.clone();
+		indexedMap.setClaimListener(this::connectionClaimed);
+		claimedConnections = (BitSet)other.claimedConnections.clone();
+
+		hands = new int[numPlayers][];
+		playersDestinationCards = new BitSet[numPlayers];
+		playersConnections = new BitSet[numPlayers];
+		playersNetworks = new UnionFind[numPlayers];
+		trainsRemaining = other.trainsRemaining.clone();
+		handViews = new IntArrayMapView[numPlayers];
+		destinationCardViews = new BitSetSetView[numPlayers];
+		for(int p = 0; p < numPlayers; p++) {
+			hands[p] = other.hands[p].clone();
+			playersDestinationCards[p] = (BitSet)other.playersDestinationCards[p].clone();
+			playersConnections[p] = (BitSet)other.playersConnections[p].clone();
+			playersNetworks[p] = new UnionFind(other.playersNetworks[p]);
 		}
-		this.background = nonFinalBackgroundImage;
+		updateDeckProperties();
 	}
-	
-	
+
+
 	public MapData getMap() {
-		return mapData;
+		return indexedMap;
+	}
+
+	/**
+	 * @return the map with its destinations and connections indexed. The connection indices are
+	 * the ones used by the other methods in this class. This is the same object as {@link #getMap()}.
+	 */
+	public IndexedMapData getIndexedMap() {
+		return indexedMap;
 	}
-	
+
+	/**
+	 * @return {@link #seed}
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return the background image. The image isn't loaded until the first time this is called
+	 * so that games that are never displayed don't pay for it (see {@link GameDefinition#getBackground()}).
+	 */
 	public Image getBackgroundImage() {
-		return background;
+		try {
+			return gameDefinition.getBackground().get();
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+			return null;
+		}
 	}
-	
+
 	public GameDefinition gameDefinition() {
 		return gameDefinition;
 	}
-	
+
 	/**
-	 * @return the players in the game
+	 * @return the players in the game (in turn order)
 	 */
 	public Collection<Player> getPlayers() {
-		//TODO
-		return null;
+		return playersList;
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @return the player
+	 */
+	public Player getPlayer(int playerIndex) {
+		return players[playerIndex];
+	}
+
+	/**
+	 * @param player a player in the game
+	 * @return the position of the player in the turn order, or -1 if the player isn't in this game
+	 */
+	public int getPlayerIndex(Player player) {
+		for(int i = 0; i < players.length; i++) {
+			if(players[i] == player) {
+				return i;
+			}
+		}
+		return -1;
 	}
-	
+
 	public ObservableBooleanValue getTransportationCardsDeckRemainingProperty() {
-		return new SimpleBooleanProperty(true);
+		return transportationDeckRemaining;
 	}
-	
+
 	public ObservableIntegerValue getDestinationCardsDeckRemainingProperty() {
-		return new SimpleIntegerProperty(100);
+		return destinationCardsRemaining;
 	}
-	
+
 	/**
 	 * Removes and returns 3 destination cards from the destination card
 	 * deck (or if less than 3 are left, the remaining cards are returned)
-	 * @return
+	 * @return the cards that were drawn
 	 */
 	public Collection<DestinationCard> drawDestinationCards() {
-		return null;
+		int numToDraw = Math.min(DESTINATION_CARDS_PER_DRAW, destinationDeckSize);
+		List<DestinationCard> drawn = new ArrayList<>(numToDraw);
+		for(int i = 0; i < numToDraw; i++) {
+			drawn.add(allDestinationCards[destinationDeck[destinationDeckTop]]);
+			destinationDeckTop = (destinationDeckTop + 1) % destinationDeck.length;
+			destinationDeckSize--;
+		}
+		updateDeckProperties();
+		return drawn;
 	}
-	
+
 	/**
 	 * Removes and returns the transportation card at the specified index.
 	 * If the index indicates a face-up transportation card, then the card at
@@ -95,86 +358,247 @@ public class GameState {
 	 * @return the color of the card that was drawn
 	 */
 	public CardColor drawTransportationCard(int cardIndex) {
-		return CardColor.BLUE;
+		int drawn;
+		if(cardIndex == NUM_FACE_UP_CARDS) {
+			drawn = drawFromDeck();
+		}
+		else {
+			drawn = faceUpCards[cardIndex];
+			setFaceUpCard(cardIndex, drawFromDeck());
+			replaceFaceUpCardsIfTooManyWilds();
+		}
+		updateDeckProperties();
+		return drawn == NO_CARD ? null : COLORS[drawn];
 	}
-	
+
 	/**
 	 * Places the specified destination cards at the bottom of the deck
 	 * @param cards cards to be placed at the bottom of the deck
 	 */
 	public void placeDestinationCardsAtBottomOfDeck(Collection<DestinationCard> cards) {
-		//TODO
+		for(DestinationCard card : cards) {
+			int bottom = (destinationDeckTop + destinationDeckSize) % destinationDeck.length;
+			destinationDeck[bottom] = destinationCardIndices.get(card);
+			destinationDeckSize++;
+		}
+		updateDeckProperties();
 	}
-	
+
+	/**
+	 * Same as {@link #placeDestinationCardsAtBottomOfDeck(Collection)} for a single card, without needing a collection
+	 * @param card card to be placed at the bottom of the deck
+	 */
+	public void placeDestinationCardAtBottomOfDeck(DestinationCard card) {
+		int bottom = (destinationDeckTop + destinationDeckSize) % destinationDeck.length;
+		destinationDeck[bottom] = destinationCardIndices.get(card);
+		destinationDeckSize++;
+		updateDeckProperties();
+	}
+
+	/**
+	 * @return the face up transportation cards. A null entry means that there is no card
+	 * in that position.
+	 */
 	public ObservableList<CardColor> getFaceUpTransportationCards() {
-		//TODO replace this with non-hardcoded values
-		ObservableList<CardColor> list = FXCollections.observableArrayList();
-		list.add(CardColor.ANY);
-		list.add(CardColor.BLACK);
-		list.add(CardColor.BLUE);
-		list.add(CardColor.GREEN);
-		return list;
+		if(faceUpCardsView == null) {
+			faceUpCardsView = new FaceUpCardsView();
+		}
+		return faceUpCardsView;
+	}
+
+	/**
+	 * @param index index of the face up card (0-4)
+	 * @return the color of the face up card at the specified index, or null if there is no card there
+	 */
+	public CardColor getFaceUpTransportationCard(int index) {
+		return faceUpCards[index] == NO_CARD ? null : COLORS[faceUpCards[index]];
 	}
-	
+
 	/**
 	 * Returns an unmodifiable, observable map from card color to the number of that color that the specified
-	 * player has in its hand. If no cards exist in the players hand of a certain color (which will
-	 * often be the case for multiple colors), then it is ok if the map either does not have an entry
-	 * for that color or that the color maps to 0.
+	 * player has in its hand. Every color is present in the map (colors that the player doesn't have
+	 * map to 0).
 	 * @param player The player in whose hand we want.
 	 * @return Unmodifiable, Observable map
 	 */
 	public ObservableMap<CardColor, Integer> getPlayersTransportationCardsHand(Player player) {
-		return null;
+		int p = getPlayerIndex(player);
+		if(p < 0) {
+			return null;
+		}
+		if(handViews[p] == null) {
+			handViews[p] = new IntArrayMapView<>(COLORS, hands[p]);
+		}
+		return handViews[p];
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @param color color of card
+	 * @return the number of cards of the specified color in the player's hand
+	 */
+	public int getNumTransportationCards(int playerIndex, CardColor color) {
+		return hands[playerIndex][color.ordinal()];
 	}
-	
+
 	/**
 	 * Adds the specified transportation to the specified player's hand
 	 * @param player the play to whose hand the card should be added
 	 * @param color the color of the destination card to be added to the player's hand
 	 */
 	public void addTransportationCardToPlayersHand(Player player, CardColor color) {
-		
+		addTransportationCardToPlayersHand(getPlayerIndex(player), color);
 	}
-	
-	
+
 	/**
-	 * Removes the specified cards from the specified player's hand
+	 * Adds the specified transportation to the specified player's hand
+	 * @param playerIndex index of the player in the turn order
+	 * @param color the color of the destination card to be added to the player's hand
+	 */
+	public void addTransportationCardToPlayersHand(int playerIndex, CardColor color) {
+		int c = color.ordinal();
+		hands[playerIndex][c]++;
+		if(handViews[playerIndex] != null) {
+			handViews[playerIndex].fireValueChanged(c, hands[playerIndex][c] - 1);
+		}
+	}
+
+
+	/**
+	 * Removes the specified cards from the specified player's hand. The cards are placed
+	 * in the discard pile.
 	 * @param player
 	 * @param cardsToRemove
 	 */
 	public void removeTransportationCardsFromPlayersHand(Player player, Collection<CardColor> cardsToRemove) {
-		
+		int p = getPlayerIndex(player);
+		for(CardColor color : cardsToRemove) {
+			removeTransportationCards(p, color.ordinal(), 1);
+		}
+		cardsDiscarded();
+	}
+
+	/**
+	 * Removes the specified number of cards of a single color from the specified player's hand. The cards
+	 * are placed in the discard pile.
+	 * @param playerIndex index of the player in the turn order
+	 * @param color color of the cards to remove
+	 * @param count number of cards to remove
+	 */
+	public void removeTransportationCardsFromPlayersHand(int playerIndex, CardColor color, int count) {
+		removeTransportationCards(playerIndex, color.ordinal(), count);
+		cardsDiscarded();
+	}
+
+	private void removeTransportationCards(int playerIndex, int color, int count) {
+		int oldCount = hands[playerIndex][color];
+		int removed = Math.min(oldCount, count);
+		hands[playerIndex][color] -= removed;
+		discardCounts[color] += removed;
+		discardSize += removed;
+		if(handViews[playerIndex] != null && removed > 0) {
+			handViews[playerIndex].fireValueChanged(color, oldCount);
+		}
+	}
+
+	/**
+	 * Called after cards are added to the discard pile. If the deck had run out, the discarded cards
+	 * are now available again.
+	 */
+	private void cardsDiscarded() {
+		for(int card : faceUpCards) {
+			if(card == NO_CARD) {
+				refillEmptyFaceUpPositions();
+				break;
+			}
+		}
+		updateDeckProperties();
 	}
-	
+
 	/**
 	 * Returns an observable set of destination cards that the specified
-	 * player has in its hand. 
+	 * player has in its hand.
 	 * @param player The player in whose hand we want.
 	 * @return Unmodifiable, Observable set
 	 */
 	public ObservableSet<DestinationCard> getPlayersDestinationCards(Player player) {
-		return null;
+		int p = getPlayerIndex(player);
+		if(p < 0) {
+			return null;
+		}
+		if(destinationCardViews[p] == null) {
+			destinationCardViews[p] = new BitSetSetView<>(allDestinationCards, destinationCardIndices,
+															playersDestinationCards[p]);
+		}
+		return destinationCardViews[p];
 	}
-	
+
 	/**
 	 * Adds the specified destination cards to the specified player's hand
 	 * @param player the play to whose hand the cards should be added
 	 * @param cards the destination cards to be added to the player's hand
 	 */
 	public void addDestinationCardsToPlayersHand(Player player, Collection<DestinationCard> cards) {
-		//TODO
+		int p = getPlayerIndex(player);
+		for(DestinationCard card : cards) {
+			addDestinationCardToPlayersHand(p, card);
+		}
+	}
+
+	/**
+	 * Adds a single destination card to the specified player's hand (does nothing if it's already there)
+	 * @param playerIndex index of the player in the turn order
+	 * @param card the destination card to be added to the player's hand
+	 */
+	public void addDestinationCardToPlayersHand(int playerIndex, DestinationCard card) {
+		int index = destinationCardIndices.get(card);
+		if(!playersDestinationCards[playerIndex].get(index)) {
+			playersDestinationCards[playerIndex].set(index);
+			if(destinationCardViews[playerIndex] != null) {
+				destinationCardViews[playerIndex].fireElementAdded(index);
+			}
+		}
 	}
-	
+
+	/**
+	 * Removes the specified destination cards from the specified player's hand (AIs use this to undo
+	 * drawing destination cards in simulated games). Cards that aren't in the player's hand are ignored.
+	 * The cards aren't put back in the deck.
+	 * @param playerIndex index of the player in the turn order
+	 * @param cards the destination cards to be removed from the player's hand
+	 */
+	public void removeDestinationCardsFromPlayersHand(int playerIndex, Collection<DestinationCard> cards) {
+		for(DestinationCard card : cards) {
+			Integer index = destinationCardIndices.get(card);
+			if(index != null && playersDestinationCards[playerIndex].get(index)) {
+				playersDestinationCards[playerIndex].clear(index);
+				if(destinationCardViews[playerIndex] != null) {
+					destinationCardViews[playerIndex].fireElementRemoved(index);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns an unmodifiable, observable map from players to the number of unused train pieces that the
 	 * player has remaining.
 	 * @return unmodifiable observable map
 	 */
 	public ObservableMap<Player, Integer> getNumTrainsRemaining() {
-		return null;
+		if(trainsView == null) {
+			trainsView = new IntArrayMapView<>(players, trainsRemaining);
+		}
+		return trainsView;
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @return the number of unused trains the player has
+	 */
+	public int getNumTrainsRemaining(int playerIndex) {
+		return trainsRemaining[playerIndex];
 	}
-	
+
 	/**
 	 * Uses the specified number of train pieces from the player (decrements
 	 * that players number of unused train pieces).
@@ -182,7 +606,319 @@ public class GameState {
 	 * @param numTrains
 	 */
 	public void useTrains(Player player, int numTrains) {
-		
+		useTrains(getPlayerIndex(player), numTrains);
+	}
+
+	/**
+	 * Uses the specified number of train pieces from the player (decrements
+	 * that players number of unused train pieces).
+	 * @param playerIndex index of the player in the turn order
+	 * @param numTrains
+	 */
+	public void useTrains(int playerIndex, int numTrains) {
+		trainsRemaining[playerIndex] -= numTrains;
+		if(trainsView != null) {
+			trainsView.fireValueChanged(playerIndex, trainsRemaining[playerIndex] + numTrains);
+		}
+	}
+
+	/**
+	 * @param connection a connection on the map
+	 * @return the index used for the connection by this game state, or -1 if the connection isn't on the map
+	 */
+	public int getConnectionIndex(Connection connection) {
+		return indexedMap.getConnectionIndex(connection);
+	}
+
+	/**
+	 * @param connectionIndex index of the connection
+	 * @return true if anyone has claimed the connection
+	 */
+	public boolean isConnectionClaimed(int connectionIndex) {
+		return claimedConnections.get(connectionIndex);
+	}
+
+	/**
+	 * @param connectionIndex index of the connection
+	 * @param playerIndex index of the player in the turn order
+	 * @return true if the specified player has claimed the connection
+	 */
+	public boolean isConnectionClaimedBy(int connectionIndex, int playerIndex) {
+		return playersConnections[playerIndex].get(connectionIndex);
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @param destinationIndex1 index of a destination in the map
+	 * @param destinationIndex2 index of another destination in the map
+	 * @return true if the two destinations are connected by the player's connections
+	 */
+	public boolean areConnected(int playerIndex, int destinationIndex1, int destinationIndex2) {
+		return playersNetworks[playerIndex].connected(destinationIndex1, destinationIndex2);
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @param card a destination card (which doesn't have to be in the player's hand)
+	 * @return true if the player's connections connect the two ends of the card
+	 */
+	public boolean isDestinationCardComplete(int playerIndex, DestinationCard card) {
+		int start = indexedMap.getDestinationIndex(card.getStart());
+		int end = indexedMap.getDestinationIndex(card.getEnd());
+		return start >= 0 && end >= 0 && areConnected(playerIndex, start, end);
+	}
+
+	/**
+	 * @param player one of the players in the game
+	 * @param card a destination card (which doesn't have to be in the player's hand)
+	 * @return true if the player's connections connect the two ends of the card
+	 */
+	public boolean isDestinationCardComplete(Player player, DestinationCard card) {
+		int p = getPlayerIndex(player);
+		return p >= 0 && isDestinationCardComplete(p, card);
+	}
+
+	/**
+	 * @param playerIndex index of the player in the turn order
+	 * @return the points for the player's completed destination cards minus the points for their incomplete ones
+	 */
+	public int getDestinationCardPoints(int playerIndex) {
+		int points = 0;
+		BitSet cards = playersDestinationCards[playerIndex];
+		for(int i = cards.nextSetBit(0); i >= 0; i = cards.nextSetBit(i + 1)) {
+			DestinationCard card = allDestinationCards[i];
+			points += isDestinationCardComplete(playerIndex, card) ? card.getNumPoints() : -card.getNumPoints();
+		}
+		return points;
+	}
+
+	/**
+	 * Puts a card of the specified color face up at the specified position, without taking it from the deck.
+	 * This is meant for setting up a game state to look like one that's been observed (see
+	 * {@link #redealHiddenCards(int, int[], int[])}), not for playing the game.
+	 * @param index index of the face up card (0-4)
+	 * @param color the color of the card, or null for no card
+	 */
+	public void setFaceUpTransportationCard(int index, CardColor color) {
+		setFaceUpCard(index, color == null ? NO_CARD : color.ordinal());
+	}
+
+	/**
+	 * Deals out everything that the specified player can't see again at random. This is how an AI
+	 * guesses at hidden information: set up a game state with everything the AI can see (the map, the
+	 * trains remaining, the face up cards and the AI's own cards) and then redeal the rest.
+	 * </br></br>
+	 * Every transportation card in the game definition that isn't in the player's hand or face up is
+	 * shuffled into the deck (the discard pile ends up empty) and then the other players are dealt hands
+	 * from it. Likewise every destination card that isn't in the player's hand is shuffled into the
+	 * destination deck and dealt to the other players. Views of the other players' destination cards
+	 * aren't notified.
+	 * @param playerIndex the player whose point of view is kept
+	 * @param handSizes number of transportation cards to deal to each player (the entry for playerIndex is ignored)
+	 * @param numDestinationCards number of destination cards to deal to each player (the entry for playerIndex is ignored)
+	 */
+	public void redealHiddenCards(int playerIndex, int[] handSizes, int[] numDestinationCards) {
+		int[] unseen = new int[COLORS.length];
+		int numUnseen = 0;
+		for(CardColor color : COLORS) {
+			int c = color.ordinal();
+			unseen[c] = gameDefinition.getNumberOfTransportationCards(color) - hands[playerIndex][c];
+			for(int card : faceUpCards) {
+				unseen[c] -= card == c ? 1 : 0;
+			}
+			unseen[c] = Math.max(0, unseen[c]);
+			numUnseen += unseen[c];
+		}
+		if(numUnseen > transportationDeck.length) {
+			transportationDeck = new int[numUnseen];
+		}
+		deckSize = 0;
+		for(int c = 0; c < unseen.length; c++) {
+			for(int i = 0; i < unseen[c]; i++) {
+				transportationDeck[deckSize++] = c;
+			}
+		}
+		shuffle(transportationDeck, deckSize);
+		Arrays.fill(discardCounts, 0);
+		discardSize = 0;
+
+		destinationDeckTop = 0;
+		destinationDeckSize = 0;
+		for(int i = 0; i < allDestinationCards.length; i++) {
+			if(!playersDestinationCards[playerIndex].get(i)) {
+				destinationDeck[destinationDeckSize++] = i;
+			}
+		}
+		shuffle(destinationDeck, destinationDeckSize);
+
+		for(int p = 0; p < players.length; p++) {
+			if(p == playerIndex) {
+				continue;
+			}
+			for(int c = 0; c < COLORS.length; c++) {
+				int oldCount = hands[p][c];
+				hands[p][c] = 0;
+				if(handViews[p] != null && oldCount != 0) {
+					handViews[p].fireValueChanged(c, oldCount);
+				}
+			}
+			for(int i = 0; i < handSizes[p] && deckSize > 0; i++) {
+				addTransportationCardToPlayersHand(p, COLORS[transportationDeck[--deckSize]]);
+			}
+
+			playersDestinationCards[p].clear();
+			for(int i = 0; i < numDestinationCards[p] && destinationDeckSize > 0; i++) {
+				playersDestinationCards[p].set(destinationDeck[destinationDeckTop++]);
+				destinationDeckSize--;
+			}
+		}
+		updateDeckProperties();
+	}
+
+	/**
+	 * Keeps the claimed connection bit sets and each player's network in sync with the map's owners
+	 */
+	private void connectionClaimed(int connectionIndex, Player newOwner) {
+		claimedConnections.clear(connectionIndex);
+		for(int p = 0; p < playersConnections.length; p++) {
+			if(playersConnections[p].get(connectionIndex)) {
+				playersConnections[p].clear(connectionIndex);
+				//A union can't be undone, so the previous owner's network has to be rebuilt. This only
+				//happens when moves are undone (AIs searching ahead), never in a real game.
+				rebuildNetwork(p);
+			}
+		}
+		int p = getPlayerIndex(newOwner);
+		if(p >= 0) {
+			claimedConnections.set(connectionIndex);
+			playersConnections[p].set(connectionIndex);
+			playersNetworks[p].union(indexedMap.getConnectionStart(connectionIndex),
+					indexedMap.getConnectionEnd(connectionIndex));
+		}
+	}
+
+	/**
+	 * Recomputes a player's network from scratch from the connections they've claimed
+	 */
+	private void rebuildNetwork(int playerIndex) {
+		UnionFind network = playersNetworks[playerIndex];
+		network.reset();
+		BitSet claimed = playersConnections[playerIndex];
+		for(int conn = claimed.nextSetBit(0); conn >= 0; conn = claimed.nextSetBit(conn + 1)) {
+			network.union(indexedMap.getConnectionStart(conn), indexedMap.getConnectionEnd(conn));
+		}
+	}
+
+	/**
+	 * Removes the top card of the transportation deck, shuffling the discard pile back into
+	 * the deck first if the deck is empty.
+	 * @return the color ordinal of the top card, or {@link #NO_CARD} if there are no cards left in either
+	 * the deck or discard pile.
+	 */
+	private int drawFromDeck() {
+		if(deckSize == 0) {
+			//Cards can be added to hands directly (without being drawn), so the discard pile can end up
+			//bigger than the deck was
+			if(discardSize > transportationDeck.length) {
+				transportationDeck = Arrays.copyOf(transportationDeck, discardSize);
+			}
+			for(int color = 0; color < discardCounts.length; color++) {
+				for(int i = 0; i < discardCounts[color]; i++) {
+					transportationDeck[deckSize++] = color;
+				}
+				discardCounts[color] = 0;
+			}
+			discardSize = 0;
+			shuffle(transportationDeck, deckSize);
+		}
+		return deckSize == 0 ? NO_CARD : transportationDeck[--deckSize];
+	}
+
+	/**
+	 * Fills in any face up positions that have no card (which happens once the deck runs out)
+	 */
+	private void refillEmptyFaceUpPositions() {
+		for(int i = 0; i < faceUpCards.length; i++) {
+			if(faceUpCards[i] == NO_CARD) {
+				setFaceUpCard(i, drawFromDeck());
+			}
+		}
+		replaceFaceUpCardsIfTooManyWilds();
+	}
+
+	/**
+	 * If there are {@link #MAX_FACE_UP_WILDS} or more wilds face up, then all of the face up cards are
+	 * discarded and replaced. This is only attempted a few times so that a deck that is mostly wilds can't
+	 * cause an infinite loop.
+	 */
+	private void replaceFaceUpCardsIfTooManyWilds() {
+		for(int attempt = 0; attempt < 3 && numFaceUpWilds() >= MAX_FACE_UP_WILDS; attempt++) {
+			for(int i = 0; i < faceUpCards.length; i++) {
+				if(faceUpCards[i] != NO_CARD) {
+					discardCounts[faceUpCards[i]]++;
+					discardSize++;
+				}
+				setFaceUpCard(i, drawFromDeck());
+			}
+		}
+	}
+
+	private int numFaceUpWilds() {
+		int numWilds = 0;
+		for(int card : faceUpCards) {
+			if(card == WILD) {
+				numWilds++;
+			}
+		}
+		return numWilds;
 	}
 
+	private void setFaceUpCard(int index, int color) {
+		int oldColor = faceUpCards[index];
+		faceUpCards[index] = color;
+		if(faceUpCardsView != null) {
+			faceUpCardsView.fireSet(index, oldColor);
+		}
+	}
+
+	/**
+	 * Fisher-Yates shuffle of the first n elements of the array
+	 */
+	private void shuffle(int[] array, int n) {
+		for(int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+	private void updateDeckProperties() {
+		transportationDeckRemaining.set(deckSize > 0 || discardSize > 0);
+		destinationCardsRemaining.set(destinationDeckSize);
+	}
+
+	/**
+	 * Read-only observable view of {@link GameState#faceUpCards}
+	 */
+	private class FaceUpCardsView extends ObservableListBase<CardColor> {
+
+		@Override
+		public CardColor get(int index) {
+			return getFaceUpTransportationCard(index);
+		}
+
+		@Override
+		public int size() {
+			return faceUpCards.length;
+		}
+
+		private void fireSet(int index, int oldColor) {
+			if(hasListeners()) {
+				beginChange();
+				nextSet(index, oldColor == NO_CARD ? null : COLORS[oldColor]);
+				endChange();
+			}
+		}
+	}
 }
@@ -0,0 +1,467 @@
+package tickettoride.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyProperty;
+import tickettoride.players.Player;
+
+/**
+ * Implementation of {@link MapData} where every destination and connection is assigned an
+ * integer index (their position in {@link #getDestinations()} and {@link #getConnections()}).
+ * </br></br>
+ * Everything about the map that never changes (destinations, connection end points, colors, lengths and
+ * all of the precomputed lookups) lives in a {@link Topology} object that is shared by a map and all of its
+ * clones. The only thing each map has of its own is {@link #owners}, the player who owns each connection.
+ * That makes {@link #clone()} cost one array copy, which matters since every new game (and every copy of
+ * a game made by an AI searching ahead) starts with a clone.
+ * </br></br>
+ * The {@link Connection} objects handed out by this map are views onto the map. They're only created
+ * when someone asks for them, and claiming one just updates {@link #owners}. Destinations are immutable,
+ * so they are shared between clones rather than copied.
+ * @author nate
+ */
+public final class IndexedMapData implements MapData {
+
+	/**
+	 * Gets notified whenever a connection on the map changes owner
+	 */
+	public interface ClaimListener {
+		/**
+		 * @param connectionIndex index of the connection that was claimed
+		 * @param newOwner the player who now owns the connection (null if it was unclaimed)
+		 */
+		void connectionClaimed(int connectionIndex, Player newOwner);
+	}
+
+	/** Shared, immutable description of the board */
+	private final Topology topology;
+
+	/** Owner of each connection (null for unclaimed connections). This is the per-game state. */
+	private final Player[] owners;
+
+	/** Lazily created connection views (entries are null until they are first requested) */
+	private IndexedConnection[] connectionViews;
+	/** Lazily created lists returned by {@link #getConnectionsToOrFromDest(Destination)} */
+	private List<Connection>[] adjacencyLists;
+	/** Lazily created list returned by {@link #getConnections()} */
+	private List<Connection> connectionList;
+
+	private ClaimListener claimListener;
+
+	/**
+	 * Builds the indices for the specified map. The connections are only used to describe the map
+	 * (and who owns each connection to begin with); the map hands out its own connection objects.
+	 * @param destinations all of the destinations on the map
+	 * @param connections all of the connections on the map
+	 * @throws IllegalArgumentException if a connection starts or ends at a destination that isn't
+	 * one of the specified destinations
+	 */
+	public IndexedMapData(Collection<Destination> destinations, Collection<Connection> connections) {
+		this.topology = new Topology(destinations, connections);
+		this.owners = new Player[topology.getNumConnections()];
+		int i = 0;
+		for(Connection conn : connections) {
+			owners[i++] = conn.getOwnerProperty().getValue();
+		}
+	}
+
+	private IndexedMapData(Topology topology, Player[] owners) {
+		this.topology = topology;
+		this.owners = owners;
+	}
+
+	@Override
+	public Collection<Destination> getDestinations() {
+		return topology.destinations;
+	}
+
+	@Override
+	public Collection<Connection> getConnections() {
+		if(connectionList == null) {
+			connectionList = new ConnectionList(null, 0, owners.length);
+		}
+		return connectionList;
+	}
+
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public Collection<Connection> getConnectionsToOrFromDest(Destination dest) {
+		Integer index = topology.destinationIndices.get(dest);
+		if(index == null) {
+			return Collections.emptyList();
+		}
+		if(adjacencyLists == null) {
+			adjacencyLists = new List[topology.getNumDestinations()];
+		}
+		if(adjacencyLists[index] == null) {
+			adjacencyLists[index] = new ConnectionList(topology.adjacentConnections,
+					topology.adjacencyOffsets[index], topology.adjacencyOffsets[index + 1]);
+		}
+		return adjacencyLists[index];
+	}
+
+	/**
+	 * Creates a copy of this map that shares all of the unchanging parts of the map (including the
+	 * destination objects) and has its own copy of who owns each connection. The clone's connection
+	 * objects are separate from this map's.
+	 */
+	@Override
+	public IndexedMapData clone() {
+		return new IndexedMapData(topology, owners.clone());
+	}
+
+	/**
+	 * Sets the object that gets notified when connections are claimed. There is only one listener per map;
+	 * this is meant for the {@link GameState} that owns the map, not for UI code (which should listen to
+	 * the connections' owner properties).
+	 * @param claimListener the listener, or null to remove it
+	 */
+	public void setClaimListener(ClaimListener claimListener) {
+		this.claimListener = claimListener;
+	}
+
+	/**
+	 * Changes the owner of a connection
+	 * @param connectionIndex index of the connection
+	 * @param player the new owner (null to unclaim it)
+	 */
+	public void claim(int connectionIndex, Player player) {
+		if(owners[connectionIndex] == player) {
+			return;
+		}
+		owners[connectionIndex] = player;
+		if(connectionViews != null && connectionViews[connectionIndex] != null) {
+			connectionViews[connectionIndex].ownerChanged(player);
+		}
+		if(claimListener != null) {
+			claimListener.connectionClaimed(connectionIndex, player);
+		}
+	}
+
+	/**
+	 * @param connectionIndex index of a connection
+	 * @return the player who owns the connection, or null if it hasn't been claimed
+	 */
+	public Player getOwner(int connectionIndex) {
+		return owners[connectionIndex];
+	}
+
+	/** @return the number of destinations on the map */
+	public int getNumDestinations() {
+		return topology.getNumDestinations();
+	}
+
+	/** @return the number of connections on the map */
+	public int getNumConnections() {
+		return owners.length;
+	}
+
+	/**
+	 * @param dest a destination
+	 * @return the index of the destination, or -1 if it isn't on this map
+	 */
+	public int getDestinationIndex(Destination dest) {
+		Integer index = topology.destinationIndices.get(dest);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param index destination index
+	 * @return the destination at the specified index
+	 */
+	public Destination getDestination(int index) {
+		return topology.destinations.get(index);
+	}
+
+	/**
+	 * @param conn a connection
+	 * @return the index of the connection, or -1 if that connection object didn't come from this map
+	 */
+	public int getConnectionIndex(Connection conn) {
+		if(conn instanceof IndexedConnection && ((IndexedConnection)conn).getMap() == this) {
+			return ((IndexedConnection)conn).index;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index connection index
+	 * @return the connection at the specified index
+	 */
+	public Connection getConnection(int index) {
+		if(connectionViews == null) {
+			connectionViews = new IndexedConnection[owners.length];
+		}
+		IndexedConnection conn = connectionViews[index];
+		if(conn == null) {
+			conn = new IndexedConnection(index);
+			connectionViews[index] = conn;
+		}
+		return conn;
+	}
+
+	/** @return color of the specified connection */
+	public CardColor getConnectionColor(int connectionIndex) {
+		return topology.connectionColors[connectionIndex];
+	}
+
+	/** @return number of segments in the specified connection */
+	public int getConnectionLength(int connectionIndex) {
+		return topology.connectionLengths[connectionIndex];
+	}
+
+	/** @return destination index at the start of the specified connection */
+	public int getConnectionStart(int connectionIndex) {
+		return topology.connectionStarts[connectionIndex];
+	}
+
+	/** @return destination index at the end of the specified connection */
+	public int getConnectionEnd(int connectionIndex) {
+		return topology.connectionEnds[connectionIndex];
+	}
+
+	/**
+	 * @param connectionIndex index of a connection
+	 * @param destinationIndex index of one of the connection's destinations
+	 * @return index of the destination at the other end of the connection
+	 */
+	public int getOtherEnd(int connectionIndex, int destinationIndex) {
+		return topology.getOtherEnd(connectionIndex, destinationIndex);
+	}
+
+	/**
+	 * Parallel connections (connections between the same two destinations) form a circular list.
+	 * Following this from a connection eventually gets back to that connection.
+	 * @param connectionIndex index of a connection
+	 * @return the index of the next connection between the same two destinations (the same
+	 * index if there are no parallel connections)
+	 */
+	public int getNextParallelConnection(int connectionIndex) {
+		return topology.nextParallelConnection[connectionIndex];
+	}
+
+	/**
+	 * @param destinationIndex index of a destination
+	 * @return number of connections to or from the destination
+	 */
+	public int getNumConnectionsAt(int destinationIndex) {
+		return topology.adjacencyOffsets[destinationIndex + 1] - topology.adjacencyOffsets[destinationIndex];
+	}
+
+	/**
+	 * @param destinationIndex index of a destination
+	 * @param i number between 0 and {@link #getNumConnectionsAt(int)} - 1
+	 * @return index of the i-th connection to or from the destination
+	 */
+	public int getConnectionAt(int destinationIndex, int i) {
+		return topology.adjacentConnections[topology.adjacencyOffsets[destinationIndex] + i];
+	}
+
+	/**
+	 * Connection that stores its owner in {@link IndexedMapData#owners}. Its owner property is only
+	 * created if somebody asks for it (normally just the UI).
+	 */
+	private final class IndexedConnection extends Connection {
+
+		private final int index;
+		private ReadOnlyObjectWrapper<Player> ownerProperty;
+
+		IndexedConnection(int index) {
+			super(topology.destinations.get(topology.connectionStarts[index]),
+					topology.destinations.get(topology.connectionEnds[index]),
+					topology.connectionColors[index], topology.connectionLengths[index]);
+			this.index = index;
+		}
+
+		IndexedMapData getMap() {
+			return IndexedMapData.this;
+		}
+
+		@Override
+		public void claim(Player player) {
+			IndexedMapData.this.claim(index, player);
+		}
+
+		@Override
+		public ReadOnlyProperty<Player> getOwnerProperty() {
+			if(ownerProperty == null) {
+				ownerProperty = new ReadOnlyObjectWrapper<>(owners[index]);
+			}
+			return ownerProperty.getReadOnlyProperty();
+		}
+
+		void ownerChanged(Player player) {
+			if(ownerProperty != null) {
+				ownerProperty.set(player);
+			}
+		}
+	}
+
+	/**
+	 * Unmodifiable list of connection views for a range of an index array (or a range of connection
+	 * indices if the array is null)
+	 */
+	private final class ConnectionList extends AbstractList<Connection> implements RandomAccess {
+
+		private final int[] indices;
+		private final int from;
+		private final int to;
+
+		ConnectionList(int[] indices, int from, int to) {
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Connection get(int i) {
+			if(i < 0 || i >= size()) {
+				throw new IndexOutOfBoundsException(i);
+			}
+			return getConnection(indices == null ? from + i : indices[from + i]);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			int index = o instanceof Connection ? getConnectionIndex((Connection)o) : -1;
+			if(index < 0) {
+				return false;
+			}
+			if(indices == null) {
+				return true;
+			}
+			for(int k = from; k < to; k++) {
+				if(indices[k] == index) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The parts of the map that never change. All of the lookups are precomputed when the map is built.
+	 * The connections touching each destination are stored in compressed sparse row form: the connections
+	 * at destination d are {@link #adjacentConnections}[{@link #adjacencyOffsets}[d]] through
+	 * {@link #adjacentConnections}[{@link #adjacencyOffsets}[d + 1] - 1].
+	 */
+	private static final class Topology {
+
+		private final List<Destination> destinations;
+		private final Map<Destination, Integer> destinationIndices = new HashMap<>();
+
+		/** Destination index at the start of each connection */
+		private final int[] connectionStarts;
+		/** Destination index at the end of each connection */
+		private final int[] connectionEnds;
+		private final CardColor[] connectionColors;
+		private final int[] connectionLengths;
+		/**
+		 * Circular linked list of connections between the same two destinations. For a connection with
+		 * no parallel connections, this is its own index.
+		 */
+		private final int[] nextParallelConnection;
+
+		/** Offsets into {@link #adjacentConnections} for each destination (length is number of destinations + 1) */
+		private final int[] adjacencyOffsets;
+		/** Connection indices grouped by destination */
+		private final int[] adjacentConnections;
+
+		Topology(Collection<Destination> destinations, Collection<Connection> connections) {
+			this.destinations = Collections.unmodifiableList(new ArrayList<>(destinations));
+			for(int i = 0; i < this.destinations.size(); i++) {
+				destinationIndices.put(this.destinations.get(i), i);
+			}
+
+			int numDestinations = this.destinations.size();
+			int numConnections = connections.size();
+			connectionStarts = new int[numConnections];
+			connectionEnds = new int[numConnections];
+			connectionColors = new CardColor[numConnections];
+			connectionLengths = new int[numConnections];
+			nextParallelConnection = new int[numConnections];
+			adjacencyOffsets = new int[numDestinations + 1];
+
+			int i = 0;
+			for(Connection conn : connections) {
+				connectionStarts[i] = requireDestinationIndex(conn.getStart());
+				connectionEnds[i] = requireDestinationIndex(conn.getEnd());
+				connectionColors[i] = conn.getColor();
+				connectionLengths[i] = conn.getNumSegments();
+				adjacencyOffsets[connectionStarts[i] + 1]++;
+				if(connectionEnds[i] != connectionStarts[i]) {
+					adjacencyOffsets[connectionEnds[i] + 1]++;
+				}
+				i++;
+			}
+			for(int d = 0; d < numDestinations; d++) {
+				adjacencyOffsets[d + 1] += adjacencyOffsets[d];
+			}
+
+			adjacentConnections = new int[adjacencyOffsets[numDestinations]];
+			int[] fill = new int[numDestinations];
+			for(i = 0; i < numConnections; i++) {
+				int start = connectionStarts[i];
+				int end = connectionEnds[i];
+				adjacentConnections[adjacencyOffsets[start] + fill[start]++] = i;
+				if(end != start) {
+					adjacentConnections[adjacencyOffsets[end] + fill[end]++] = i;
+				}
+			}
+
+			//Link up parallel connections. Only the connections at the start destination need to be checked
+			for(i = 0; i < numConnections; i++) {
+				nextParallelConnection[i] = i;
+			}
+			for(i = 0; i < numConnections; i++) {
+				if(nextParallelConnection[i] != i) {
+					continue;	//Already linked in by an earlier connection
+				}
+				int last = i;
+				for(int k = adjacencyOffsets[connectionStarts[i]]; k < adjacencyOffsets[connectionStarts[i] + 1]; k++) {
+					int other = adjacentConnections[k];
+					if(other > i && getOtherEnd(other, connectionStarts[i]) == connectionEnds[i]) {
+						nextParallelConnection[last] = other;
+						last = other;
+					}
+				}
+				nextParallelConnection[last] = i;
+			}
+		}
+
+		private int requireDestinationIndex(Destination dest) {
+			Integer index = destinationIndices.get(dest);
+			if(index == null) {
+				throw new IllegalArgumentException("Connection refers to destination " +
+						(dest == null ? null : dest.getName()) + " which is not on the map");
+			}
+			return index;
+		}
+
+		int getNumDestinations() {
+			return destinations.size();
+		}
+
+		int getNumConnections() {
+			return connectionStarts.length;
+		}
+
+		int getOtherEnd(int connectionIndex, int destinationIndex) {
+			return connectionStarts[connectionIndex] == destinationIndex ?
+					connectionEnds[connectionIndex] : connectionStarts[connectionIndex];
+		}
+	}
+}
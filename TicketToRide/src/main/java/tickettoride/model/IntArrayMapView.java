@@ -0,0 +1,185 @@
+package tickettoride.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableMap;
+
+/**
+ * Unmodifiable {@link ObservableMap} view over an int array. Every key in {@link #keys} is always
+ * present in the map and maps to the value at the same index in {@link #values}.
+ * </br></br>
+ * The view doesn't store anything itself, it reads straight through to the array. The owner of the
+ * array is responsible for calling {@link #fireValueChanged(int, int)} after modifying it. When nobody
+ * is listening, that call returns immediately without allocating anything, so the array can be updated
+ * on a hot path without paying for the observable machinery.
+ * @author nate
+ *
+ * @param <K> key type
+ */
+class IntArrayMapView<K> extends AbstractMap<K, Integer> implements ObservableMap<K, Integer> {
+
+	/** The keys of the map. Keys are compared by identity (they are enum constants or players) */
+	private final K[] keys;
+	/** The values of the map (shared with the owner of the view) */
+	private final int[] values;
+
+	private final List<MapChangeListener<? super K, ? super Integer>> changeListeners = new ArrayList<>(1);
+	private final List<InvalidationListener> invalidationListeners = new ArrayList<>(1);
+
+	/**
+	 * @param keys {@link #keys}
+	 * @param values {@link #values}. Must be at least as long as keys.
+	 */
+	IntArrayMapView(K[] keys, int[] values) {
+		this.keys = keys;
+		this.values = values;
+	}
+
+	/**
+	 * Notifies any listeners that the value at the specified index has changed. The array should
+	 * already hold the new value.
+	 * @param index index of the key whose value changed
+	 * @param oldValue the value before the change
+	 */
+	void fireValueChanged(int index, int oldValue) {
+		if(changeListeners.isEmpty() && invalidationListeners.isEmpty()) {
+			return;
+		}
+		for(InvalidationListener listener : new ArrayList<>(invalidationListeners)) {
+			listener.invalidated(this);
+		}
+		if(!changeListeners.isEmpty()) {
+			ValueChange change = new ValueChange(keys[index], oldValue, values[index]);
+			for(MapChangeListener<? super K, ? super Integer> listener : new ArrayList<>(changeListeners)) {
+				listener.onChanged(change);
+			}
+		}
+	}
+
+	private int indexOf(Object key) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public Integer get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public Set<Entry<K, Integer>> entrySet() {
+		return new AbstractSet<Entry<K, Integer>>() {
+			@Override
+			public Iterator<Entry<K, Integer>> iterator() {
+				return new Iterator<Entry<K, Integer>>() {
+					private int next = 0;
+
+					@Override
+					public boolean hasNext() {
+						return next < keys.length;
+					}
+
+					@Override
+					public Entry<K, Integer> next() {
+						if(!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Entry<K, Integer> entry = new SimpleImmutableEntry<>(keys[next], values[next]);
+						next++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+
+	@Override
+	public void addListener(InvalidationListener listener) {
+		invalidationListeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(InvalidationListener listener) {
+		invalidationListeners.remove(listener);
+	}
+
+	@Override
+	public void addListener(MapChangeListener<? super K, ? super Integer> listener) {
+		changeListeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(MapChangeListener<? super K, ? super Integer> listener) {
+		changeListeners.remove(listener);
+	}
+
+	/**
+	 * Change event for a single value being replaced. Since every key is always present, every change
+	 * is a replacement (both added and removed).
+	 */
+	private class ValueChange extends MapChangeListener.Change<K, Integer> {
+		private final K key;
+		private final int oldValue;
+		private final int newValue;
+
+		private ValueChange(K key, int oldValue, int newValue) {
+			super(IntArrayMapView.this);
+			this.key = key;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		@Override
+		public boolean wasAdded() {
+			return true;
+		}
+
+		@Override
+		public boolean wasRemoved() {
+			return true;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public Integer getValueAdded() {
+			return newValue;
+		}
+
+		@Override
+		public Integer getValueRemoved() {
+			return oldValue;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package tickettoride.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import tickettoride.players.Player;
+
+/**
+ * Calculates the length of a player's longest continuous route: the longest trail (a path that can
+ * revisit destinations but can't use any connection twice) through the connections they've claimed,
+ * measured in train segments.
+ * </br></br>
+ * Claimed connections are passed in as a bit mask over the connection indices of an {@link IndexedMapData}
+ * (bit i of word i / 64 is connection i). The mask is split into connected components and each component
+ * is searched separately:
+ * <ul>
+ * <li>If every destination in the component has an even number of the connections then there's a trail
+ * that uses all of them, so no search is needed.</li>
+ * <li>Otherwise the longest trail has to start at a destination with an odd number of connections, so
+ * those are the only starting points tried.</li>
+ * <li>The depth first search gives up on a branch once the trail so far plus every connection it hasn't
+ * used yet can't beat the best trail found so far, and stops as soon as it finds a trail that uses
+ * every connection in the component.</li>
+ * </ul>
+ * Results are cached per component, so after a player claims a connection only the component that the
+ * connection joined gets searched again. Searching doesn't allocate anything apart from cache entries.
+ * </br></br>
+ * This isn't thread safe; AIs searching on several threads should each have their own calculator.
+ * @author nate
+ */
+public class LongestRouteCalculator {
+
+	/** Cached components are all thrown away once there are this many of them */
+	private static final int MAX_CACHE_SIZE = 1 << 16;
+
+	private final int numConnections;
+	private final int numWords;
+	private final int[] connectionStarts;
+	private final int[] connectionEnds;
+	private final int[] connectionLengths;
+	/** Connections touching each destination are adjacentConnections[adjacencyOffsets[d]...adjacencyOffsets[d+1]-1] */
+	private final int[] adjacencyOffsets;
+	private final int[] adjacentConnections;
+
+	/** Map from a component's connection mask to the length of its longest trail */
+	private final Map<MaskKey, Integer> cache = new HashMap<>();
+	/** Reused to look things up in the {@link #cache} without allocating */
+	private final MaskKey lookupKey;
+
+	//Scratch space for a single call
+	private final long[] remaining;
+	private final long[] component;
+	private final long[] used;
+	private final int[] destinationStack;
+	private final int[] degrees;
+	private int best;
+	private int componentTotal;
+
+	/**
+	 * @param map the map whose connection indices will be used in the masks. The calculator only depends on
+	 * the map's layout, so it can be used for any clone of the map.
+	 */
+	public LongestRouteCalculator(IndexedMapData map) {
+		numConnections = map.getNumConnections();
+		numWords = (numConnections + 63) >>> 6;
+		connectionStarts = new int[numConnections];
+		connectionEnds = new int[numConnections];
+		connectionLengths = new int[numConnections];
+		for(int c = 0; c < numConnections; c++) {
+			connectionStarts[c] = map.getConnectionStart(c);
+			connectionEnds[c] = map.getConnectionEnd(c);
+			connectionLengths[c] = map.getConnectionLength(c);
+		}
+		int numDestinations = map.getNumDestinations();
+		adjacencyOffsets = new int[numDestinations + 1];
+		adjacentConnections = new int[2 * numConnections];
+		for(int d = 0; d < numDestinations; d++) {
+			adjacencyOffsets[d + 1] = adjacencyOffsets[d] + map.getNumConnectionsAt(d);
+			for(int i = 0; i < map.getNumConnectionsAt(d); i++) {
+				adjacentConnections[adjacencyOffsets[d] + i] = map.getConnectionAt(d, i);
+			}
+		}
+
+		remaining = new long[numWords];
+		component = new long[numWords];
+		used = new long[numWords];
+		destinationStack = new int[numConnections + 1];
+		degrees = new int[numDestinations];
+		lookupKey = new MaskKey(component);
+	}
+
+	/**
+	 * @param map the map (or a clone of the map) that the calculator was created for
+	 * @param player a player
+	 * @return the length of the player's longest continuous route
+	 */
+	public int getLongestRoute(IndexedMapData map, Player player) {
+		Arrays.fill(remaining, 0);
+		for(int c = 0; c < numConnections; c++) {
+			if(player != null && map.getOwner(c) == player) {
+				remaining[c >>> 6] |= 1L << c;
+			}
+		}
+		return longestRouteOfRemaining();
+	}
+
+	/**
+	 * @param claimedConnections bit mask of the connections claimed by a player (bit i of word i / 64 is
+	 * connection i). This isn't modified.
+	 * @return the length of the longest continuous route through the connections
+	 */
+	public int getLongestRoute(long[] claimedConnections) {
+		Arrays.fill(remaining, 0);
+		System.arraycopy(claimedConnections, 0, remaining, 0, Math.min(numWords, claimedConnections.length));
+		return longestRouteOfRemaining();
+	}
+
+	/**
+	 * Removes the components from {@link #remaining} one at a time
+	 * @return the longest trail of any of the components
+	 */
+	private int longestRouteOfRemaining() {
+		int longest = 0;
+		for(int w = 0; w < numWords; w++) {
+			while(remaining[w] != 0) {
+				int conn = (w << 6) + Long.numberOfTrailingZeros(remaining[w]);
+				//A component can't have a trail longer than all of its connections put together
+				if(extractComponent(conn) > longest) {
+					longest = Math.max(longest, longestTrailOfComponent());
+				}
+			}
+		}
+		return longest;
+	}
+
+	/**
+	 * Moves the component containing the specified connection from {@link #remaining} into {@link #component},
+	 * and sets {@link #degrees} for the component's destinations
+	 * @return total length of the connections in the component
+	 */
+	private int extractComponent(int firstConnection) {
+		Arrays.fill(component, 0);
+		int total = 0;
+		int stackSize = 0;
+		destinationStack[stackSize++] = connectionStarts[firstConnection];
+		while(stackSize > 0) {
+			int dest = destinationStack[--stackSize];
+			for(int i = adjacencyOffsets[dest]; i < adjacencyOffsets[dest + 1]; i++) {
+				int conn = adjacentConnections[i];
+				if(contains(remaining, conn)) {
+					remaining[conn >>> 6] &= ~(1L << conn);
+					component[conn >>> 6] |= 1L << conn;
+					total += connectionLengths[conn];
+					destinationStack[stackSize++] = connectionStarts[conn] == dest ? connectionEnds[conn] : connectionStarts[conn];
+				}
+			}
+		}
+
+		for(int pass = 0; pass < 2; pass++) {
+			for(int w = 0; w < numWords; w++) {
+				for(long bits = component[w]; bits != 0; bits &= bits - 1) {
+					int conn = (w << 6) + Long.numberOfTrailingZeros(bits);
+					//First pass clears whatever was left over from the last component, second pass counts
+					degrees[connectionStarts[conn]] = pass * (degrees[connectionStarts[conn]] + 1);
+					degrees[connectionEnds[conn]] = pass * (degrees[connectionEnds[conn]] + 1);
+				}
+			}
+		}
+		componentTotal = total;
+		return total;
+	}
+
+	/**
+	 * @return the longest trail in {@link #component}
+	 */
+	private int longestTrailOfComponent() {
+		lookupKey.rehash();
+		Integer cached = cache.get(lookupKey);
+		if(cached != null) {
+			return cached;
+		}
+
+		best = 0;
+		boolean hasOddDestination = false;
+		for(int w = 0; w < numWords && best < componentTotal; w++) {
+			for(long bits = component[w]; bits != 0 && best < componentTotal; bits &= bits - 1) {
+				int conn = (w << 6) + Long.numberOfTrailingZeros(bits);
+				hasOddDestination |= tryStartingAt(connectionStarts[conn], conn);
+				hasOddDestination |= tryStartingAt(connectionEnds[conn], conn);
+			}
+		}
+		if(!hasOddDestination) {
+			//Every destination has an even number of connections, so there's a trail using all of them
+			best = componentTotal;
+		}
+
+		if(cache.size() >= MAX_CACHE_SIZE) {
+			cache.clear();
+		}
+		cache.put(new MaskKey(component.clone()), best);
+		return best;
+	}
+
+	/**
+	 * Searches for trails starting at the destination if it has an odd number of connections. Each
+	 * destination is only tried once: when it's reached through its lowest numbered connection.
+	 * @return true if the destination has an odd number of connections
+	 */
+	private boolean tryStartingAt(int dest, int conn) {
+		if((degrees[dest] & 1) == 0) {
+			return false;
+		}
+		if(lowestComponentConnection(dest) == conn) {
+			search(dest, 0, componentTotal);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the lowest numbered connection in {@link #component} at the destination
+	 */
+	private int lowestComponentConnection(int dest) {
+		int lowest = Integer.MAX_VALUE;
+		for(int i = adjacencyOffsets[dest]; i < adjacencyOffsets[dest + 1]; i++) {
+			int conn = adjacentConnections[i];
+			if(conn < lowest && contains(component, conn)) {
+				lowest = conn;
+			}
+		}
+		return lowest;
+	}
+
+	/**
+	 * Depth first search for trails continuing from the specified destination
+	 * @param dest where the trail currently ends
+	 * @param length length of the trail so far
+	 * @param unused total length of the component's connections that aren't in the trail
+	 */
+	private void search(int dest, int length, int unused) {
+		if(length > best) {
+			best = length;
+		}
+		if(best == componentTotal || length + unused <= best) {
+			return;
+		}
+		for(int i = adjacencyOffsets[dest]; i < adjacencyOffsets[dest + 1]; i++) {
+			int conn = adjacentConnections[i];
+			if(!contains(component, conn) || contains(used, conn)) {
+				continue;
+			}
+			used[conn >>> 6] |= 1L << conn;
+			int connLength = connectionLengths[conn];
+			search(connectionStarts[conn] == dest ? connectionEnds[conn] : connectionStarts[conn],
+					length + connLength, unused - connLength);
+			used[conn >>> 6] &= ~(1L << conn);
+		}
+	}
+
+	private static boolean contains(long[] mask, int conn) {
+		return (mask[conn >>> 6] & 1L << conn) != 0;
+	}
+
+	/**
+	 * Forgets every cached component
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * @return number of components currently cached
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Connection mask used as a key in the {@link LongestRouteCalculator#cache}
+	 */
+	private static final class MaskKey {
+		private final long[] words;
+		private int hash;
+
+		MaskKey(long[] words) {
+			this.words = words;
+			rehash();
+		}
+
+		/**
+		 * Recomputes the hash code after the words have been changed
+		 */
+		void rehash() {
+			hash = Arrays.hashCode(words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof MaskKey && Arrays.equals(words, ((MaskKey)o).words);
+		}
+	}
+}
@@ -182,7 +182,8 @@ public interface MapData extends Cloneable {
 			this.end = end;
 			this.numSegments = numSegments;
 			this.color = color;
-			this.owner = new SimpleObjectProperty<>();
+			//The owner property is created on first use, so that map implementations that keep track of
+			//ownership themselves don't pay for a property on every connection
 		}
 		
 		/** @return {@link #start} */
@@ -210,14 +211,22 @@ public interface MapData extends Cloneable {
 		 * @param player The player who is claiming the property
 		 */
 		public void claim(Player player) {
-			this.owner.setValue(player);
+			getOwner().setValue(player);
 		}
 		
 		/**
 		 * @return {@link #owner} as a read-only property
 		 */
 		public ReadOnlyProperty<Player> getOwnerProperty() {
-			return this.owner;
+			return getOwner();
+		}
+		
+		/** @return {@link #owner}, creating it if necessary */
+		private Property<Player> getOwner() {
+			if(owner == null) {
+				owner = new SimpleObjectProperty<>();
+			}
+			return owner;
 		}
 	}
 }
@@ -0,0 +1,221 @@
+package tickettoride.model;
+
+import java.util.Arrays;
+
+import tickettoride.players.Player;
+
+/**
+ * Table of the fewest trains that a player needs to get between every pair of destinations, given what
+ * has already been claimed: connections the player owns are free, unclaimed connections cost their
+ * number of segments and connections owned by other players can't be used.
+ * </br></br>
+ * The distances are stored in a flat array indexed by destination index (from * numDestinations + to), so
+ * a query is just an array lookup. The table starts out with a Dijkstra search from every destination.
+ * After that, {@link #update(IndexedMapData)} only redoes what a claim could have changed: a connection that
+ * becomes free can only make routes shorter, which is one pass over the table, and a connection that gets
+ * blocked only affects destinations whose shortest routes went through it, which get their searches redone.
+ * </br></br>
+ * This isn't thread safe. Copies can be made for simulations with {@link #ShortestRouteTable(ShortestRouteTable)}.
+ * @author nate
+ */
+public class ShortestRouteTable {
+
+	/** Distance between destinations that can't be connected anymore */
+	public static final int UNREACHABLE = Integer.MAX_VALUE / 4;
+
+	/** The player whose routes these are */
+	private final Player player;
+	private final int numDestinations;
+	/** distances[from * numDestinations + to] */
+	private final int[] distances;
+	/** Owner of each connection as of the last update */
+	private final Player[] owners;
+	/** Cost of each connection to the player as of the last update (see {@link #getCost(IndexedMapData, int)}) */
+	private final int[] costs;
+
+	//Scratch space for the searches
+	private final boolean[] done;
+	private final int[] row;
+	private final boolean[] affected;
+
+	/**
+	 * Creates the table for the current state of the map
+	 * @param map the map
+	 * @param player the player whose routes these are
+	 */
+	public ShortestRouteTable(IndexedMapData map, Player player) {
+		this.player = player;
+		numDestinations = map.getNumDestinations();
+		distances = new int[numDestinations * numDestinations];
+		owners = new Player[map.getNumConnections()];
+		costs = new int[owners.length];
+		for(int c = 0; c < owners.length; c++) {
+			owners[c] = map.getOwner(c);
+			costs[c] = getCost(map, c);
+		}
+		done = new boolean[numDestinations];
+		row = new int[numDestinations];
+		affected = new boolean[numDestinations];
+		for(int source = 0; source < numDestinations; source++) {
+			search(map, source);
+		}
+	}
+
+	/**
+	 * Creates a copy of another table
+	 * @param other the table to copy
+	 */
+	public ShortestRouteTable(ShortestRouteTable other) {
+		player = other.player;
+		numDestinations = other.numDestinations;
+		distances = other.distances.clone();
+		owners = other.owners.clone();
+		costs = other.costs.clone();
+		done = new boolean[numDestinations];
+		row = new int[numDestinations];
+		affected = new boolean[numDestinations];
+	}
+
+	/** @return {@link #player} */
+	public Player getPlayer() {
+		return player;
+	}
+
+	/**
+	 * @param from index of a destination
+	 * @param to index of another destination
+	 * @return the fewest trains the player needs to connect the two destinations (0 if they're already
+	 * connected), or {@link #UNREACHABLE}
+	 */
+	public int getDistance(int from, int to) {
+		return distances[from * numDestinations + to];
+	}
+
+	/**
+	 * Brings the table up to date with every connection that has been claimed (or unclaimed) on the
+	 * map since the last update
+	 * @param map the map the table was created for (or a clone of it)
+	 */
+	public void update(IndexedMapData map) {
+		for(int c = 0; c < owners.length; c++) {
+			if(map.getOwner(c) != owners[c]) {
+				connectionClaimed(map, c);
+			}
+		}
+	}
+
+	/**
+	 * Updates the table for a connection whose owner has changed
+	 * @param map the map the table was created for (or a clone of it)
+	 * @param connectionIndex index of the connection
+	 */
+	public void connectionClaimed(IndexedMapData map, int connectionIndex) {
+		int before = getPairCost(map, connectionIndex);
+		owners[connectionIndex] = map.getOwner(connectionIndex);
+		costs[connectionIndex] = getCost(map, connectionIndex);
+		int after = getPairCost(map, connectionIndex);
+		int u = map.getConnectionStart(connectionIndex);
+		int v = map.getConnectionEnd(connectionIndex);
+		if(after < before) {
+			shorten(u, v, after);
+		}
+		else if(after > before) {
+			lengthen(map, u, v, before);
+		}
+	}
+
+	/**
+	 * Every route that gets shorter goes from its start to one end of the (now cheaper) connection, across
+	 * it and on to its end
+	 */
+	private void shorten(int u, int v, int cost) {
+		for(int i = 0; i < numDestinations; i++) {
+			int toU = distances[i * numDestinations + u];
+			int toV = distances[i * numDestinations + v];
+			if(toU >= UNREACHABLE && toV >= UNREACHABLE) {
+				continue;
+			}
+			for(int j = 0; j < numDestinations; j++) {
+				int viaUV = toU + cost + distances[v * numDestinations + j];
+				int viaVU = toV + cost + distances[u * numDestinations + j];
+				int best = Math.min(viaUV, viaVU);
+				if(best < distances[i * numDestinations + j]) {
+					distances[i * numDestinations + j] = best;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Redoes the searches from every destination that had a shortest route across the (now more expensive)
+	 * connection. Any route that crossed it starts at one of those destinations.
+	 */
+	private void lengthen(IndexedMapData map, int u, int v, int oldCost) {
+		for(int i = 0; i < numDestinations; i++) {
+			int toU = distances[i * numDestinations + u];
+			int toV = distances[i * numDestinations + v];
+			affected[i] = toU < UNREACHABLE && (toU + oldCost == toV || toV + oldCost == toU);
+		}
+		for(int i = 0; i < numDestinations; i++) {
+			if(affected[i]) {
+				search(map, i);
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra search from the source (the simple version without a heap, which is faster on a map this
+	 * small). Fills in the source's row and column of the table.
+	 */
+	private void search(IndexedMapData map, int source) {
+		Arrays.fill(row, UNREACHABLE);
+		Arrays.fill(done, false);
+		row[source] = 0;
+		for(int n = 0; n < numDestinations; n++) {
+			int current = -1;
+			for(int d = 0; d < numDestinations; d++) {
+				if(!done[d] && row[d] < UNREACHABLE && (current < 0 || row[d] < row[current])) {
+					current = d;
+				}
+			}
+			if(current < 0) {
+				break;
+			}
+			done[current] = true;
+			for(int k = 0; k < map.getNumConnectionsAt(current); k++) {
+				int conn = map.getConnectionAt(current, k);
+				int cost = costs[conn];
+				int next = map.getOtherEnd(conn, current);
+				if(cost < UNREACHABLE && row[current] + cost < row[next]) {
+					row[next] = row[current] + cost;
+				}
+			}
+		}
+		for(int d = 0; d < numDestinations; d++) {
+			distances[source * numDestinations + d] = row[d];
+			distances[d * numDestinations + source] = row[d];
+		}
+	}
+
+	/**
+	 * @return the cost of the connection to the player, according to {@link #owners}
+	 */
+	private int getCost(IndexedMapData map, int connectionIndex) {
+		Player owner = owners[connectionIndex];
+		if(owner == null) {
+			return map.getConnectionLength(connectionIndex);
+		}
+		return owner == player ? 0 : UNREACHABLE;
+	}
+
+	/**
+	 * @return the cheapest of the connection and the connections parallel to it, according to {@link #costs}
+	 */
+	private int getPairCost(IndexedMapData map, int connectionIndex) {
+		int cost = costs[connectionIndex];
+		for(int c = map.getNextParallelConnection(connectionIndex); c != connectionIndex; c = map.getNextParallelConnection(c)) {
+			cost = Math.min(cost, costs[c]);
+		}
+		return cost;
+	}
+}
@@ -0,0 +1,318 @@
+package tickettoride.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.players.Player;
+
+/**
+ * Estimates how many more trains a player needs to complete a set of destination cards, for deciding
+ * which destination cards to keep.
+ * </br></br>
+ * Connecting several pairs of destinations as cheaply as possible is a Steiner problem, so this uses the
+ * usual approximation: a minimum spanning tree over the destinations on the cards, where the distance
+ * between two destinations is the player's shortest route between them (from a {@link ShortestRouteTable},
+ * so the player's own connections are free and other players' connections are avoided). Cards whose
+ * destinations don't overlap don't have to be joined up, so the estimate is the cheaper of one tree
+ * over every destination and a separate tree for each group of overlapping cards.
+ * </br></br>
+ * Sets of cards are given as bit masks over the game definition's destination cards (bit i is the i-th card in the
+ * order of {@link GameDefinition#getDestinationCards()}). Estimates are cached by the mask and a hash of who owns each
+ * connection, so asking again about the same cards on the same board is just a lookup. Call
+ * {@link #update(IndexedMapData)} after connections are claimed.
+ * </br></br>
+ * This isn't thread safe.
+ * @author nate
+ */
+public class TicketCostEstimator {
+
+	/** Estimate for cards that can't be completed anymore */
+	public static final int UNREACHABLE = ShortestRouteTable.UNREACHABLE;
+
+	/** Only this many cards fit in a mask, so there can't be more than this in the game definition */
+	public static final int MAX_CARDS = Long.SIZE;
+
+	/** Cached estimates are all thrown away once there are this many of them */
+	private static final int MAX_CACHE_SIZE = 1 << 16;
+
+	private final Player player;
+	private final ShortestRouteTable routes;
+	private final DestinationCard[] cards;
+	private final Map<DestinationCard, Integer> cardIndices = new HashMap<>();
+	/** Destination indices at each end of each card */
+	private final int[] cardStarts;
+	private final int[] cardEnds;
+
+	/** Random numbers for each connection being owned by the player or by somebody else */
+	private final long[] ownedHashes;
+	private final long[] blockedHashes;
+	/** Hash of which connections are owned by the player and which by others */
+	private long boardHash = 0;
+	/** Owner of each connection as of the last update */
+	private final Player[] owners;
+
+	private final Map<CacheKey, Integer> cache = new HashMap<>();
+	/** Reused to look things up in the {@link #cache} without allocating */
+	private final CacheKey lookupKey = new CacheKey();
+
+	//Scratch space for the spanning trees
+	private final int[] terminals = new int[2 * MAX_CARDS];
+	private final int[] groups = new int[2 * MAX_CARDS];
+	private final int[] treeDistances = new int[2 * MAX_CARDS];
+	private final boolean[] inTree = new boolean[2 * MAX_CARDS];
+
+	/**
+	 * @param map the map (the current owners are taken into account)
+	 * @param gameDefinition the game's definition, for the destination cards
+	 * @param player the player whose routes are estimated
+	 * @throws IllegalArgumentException if the game definition has more than {@link #MAX_CARDS} destination cards
+	 */
+	public TicketCostEstimator(IndexedMapData map, GameDefinition gameDefinition, Player player) {
+		this.player = player;
+		routes = new ShortestRouteTable(map, player);
+		Collection<DestinationCard> allCards = gameDefinition.getDestinationCards();
+		if(allCards.size() > MAX_CARDS) {
+			throw new IllegalArgumentException("Too many destination cards: " + allCards.size());
+		}
+		cards = allCards.toArray(new DestinationCard[0]);
+		cardStarts = new int[cards.length];
+		cardEnds = new int[cards.length];
+		for(int i = 0; i < cards.length; i++) {
+			cardIndices.put(cards[i], i);
+			cardStarts[i] = map.getDestinationIndex(cards[i].getStart());
+			cardEnds[i] = map.getDestinationIndex(cards[i].getEnd());
+		}
+
+		SplittableRandom random = new SplittableRandom(map.getNumConnections());
+		ownedHashes = new long[map.getNumConnections()];
+		blockedHashes = new long[map.getNumConnections()];
+		owners = new Player[map.getNumConnections()];
+		for(int c = 0; c < owners.length; c++) {
+			ownedHashes[c] = random.nextLong();
+			blockedHashes[c] = random.nextLong();
+			owners[c] = map.getOwner(c);
+			boardHash ^= getHash(c);
+		}
+	}
+
+	/**
+	 * Brings the estimator up to date with the connections that have been claimed since the last update
+	 * @param map the map the estimator was created for (or a clone of it)
+	 */
+	public void update(IndexedMapData map) {
+		for(int c = 0; c < owners.length; c++) {
+			if(map.getOwner(c) != owners[c]) {
+				boardHash ^= getHash(c);
+				owners[c] = map.getOwner(c);
+				boardHash ^= getHash(c);
+				routes.connectionClaimed(map, c);
+			}
+		}
+	}
+
+	/**
+	 * @return the routes the estimates are based on
+	 */
+	public ShortestRouteTable getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * @param card a destination card from the game definition
+	 * @return the index of the card's bit in masks, or -1 if the card isn't in the game definition
+	 */
+	public int getCardIndex(DestinationCard card) {
+		Integer index = cardIndices.get(card);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param cards destination cards from the game definition
+	 * @return mask with the cards' bits set
+	 * @throws IllegalArgumentException if a card isn't in the game definition
+	 */
+	public long getMask(Collection<DestinationCard> cards) {
+		long mask = 0;
+		for(DestinationCard card : cards) {
+			int index = getCardIndex(card);
+			if(index < 0) {
+				throw new IllegalArgumentException("Can't estimate the cost of " + card);
+			}
+			mask |= 1L << index;
+		}
+		return mask;
+	}
+
+	/**
+	 * @param mask destination cards
+	 * @return total points of the cards
+	 */
+	public int getPoints(long mask) {
+		int points = 0;
+		for(long bits = mask; bits != 0; bits &= bits - 1) {
+			points += cards[Long.numberOfTrailingZeros(bits)].getNumPoints();
+		}
+		return points;
+	}
+
+	/**
+	 * @param mask destination cards
+	 * @return estimate of the number of trains the player still needs to complete every card (0 if they're
+	 * all complete), or {@link #UNREACHABLE} if they can't all be completed
+	 */
+	public int estimateCost(long mask) {
+		lookupKey.set(mask, boardHash);
+		Integer cached = cache.get(lookupKey);
+		if(cached != null) {
+			return cached;
+		}
+		int cost = calculateCost(mask);
+		if(cache.size() >= MAX_CACHE_SIZE) {
+			cache.clear();
+		}
+		CacheKey key = new CacheKey();
+		key.set(mask, boardHash);
+		cache.put(key, cost);
+		return cost;
+	}
+
+	/**
+	 * @param cards destination cards from the game definition
+	 * @return see {@link #estimateCost(long)}
+	 */
+	public int estimateCost(Collection<DestinationCard> cards) {
+		return estimateCost(getMask(cards));
+	}
+
+	private int calculateCost(long mask) {
+		//Collect the distinct destinations, and group the ones that have to be connected to each other
+		int numTerminals = 0;
+		for(long bits = mask; bits != 0; bits &= bits - 1) {
+			int card = Long.numberOfTrailingZeros(bits);
+			int start = addTerminal(cardStarts[card], numTerminals);
+			numTerminals = Math.max(numTerminals, start + 1);
+			int end = addTerminal(cardEnds[card], numTerminals);
+			numTerminals = Math.max(numTerminals, end + 1);
+			mergeGroups(groups[start], groups[end], numTerminals);
+		}
+		if(numTerminals == 0) {
+			return 0;
+		}
+
+		int together = spanningTreeCost(numTerminals, -1);
+		int separate = 0;
+		for(int t = 0; t < numTerminals && separate < UNREACHABLE; t++) {
+			//Each group's tree is added when its first terminal is reached
+			boolean first = true;
+			for(int s = 0; s < t; s++) {
+				first &= groups[s] != groups[t];
+			}
+			if(first) {
+				separate = Math.min(UNREACHABLE, separate + spanningTreeCost(numTerminals, groups[t]));
+			}
+		}
+		return Math.min(together, separate);
+	}
+
+	/**
+	 * @return the position of the destination in {@link #terminals}, adding it (in its own group) if it isn't there yet
+	 */
+	private int addTerminal(int destination, int numTerminals) {
+		for(int t = 0; t < numTerminals; t++) {
+			if(terminals[t] == destination) {
+				return t;
+			}
+		}
+		terminals[numTerminals] = destination;
+		groups[numTerminals] = numTerminals;
+		return numTerminals;
+	}
+
+	private void mergeGroups(int group1, int group2, int numTerminals) {
+		for(int t = 0; t < numTerminals; t++) {
+			if(groups[t] == group2) {
+				groups[t] = group1;
+			}
+		}
+	}
+
+	/**
+	 * Prim's algorithm over the shortest route distances between the terminals
+	 * @param group only terminals in this group are included (or every terminal if this is -1)
+	 * @return the cost of the tree, or {@link #UNREACHABLE} if the terminals can't all be connected
+	 */
+	private int spanningTreeCost(int numTerminals, int group) {
+		int first = -1;
+		for(int t = 0; t < numTerminals; t++) {
+			inTree[t] = group >= 0 && groups[t] != group;
+			treeDistances[t] = UNREACHABLE;
+			if(!inTree[t] && first < 0) {
+				first = t;
+			}
+		}
+		treeDistances[first] = 0;
+		int cost = 0;
+		while(true) {
+			int next = -1;
+			for(int t = 0; t < numTerminals; t++) {
+				if(!inTree[t] && (next < 0 || treeDistances[t] < treeDistances[next])) {
+					next = t;
+				}
+			}
+			if(next < 0) {
+				return cost;
+			}
+			if(treeDistances[next] >= UNREACHABLE) {
+				return UNREACHABLE;
+			}
+			inTree[next] = true;
+			cost += treeDistances[next];
+			for(int t = 0; t < numTerminals; t++) {
+				if(!inTree[t]) {
+					treeDistances[t] = Math.min(treeDistances[t], routes.getDistance(terminals[next], terminals[t]));
+				}
+			}
+		}
+	}
+
+	private long getHash(int connectionIndex) {
+		Player owner = owners[connectionIndex];
+		if(owner == null) {
+			return 0;
+		}
+		return owner == player ? ownedHashes[connectionIndex] : blockedHashes[connectionIndex];
+	}
+
+	/**
+	 * @return number of estimates currently cached
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Destination card mask and board hash used as a key in the {@link TicketCostEstimator#cache}
+	 */
+	private static final class CacheKey {
+		private long mask;
+		private long boardHash;
+
+		void set(long mask, long boardHash) {
+			this.mask = mask;
+			this.boardHash = boardHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(mask * 31 + boardHash);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof CacheKey && ((CacheKey)o).mask == mask && ((CacheKey)o).boardHash == boardHash;
+		}
+	}
+}
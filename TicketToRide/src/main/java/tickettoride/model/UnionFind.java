@@ -0,0 +1,111 @@
+package tickettoride.model;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint set forest over the integers 0 to n - 1 (union by size with path halving), so
+ * {@link #find(int)} and {@link #union(int, int)} are effectively constant time.
+ * </br></br>
+ * {@link GameState} keeps one of these per player over the destination indices, with the two ends of
+ * each connection the player has claimed unioned together. Two destinations are connected by a player's
+ * connections exactly when they are in the same set.
+ * @author nate
+ */
+public final class UnionFind {
+
+	/** Parent of each element. Roots are their own parent. */
+	private final int[] parents;
+	/** Number of elements in the set (only meaningful for roots) */
+	private final int[] sizes;
+	/** Number of disjoint sets */
+	private int numSets;
+
+	/**
+	 * Creates n singleton sets
+	 * @param n number of elements
+	 */
+	public UnionFind(int n) {
+		parents = new int[n];
+		sizes = new int[n];
+		reset();
+	}
+
+	/**
+	 * Creates a copy of another union find
+	 * @param other the one to copy
+	 */
+	public UnionFind(UnionFind other) {
+		parents = other.parents.clone();
+		sizes = other.sizes.clone();
+		numSets = other.numSets;
+	}
+
+	/**
+	 * Puts every element back in its own set
+	 */
+	public void reset() {
+		for(int i = 0; i < parents.length; i++) {
+			parents[i] = i;
+		}
+		Arrays.fill(sizes, 1);
+		numSets = parents.length;
+	}
+
+	/**
+	 * @param element an element
+	 * @return the representative of the element's set
+	 */
+	public int find(int element) {
+		while(parents[element] != element) {
+			//Path halving: point every other node on the path at its grandparent
+			parents[element] = parents[parents[element]];
+			element = parents[element];
+		}
+		return element;
+	}
+
+	/**
+	 * Merges the sets containing the two elements
+	 * @return true if they were in different sets
+	 */
+	public boolean union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		if(rootA == rootB) {
+			return false;
+		}
+		if(sizes[rootA] < sizes[rootB]) {
+			int temp = rootA;
+			rootA = rootB;
+			rootB = temp;
+		}
+		parents[rootB] = rootA;
+		sizes[rootA] += sizes[rootB];
+		numSets--;
+		return true;
+	}
+
+	/**
+	 * @return true if the two elements are in the same set
+	 */
+	public boolean connected(int a, int b) {
+		return find(a) == find(b);
+	}
+
+	/**
+	 * @return the number of elements in the set containing the element
+	 */
+	public int getSetSize(int element) {
+		return sizes[find(element)];
+	}
+
+	/** @return {@link #numSets} */
+	public int getNumSets() {
+		return numSets;
+	}
+
+	/** @return the number of elements */
+	public int size() {
+		return parents.length;
+	}
+}
@@ -0,0 +1,677 @@
+package tickettoride.players;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
+import javafx.collections.ObservableSet;
+import tickettoride.GameController;
+import tickettoride.GameMover;
+import tickettoride.Move;
+import tickettoride.MoveList;
+import tickettoride.Mover;
+import tickettoride.Mover.DestinationCardSelectionMove;
+import tickettoride.SimulatedGame;
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.LongestRouteCalculator;
+import tickettoride.model.MapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.model.TicketCostEstimator;
+
+/**
+ * AI that picks each move with Monte Carlo tree search.
+ * </br></br>
+ * The AI can't see the deck or the other players' cards, so every iteration of the search starts by guessing
+ * them (a determinization): a game state is set up with everything the AI can see through its views and the
+ * map, and everything else is dealt out again at random (see {@link GameState#redealHiddenCards(int, int[], int[])}).
+ * The other players' hand sizes are estimated from how many turns they've had and how many trains they've
+ * used. Each iteration then walks down the tree (information set MCTS, so a node's children are only
+ * considered when their move is legal in the current guess), adds one node and plays the rest of the game
+ * out with a quick rollout policy: usually build something if possible, otherwise draw transportation cards.
+ * The finished game is scored with {@link GameController#calculateScores(GameState, LongestRouteCalculator)}.
+ * </br></br>
+ * Each move gets {@link #timeBudgetMillis} of searching, split across {@link #numThreads} threads. Every
+ * thread grows its own tree (root parallelization, so the threads never have to synchronize) and once the
+ * time is up the visit counts of the root moves are added up over all of the trees.
+ * </br></br>
+ * A turn that takes more than one step (drawing two cards, or drawing and then selecting destination cards)
+ * gets a new search for each step, starting from what the AI actually drew.
+ * @author nate
+ */
+public class MonteCarloAI implements Player {
+
+	public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+
+	/** UCB exploration constant */
+	private static final double EXPLORATION = 0.7;
+	/**
+	 * Rewards are a logistic function of how far ahead of the best opponent a player finishes, so this
+	 * many points ahead is worth about three quarters of a win
+	 */
+	private static final double SCORE_SCALE = 20;
+	/** Chance that a rollout builds a connection when it can */
+	private static final double BUILD_PROBABILITY = 0.6;
+	/** Guess at how many destination cards each opponent is holding */
+	private static final int OPPONENT_DESTINATION_CARDS = GameState.DESTINATION_CARDS_PER_DRAW - 1;
+	/** Guess at the average length of the connections opponents have built */
+	private static final double AVERAGE_CONNECTION_LENGTH = 2.5;
+
+	/** Shared by every instance. Its threads are daemons, so they don't keep the program running. */
+	private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private static final int NO_MOVE = -1;
+
+	/**
+	 * What the root of the tree is waiting for
+	 */
+	private enum RootStep {
+		/** Any move at the start of a turn */
+		START_OF_TURN,
+		/** Second transportation card (the first has already been drawn) */
+		SECOND_CARD,
+		/** Selecting from destination cards that have already been drawn */
+		SELECT_DESTINATION_CARDS
+	}
+
+	/** Time to search for each step of a turn */
+	private final long timeBudgetMillis;
+	/** Number of trees searched in parallel */
+	private final int numThreads;
+	/** Each thread stops after this many iterations even if it has time left */
+	private final int maxIterationsPerThread;
+	/** Seeds for the determinizations */
+	private final SplittableRandom seeds;
+
+	private GameDefinition gameDefinition;
+	private ObservableMap<CardColor, Integer> hand;
+	private ObservableSet<DestinationCard> destinationCards;
+	private ObservableMap<Player, Integer> trainsRemaining;
+	private ObservableList<CardColor> faceUpCards;
+
+	/** Number of turns this player has started */
+	private int turnsTaken = 0;
+	/** One per thread, so that their caches build up over the game */
+	private LongestRouteCalculator[] longestRouteCalculators;
+	/** For leaving destination card selections that can't be completed out of the search */
+	private TicketCostEstimator ticketCostEstimator;
+	/** Iterations done by all of the threads in the last search */
+	private int lastNumIterations = 0;
+
+	/**
+	 * Creates an AI that searches for {@link #DEFAULT_TIME_BUDGET_MILLIS} on every core
+	 */
+	public MonteCarloAI() {
+		this(DEFAULT_TIME_BUDGET_MILLIS, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param timeBudgetMillis {@link #timeBudgetMillis}
+	 * @param numThreads {@link #numThreads}
+	 */
+	public MonteCarloAI(long timeBudgetMillis, int numThreads) {
+		this(timeBudgetMillis, numThreads, Integer.MAX_VALUE, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * @param timeBudgetMillis {@link #timeBudgetMillis}
+	 * @param numThreads {@link #numThreads}
+	 * @param maxIterationsPerThread {@link #maxIterationsPerThread}
+	 * @param seed seed for the determinizations
+	 */
+	public MonteCarloAI(long timeBudgetMillis, int numThreads, int maxIterationsPerThread, long seed) {
+		this.timeBudgetMillis = timeBudgetMillis;
+		this.numThreads = Math.max(1, numThreads);
+		this.maxIterationsPerThread = maxIterationsPerThread;
+		this.seeds = new SplittableRandom(seed);
+	}
+
+	@Override
+	public void initialize(GameDefinition gameDefinition, int numPlayers) {
+		this.gameDefinition = gameDefinition;
+		turnsTaken = 0;
+		longestRouteCalculators = null;
+	}
+
+	@Override
+	public void setTransportationCardsMapView(ObservableMap<CardColor, Integer> unmodifiableTransportationCardsMap) {
+		hand = unmodifiableTransportationCardsMap;
+	}
+
+	@Override
+	public void setDestinationCardsView(ObservableSet<DestinationCard> unmodifiableDestinationCards) {
+		destinationCards = unmodifiableDestinationCards;
+	}
+
+	@Override
+	public void setNumberOfTrainsRemainingView(ObservableMap<Player, Integer> unmodifiableTrainsRemaining) {
+		trainsRemaining = unmodifiableTrainsRemaining;
+	}
+
+	@Override
+	public void setFaceUpTransportationCardsView(ObservableList<CardColor> cards) {
+		faceUpCards = cards;
+	}
+
+	@Override
+	public void executeMove(MapData mapData, Mover mover) {
+		boolean firstTurn = turnsTaken == 0;
+		turnsTaken++;
+
+		int move = search(mapData, mover, RootStep.START_OF_TURN, null, firstTurn);
+		if(move == NO_MOVE) {
+			return;
+		}
+		switch(Move.getType(move)) {
+		case Move.TYPE_DRAW_TRANSPORTATION_CARD:
+			mover.drawTransportationCard(Move.getCardNumber(move));
+			if(!mover.getTurnCompletedBinding().get()) {
+				int second = search(mapData, mover, RootStep.SECOND_CARD, null, firstTurn);
+				if(second != NO_MOVE) {
+					mover.drawTransportationCard(Move.getCardNumber(second));
+				}
+			}
+			break;
+		case Move.TYPE_DRAW_DESTINATION_CARDS:
+			//The cards can only be drawn once, so the search has to work with this selection
+			DestinationCardSelectionMove selection = mover.getDestinationCardsSelectionMove();
+			int select = search(mapData, mover, RootStep.SELECT_DESTINATION_CARDS, selection, firstTurn);
+			if(select != NO_MOVE) {
+				List<DestinationCard> options = new ArrayList<>(selection.getDestinationCardOptions());
+				selection.selectDestinationCards(toSet(options, Move.getDestinationCardMask(select)));
+			}
+			break;
+		case Move.TYPE_BUILD_CONNECTION:
+			Connection connection = getConnection(mapData, Move.getConnectionIndex(move));
+			int numWilds = Move.getNumWilds(move);
+			List<CardColor> cards = new ArrayList<>(Collections.nCopies(connection.getNumSegments() - numWilds, Move.getColor(move)));
+			cards.addAll(Collections.nCopies(numWilds, CardColor.ANY));
+			mover.buildConnection(connection, cards);
+			break;
+		default:
+			throw new IllegalStateException("Unexpected move " + Move.toString(move));
+		}
+	}
+
+	@Override
+	public String getDescription() {
+		return "Monte Carlo AI Player";
+	}
+
+	/**
+	 * @return {@link #lastNumIterations}
+	 */
+	public int getLastNumIterations() {
+		return lastNumIterations;
+	}
+
+	/**
+	 * Searches for the best move at the current step of the turn
+	 * @param selection the destination cards that were drawn (only for {@link RootStep#SELECT_DESTINATION_CARDS},
+	 * otherwise null)
+	 * @return the encoded move, or {@link #NO_MOVE} if there's nothing that can be done
+	 */
+	private int search(MapData mapData, Mover mover, RootStep step, DestinationCardSelectionMove selection, boolean firstTurn) {
+		Search search = new Search(mapData, mover, step, selection, firstTurn);
+		MoveList rootMoves = search.rootMoves;
+		if(rootMoves.size() <= 1) {
+			lastNumIterations = 0;
+			return rootMoves.isEmpty() ? NO_MOVE : rootMoves.get(0);
+		}
+
+		if(longestRouteCalculators == null) {
+			longestRouteCalculators = new LongestRouteCalculator[numThreads];
+			for(int i = 0; i < numThreads; i++) {
+				longestRouteCalculators[i] = new LongestRouteCalculator(search.observed.getIndexedMap());
+			}
+		}
+
+		long deadline = System.nanoTime() + timeBudgetMillis * 1000000;
+		List<Callable<Node>> workers = new ArrayList<>(numThreads);
+		for(int i = 0; i < numThreads; i++) {
+			LongestRouteCalculator calculator = longestRouteCalculators[i];
+			long seed = seeds.nextLong();
+			workers.add(() -> search.run(calculator, new SplittableRandom(seed), deadline));
+		}
+
+		//Add up the visits to each root move over all of the trees
+		int[] visits = new int[rootMoves.size()];
+		lastNumIterations = 0;
+		try {
+			for(Future<Node> future : SEARCH_POOL.invokeAll(workers)) {
+				Node root = future.get();
+				lastNumIterations += root.visits;
+				for(int i = 0; i < rootMoves.size(); i++) {
+					Node child = root.getChild(rootMoves.get(i));
+					visits[i] += child == null ? 0 : child.visits;
+				}
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		}
+
+		int best = 0;
+		for(int i = 1; i < visits.length; i++) {
+			if(visits[i] > visits[best]) {
+				best = i;
+			}
+		}
+		return rootMoves.get(best);
+	}
+
+	/**
+	 * Everything the AI knows at one step of its turn, plus the moves it can make
+	 */
+	private final class Search {
+
+		/**
+		 * Game state with everything the AI can see. Hidden cards have been dealt at random, but they
+		 * get dealt again for every iteration.
+		 */
+		private final GameState observed;
+		/** This player's index */
+		private final int me;
+		private final RootStep step;
+		/** The destination cards that were drawn this turn (null if they haven't been) */
+		private final DestinationCardSelectionMove selection;
+		/** The {@link #selection}'s options in order, so that bit i of a selection mask is the i-th one */
+		private final List<DestinationCard> options;
+		private final boolean[] firstTurnPending;
+		private final int finalTurnsRemaining;
+		private final int[] handSizes;
+		private final int[] numDestinationCards;
+		/** Legal moves at the root, according to the real mover */
+		private final MoveList rootMoves = new MoveList();
+
+		private Search(MapData mapData, Mover mover, RootStep step, DestinationCardSelectionMove selection, boolean firstTurn) {
+			this.step = step;
+			this.selection = selection;
+			this.options = selection == null ? Collections.emptyList() : new ArrayList<>(selection.getDestinationCardOptions());
+			List<Player> players = new ArrayList<>(trainsRemaining.keySet());
+			int numPlayers = players.size();
+			me = players.indexOf(MonteCarloAI.this);
+
+			observed = new GameState(players, gameDefinition, seeds.nextLong());
+			IndexedMapData map = observed.getIndexedMap();
+			for(int i = 0; i < map.getNumConnections(); i++) {
+				Player owner = getConnection(mapData, i).getOwnerProperty().getValue();
+				if(owner != null) {
+					map.claim(i, owner);
+				}
+			}
+			for(int p = 0; p < numPlayers; p++) {
+				observed.useTrains(p, gameDefinition.getInitialNumberOfTrainsPerPlayer() - trainsRemaining.get(players.get(p)));
+			}
+			for(CardColor color : CardColor.values()) {
+				int count = observed.getNumTransportationCards(me, color);
+				int target = hand.getOrDefault(color, 0);
+				observed.removeTransportationCardsFromPlayersHand(me, color, count);
+				for(int i = 0; i < target; i++) {
+					observed.addTransportationCardToPlayersHand(me, color);
+				}
+			}
+			//Drawn destination cards are held on to here so that they don't get dealt to anybody else
+			List<DestinationCard> held = new ArrayList<>(destinationCards);
+			held.addAll(options);
+			observed.addDestinationCardsToPlayersHand(MonteCarloAI.this, held);
+			for(int i = 0; i < GameState.NUM_FACE_UP_CARDS; i++) {
+				observed.setFaceUpTransportationCard(i, i < faceUpCards.size() ? faceUpCards.get(i) : null);
+			}
+
+			//Players before this one in the turn order have had one more turn than it has
+			firstTurnPending = new boolean[numPlayers];
+			handSizes = new int[numPlayers];
+			numDestinationCards = new int[numPlayers];
+			int turnsBeforeThisOne = turnsTaken - 1;
+			for(int p = 0; p < numPlayers; p++) {
+				int turns = turnsBeforeThisOne + (p < me ? 1 : 0);
+				firstTurnPending[p] = p == me ? firstTurn : turns == 0;
+				numDestinationCards[p] = turns == 0 ? 0 : OPPONENT_DESTINATION_CARDS;
+				int trainsUsed = gameDefinition.getInitialNumberOfTrainsPerPlayer() - observed.getNumTrainsRemaining(p);
+				int builds = (int)Math.round(trainsUsed / AVERAGE_CONNECTION_LENGTH);
+				int drawTurns = Math.max(0, turns - 1 - builds);
+				handSizes[p] = Math.max(0, GameState.INITIAL_HAND_SIZE + 2 * drawTurns - trainsUsed);
+			}
+			observed.redealHiddenCards(me, handSizes, numDestinationCards);
+
+			finalTurnsRemaining = getFinalTurnsRemaining();
+			generateRootMoves(mover);
+		}
+
+		/**
+		 * @return the number of turns left in the game (including this one) if somebody has started the
+		 * final round, otherwise -1
+		 */
+		private int getFinalTurnsRemaining() {
+			int numPlayers = firstTurnPending.length;
+			int remaining = -1;
+			for(int p = 0; p < numPlayers; p++) {
+				if(observed.getNumTrainsRemaining(p) <= GameController.FINAL_ROUND_TRAIN_THRESHOLD) {
+					//The final round started after p's turn, so every player gets one more turn, ending with p
+					int turnsSince = (me - p - 1 + numPlayers) % numPlayers;
+					int turnsLeft = numPlayers - turnsSince;
+					remaining = remaining < 0 ? turnsLeft : Math.min(remaining, turnsLeft);
+				}
+			}
+			return remaining;
+		}
+
+		private void generateRootMoves(Mover mover) {
+			switch(step) {
+			case START_OF_TURN:
+				MoveList moves = new MoveList();
+				new GameMover(observed, MonteCarloAI.this, firstTurnPending[me]).generateLegalMoves(moves);
+				for(int i = 0; i < moves.size(); i++) {
+					int move = moves.get(i);
+					//The deck and destination cards that were guessed might not match the real ones
+					if(Move.getType(move) == Move.TYPE_DRAW_TRANSPORTATION_CARD && !mover.canDrawTransportationCard(Move.getCardNumber(move))) {
+						continue;
+					}
+					if(Move.getType(move) == Move.TYPE_DRAW_DESTINATION_CARDS && mover.getNumDestinationCardsThatCanBeDrawn() == 0) {
+						continue;
+					}
+					rootMoves.add(move);
+				}
+				break;
+			case SECOND_CARD:
+				for(int cardNumber = 0; cardNumber <= GameState.NUM_FACE_UP_CARDS; cardNumber++) {
+					if(mover.canDrawTransportationCard(cardNumber)) {
+						rootMoves.add(Move.drawTransportationCard(cardNumber));
+					}
+				}
+				break;
+			case SELECT_DESTINATION_CARDS:
+				//Selections that there aren't enough trains left to complete aren't worth searching (unless
+				//there's nothing else), so the search can spend its time on the rest
+				if(gameDefinition.getDestinationCards().size() > TicketCostEstimator.MAX_CARDS) {
+					for(int mask = 1; mask < 1 << options.size(); mask++) {
+						if(selection.canSelectDestinationCards(toSet(options, mask))) {
+							rootMoves.add(Move.selectDestinationCards(mask));
+						}
+					}
+					break;
+				}
+				if(ticketCostEstimator == null) {
+					ticketCostEstimator = new TicketCostEstimator(observed.getIndexedMap(), gameDefinition, MonteCarloAI.this);
+				}
+				ticketCostEstimator.update(observed.getIndexedMap());
+				long heldMask = ticketCostEstimator.getMask(destinationCards);
+				int trains = observed.getNumTrainsRemaining(me);
+				int cheapest = NO_MOVE;
+				int cheapestCost = Integer.MAX_VALUE;
+				for(int mask = 1; mask < 1 << options.size(); mask++) {
+					Set<DestinationCard> selected = toSet(options, mask);
+					if(!selection.canSelectDestinationCards(selected)) {
+						continue;
+					}
+					int cost = ticketCostEstimator.estimateCost(heldMask | ticketCostEstimator.getMask(selected));
+					if(cost <= trains) {
+						rootMoves.add(Move.selectDestinationCards(mask));
+					}
+					else if(cost < cheapestCost) {
+						cheapest = Move.selectDestinationCards(mask);
+						cheapestCost = cost;
+					}
+				}
+				if(rootMoves.isEmpty() && cheapest != NO_MOVE) {
+					rootMoves.add(cheapest);
+				}
+				break;
+			}
+		}
+
+		/**
+		 * Grows a tree until the deadline (or {@link MonteCarloAI#maxIterationsPerThread})
+		 * @return the root of the tree
+		 */
+		private Node run(LongestRouteCalculator calculator, SplittableRandom random, long deadline) {
+			Node root = new Node(NO_MOVE, -1);
+			MoveList moves = new MoveList();
+			double[] rewards = new double[firstTurnPending.length];
+			for(int iteration = 0; iteration < maxIterationsPerThread && (iteration == 0 || System.nanoTime() < deadline); iteration++) {
+				GameState state = new GameState(observed, random.nextLong());
+				state.redealHiddenCards(me, handSizes, numDestinationCards);
+				SimulatedGame game = new SimulatedGame(state, me, firstTurnPending, finalTurnsRemaining);
+
+				List<Node> path = new ArrayList<>();
+				path.add(root);
+				Node node = root.select(rootMoves, me, random);
+				if(!makeRootMove(game, node.move)) {
+					continue;
+				}
+				path.add(node);
+
+				//Walk down the tree until a node is added
+				boolean expanded = node.visits == 0;
+				game.generateLegalMoves(moves);
+				while(!expanded && !moves.isEmpty()) {
+					int player = game.getCurrentPlayer();
+					node = node.select(moves, player, random);
+					expanded = node.visits == 0;
+					game.makeMove(node.move);
+					path.add(node);
+					game.generateLegalMoves(moves);
+				}
+
+				//Then play the rest of the game quickly
+				while(!moves.isEmpty()) {
+					game.makeMove(rolloutMove(moves, random));
+					game.generateLegalMoves(moves);
+				}
+
+				setRewards(GameController.calculateScores(state, calculator), rewards);
+				for(Node visited : path) {
+					visited.visits++;
+					visited.totalReward += visited.player < 0 ? 0 : rewards[visited.player];
+				}
+			}
+			return root;
+		}
+
+		/**
+		 * Makes a move at the root of the tree
+		 * @return false if the move can't be made in this game (because the hidden cards that were dealt
+		 * don't allow it)
+		 */
+		private boolean makeRootMove(SimulatedGame game, int move) {
+			GameState state = game.getGameState();
+			switch(step) {
+			case SECOND_CARD:
+				CardColor drawn = state.drawTransportationCard(Move.getCardNumber(move));
+				if(drawn != null) {
+					state.addTransportationCardToPlayersHand(me, drawn);
+				}
+				game.endTurn(true);
+				return true;
+			case SELECT_DESTINATION_CARDS:
+				Set<DestinationCard> kept = toSet(options, Move.getDestinationCardMask(move));
+				List<DestinationCard> returned = new ArrayList<>(options);
+				returned.removeAll(kept);
+				state.removeDestinationCardsFromPlayersHand(me, returned);
+				state.placeDestinationCardsAtBottomOfDeck(returned);
+				game.endTurn(true);
+				return true;
+			default:
+				if(!game.canMakeMove(move)) {
+					return false;
+				}
+				game.makeMove(move);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Quick move choice for the end of a simulated game: build a random connection most of the time when
+	 * possible, otherwise draw a random transportation card (or select random destination cards).
+	 * Destination cards are only drawn if there's nothing else to do.
+	 */
+	private static int rolloutMove(MoveList moves, SplittableRandom random) {
+		int numBuilds = 0;
+		int numPlain = 0;
+		for(int i = 0; i < moves.size(); i++) {
+			int type = Move.getType(moves.get(i));
+			numBuilds += type == Move.TYPE_BUILD_CONNECTION ? 1 : 0;
+			numPlain += type == Move.TYPE_DRAW_TRANSPORTATION_CARD || type == Move.TYPE_SELECT_DESTINATION_CARDS ? 1 : 0;
+		}
+		if(numBuilds > 0 && (numPlain == 0 || random.nextDouble() < BUILD_PROBABILITY)) {
+			return nthOfType(moves, random.nextInt(numBuilds), Move.TYPE_BUILD_CONNECTION, -1);
+		}
+		if(numPlain > 0) {
+			return nthOfType(moves, random.nextInt(numPlain), Move.TYPE_DRAW_TRANSPORTATION_CARD, Move.TYPE_SELECT_DESTINATION_CARDS);
+		}
+		return moves.get(random.nextInt(moves.size()));
+	}
+
+	/**
+	 * @return the n-th move in the list whose type is one of the two types
+	 */
+	private static int nthOfType(MoveList moves, int n, int type1, int type2) {
+		for(int i = 0; i < moves.size(); i++) {
+			int type = Move.getType(moves.get(i));
+			if((type == type1 || type == type2) && n-- == 0) {
+				return moves.get(i);
+			}
+		}
+		throw new IllegalArgumentException("Not enough moves of type " + type1);
+	}
+
+	/**
+	 * Turns the scores into a reward between 0 and 1 for each player
+	 */
+	private static void setRewards(int[] scores, double[] rewards) {
+		for(int p = 0; p < scores.length; p++) {
+			int bestOther = Integer.MIN_VALUE;
+			for(int q = 0; q < scores.length; q++) {
+				if(q != p) {
+					bestOther = Math.max(bestOther, scores[q]);
+				}
+			}
+			double lead = scores.length == 1 ? 0 : scores[p] - bestOther;
+			rewards[p] = 1 / (1 + Math.exp(-lead / SCORE_SCALE));
+		}
+	}
+
+	/**
+	 * @return the connection at the specified index (the map's connections are in the same order as the game definition's)
+	 */
+	private static Connection getConnection(MapData mapData, int index) {
+		if(mapData instanceof IndexedMapData) {
+			return ((IndexedMapData)mapData).getConnection(index);
+		}
+		int i = 0;
+		for(Connection connection : mapData.getConnections()) {
+			if(i++ == index) {
+				return connection;
+			}
+		}
+		throw new IndexOutOfBoundsException(index);
+	}
+
+	private static Set<DestinationCard> toSet(List<DestinationCard> options, int mask) {
+		Set<DestinationCard> set = new HashSet<>();
+		for(int i = 0; i < options.size(); i++) {
+			if((mask & 1 << i) != 0) {
+				set.add(options.get(i));
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Node in a search tree. Each node is the move that was made to get there from its parent.
+	 */
+	private static final class Node {
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private final int move;
+		/** Player who made {@link #move} (rewards are from their point of view) */
+		private final int player;
+		private Node[] children = NO_CHILDREN;
+		private int numChildren = 0;
+
+		private int visits = 0;
+		/** Number of times this node's move was legal when its parent was visited */
+		private int availability = 0;
+		private double totalReward = 0;
+
+		private Node(int move, int player) {
+			this.move = move;
+			this.player = player;
+		}
+
+		private Node getChild(int move) {
+			for(int i = 0; i < numChildren; i++) {
+				if(children[i].move == move) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Picks one of the legal moves: a random one that hasn't been tried yet if there are any,
+		 * otherwise the one with the best upper confidence bound
+		 * @param moves legal moves in the current game
+		 * @param player player making the move
+		 * @return the child for the move (added if it's new)
+		 */
+		private Node select(MoveList moves, int player, SplittableRandom random) {
+			int untried = NO_MOVE;
+			int numUntried = 0;
+			for(int i = 0; i < moves.size(); i++) {
+				Node child = getChild(moves.get(i));
+				if(child == null) {
+					//Reservoir sample so each untried move is equally likely
+					if(random.nextInt(++numUntried) == 0) {
+						untried = moves.get(i);
+					}
+				}
+				else {
+					child.availability++;
+				}
+			}
+			if(numUntried > 0) {
+				if(numChildren == children.length) {
+					children = Arrays.copyOf(children, Math.max(4, numChildren * 2));
+				}
+				Node child = new Node(untried, player);
+				child.availability++;
+				children[numChildren++] = child;
+				return child;
+			}
+
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for(int i = 0; i < moves.size(); i++) {
+				Node child = getChild(moves.get(i));
+				//A child can be left unvisited if its move turned out to be impossible in the game it was added in
+				double value = child.visits == 0 ? Double.POSITIVE_INFINITY : child.totalReward / child.visits +
+						EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+				if(value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+	}
+}
@@ -1,34 +1,142 @@
 package tickettoride.players;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.collections.ObservableSet;
+import tickettoride.GameMover;
+import tickettoride.MoveList;
 import tickettoride.Mover;
 import tickettoride.Mover.DestinationCardSelectionMove;
 import tickettoride.model.GameDefinition;
 import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameState;
 import tickettoride.model.MapData;
 import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
 
 /**
- * This will be a pretty random player. For now it's even worse than random and will end up with hugely
- * negative scores every game. I'll modify this later. Students should not modify this class
+ * This player picks uniformly at random from its legal moves at every step of its turn (so drawing two
+ * cards is two random choices). It's not meant to win anything, but it's useful as an opponent for
+ * testing and as the baseline in tournaments and simulations. Students should not modify this class
+ * </br></br>
+ * When it's given a {@link GameMover} (which is what the {@link tickettoride.GameController} always gives it) it uses
+ * {@link GameMover#generateLegalMoves(MoveList)} into a list that it keeps between turns, so a turn doesn't
+ * allocate anything in here. Drawing transportation cards and building don't allocate in the mover either.
+ * Drawing destination cards still allocates the drawn cards and the selection move that holds them in the
+ * mover, but keeping some of them doesn't. Any other {@link Mover} gets the same kind of random move through the plain
+ * {@link Mover} methods, which is a lot slower.
+ * </br></br>
+ * Each instance has its own generator (a player is only ever used by the thread running its game, so there's
+ * no contention between games running in parallel). Players created with the same seed make the same
+ * choices in the same game.
  * @author nate
  */
 public class RandomAI implements Player {
 
+	/** Reused every turn */
+	private final MoveList moves = new MoveList();
+	private final SplittableRandom random;
+
+	/** Cards in hand, only used when the mover isn't a {@link GameMover} */
+	private ObservableMap<CardColor, Integer> hand;
+
+	/**
+	 * Creates a player with a randomly seeded generator
+	 */
+	public RandomAI() {
+		this(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * @param seed seed for the player's generator
+	 */
+	public RandomAI(long seed) {
+		random = new SplittableRandom(seed);
+	}
+
 	@Override
 	public void executeMove(MapData mapData, Mover mover) {
-		//This will be modified by the instructor later. For now, it will just draw destination cards until
-		//it's empty and then just draw the first transportation card.
-		if(mover.getNumDestinationCardsThatCanBeDrawn() > 0) {
-			DestinationCardSelectionMove selector =  mover.getDestinationCardsSelectionMove();
-			DestinationCard card = selector.getDestinationCardOptions().iterator().next();
-			selector.selectDestinationCards(Collections.singleton(card));
+		if(mover instanceof GameMover) {
+			GameMover gameMover = (GameMover)mover;
+			while(!gameMover.getTurnCompletedBinding().get()) {
+				gameMover.generateLegalMoves(moves);
+				if(moves.isEmpty()) {
+					return;
+				}
+				gameMover.makeMove(moves.get(random.nextInt(moves.size())));
+			}
 		}
 		else {
-			mover.drawTransportationCard(0);
+			while(!mover.getTurnCompletedBinding().get()) {
+				if(!makeRandomMove(mapData, mover)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes a random move through the {@link Mover} interface. Builds are tried with the cards of one color
+	 * (as many as possible) topped up with wilds, or just wilds.
+	 * @return false if there was nothing that could be done
+	 */
+	private boolean makeRandomMove(MapData mapData, Mover mover) {
+		List<Runnable> options = new ArrayList<>();
+		if(mover.getNumDestinationCardsThatCanBeDrawn() > 0) {
+			options.add(() -> selectRandomDestinationCards(mover.getDestinationCardsSelectionMove()));
+		}
+		for(int cardNumber = 0; cardNumber <= GameState.NUM_FACE_UP_CARDS; cardNumber++) {
+			if(mover.canDrawTransportationCard(cardNumber)) {
+				int card = cardNumber;
+				options.add(() -> mover.drawTransportationCard(card));
+			}
+		}
+		int numWilds = hand == null ? 0 : hand.getOrDefault(CardColor.ANY, 0);
+		for(Connection connection : mapData.getConnections()) {
+			int length = connection.getNumSegments();
+			for(CardColor color : CardColor.values()) {
+				int numColor = color == CardColor.ANY ? 0 : Math.min(length, hand == null ? 0 : hand.getOrDefault(color, 0));
+				if(color != CardColor.ANY && numColor == 0 || numColor + numWilds < length) {
+					continue;
+				}
+				List<CardColor> cards = new ArrayList<>(Collections.nCopies(numColor, color));
+				cards.addAll(Collections.nCopies(length - numColor, CardColor.ANY));
+				if(mover.canBuildConnection(connection, cards)) {
+					options.add(() -> mover.buildConnection(connection, cards));
+				}
+			}
+		}
+		if(options.isEmpty()) {
+			return false;
+		}
+		options.get(random.nextInt(options.size())).run();
+		return true;
+	}
+
+	private void selectRandomDestinationCards(DestinationCardSelectionMove selection) {
+		List<DestinationCard> options = new ArrayList<>(selection.getDestinationCardOptions());
+		List<Set<DestinationCard>> legal = new ArrayList<>();
+		for(int mask = 1; mask < 1 << options.size(); mask++) {
+			Set<DestinationCard> cards = new HashSet<>();
+			for(int i = 0; i < options.size(); i++) {
+				if((mask & 1 << i) != 0) {
+					cards.add(options.get(i));
+				}
+			}
+			if(selection.canSelectDestinationCards(cards)) {
+				legal.add(cards);
+			}
+		}
+		if(!legal.isEmpty()) {
+			selection.selectDestinationCards(legal.get(random.nextInt(legal.size())));
 		}
 	}
 
@@ -44,26 +152,22 @@ public class RandomAI implements Player {
 
 	@Override
 	public void setTransportationCardsMapView(ObservableMap<CardColor, Integer> unmodifiableTransportationCardsMap) {
-		// TODO Auto-generated method stub
-		
+		hand = unmodifiableTransportationCardsMap;
 	}
 
 	@Override
 	public void setDestinationCardsView(ObservableSet<DestinationCard> unmodifiableDestinationCards) {
-		// TODO Auto-generated method stub
-		
+		// This player doesn't care which destination cards it has
 	}
 
 	@Override
 	public void setNumberOfTrainsRemainingView(ObservableMap<Player, Integer> unmodifiableTrainsRemaining) {
-		// TODO Auto-generated method stub
-		
+		// Or how many trains anybody has
 	}
 
 	@Override
 	public void setFaceUpTransportationCardsView(ObservableList<CardColor> cards) {
-		// TODO Auto-generated method stub
-		
+		// The mover already knows which face up cards can be drawn
 	}
 
 }
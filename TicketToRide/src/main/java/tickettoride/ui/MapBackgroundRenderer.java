@@ -0,0 +1,128 @@
+package tickettoride.ui;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import javafx.geometry.Bounds;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import tickettoride.utilities.ImageLoader;
+
+/**
+ * Draws a map's background image onto a canvas without ever decoding or scaling more of it than is needed.
+ * </br></br>
+ * Big custom maps can be much larger than the screen, so instead of drawing the full size image and letting
+ * the canvas shrink it every time, the image is loaded (in the background) at a smaller size that's just big
+ * enough for the canvas. Those sizes go up in powers of two ({@link #MIN_LEVEL_SIZE} up to {@link #MAX_LEVEL_SIZE})
+ * like mipmap levels, so resizing the window a little doesn't load it again. While a new size is loading, the
+ * last one that finished loading is stretched to fit instead, and the canvas is repainted once the new one
+ * is ready.
+ * </br></br>
+ * Only the part of the image that's visible in the scroll pane is drawn.
+ * @author nate
+ *
+ */
+public class MapBackgroundRenderer {
+
+	/** Smallest size that the image is loaded at */
+	public static final double MIN_LEVEL_SIZE = 512;
+	/** Largest size that the image is loaded at, however big the canvas is */
+	public static final double MAX_LEVEL_SIZE = 8192;
+
+	/** Called when a newly loaded image is ready to be drawn */
+	private final Runnable repainter;
+
+	/** Background image file */
+	private File file;
+	/** Most recently loaded image of the {@link #file} (at some size) */
+	private Image current;
+	/** Image that is being loaded for the current size of the canvas, if it's different from {@link #current} */
+	private Image pending;
+
+	/**
+	 * @param repainter {@link #repainter}
+	 */
+	public MapBackgroundRenderer(Runnable repainter) {
+		this.repainter = repainter;
+	}
+
+	/**
+	 * @param file {@link #file}, or null if there's no background
+	 */
+	public void setFile(File file) {
+		if(file == null ? this.file != null : !file.equals(this.file)) {
+			this.file = file;
+			current = null;
+			pending = null;
+		}
+	}
+
+	/**
+	 * Draws the visible part of the background
+	 * @param gc graphics context of the canvas
+	 * @param width width of the canvas (the image is stretched to fill the whole canvas)
+	 * @param height height of the canvas
+	 * @param visible part of the canvas that is visible, in the canvas's coordinates
+	 */
+	public void paint(GraphicsContext gc, double width, double height, Bounds visible) {
+		if(file == null || width <= 0 || height <= 0) {
+			return;
+		}
+
+		double levelSize = getLevelSize(Math.max(width, height));
+		Image image;
+		try {
+			image = ImageLoader.loadInBackground(file, levelSize, levelSize);
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+			file = null;
+			return;
+		}
+		if(image == null) {
+			//Headless
+			return;
+		}
+
+		if(image.getProgress() >= 1 && !image.isError()) {
+			current = image;
+			pending = null;
+		}
+		else if(image != pending) {
+			pending = image;
+			ImageLoader.whenLoaded(image, loaded -> {
+				//Don't bother if the canvas has been resized again since then
+				if(loaded == pending) {
+					repainter.run();
+				}
+			});
+		}
+
+		if(current == null) {
+			return;
+		}
+		double minX = Math.max(0, visible.getMinX());
+		double minY = Math.max(0, visible.getMinY());
+		double maxX = Math.min(width, visible.getMaxX());
+		double maxY = Math.min(height, visible.getMaxY());
+		if(maxX <= minX || maxY <= minY) {
+			return;
+		}
+		double xScale = current.getWidth() / width;
+		double yScale = current.getHeight() / height;
+		gc.drawImage(current,
+				minX * xScale, minY * yScale, (maxX - minX) * xScale, (maxY - minY) * yScale,
+				minX, minY, maxX - minX, maxY - minY);
+	}
+
+	/**
+	 * @param size largest dimension of the canvas
+	 * @return the smallest level size that is at least as big as the canvas
+	 */
+	static double getLevelSize(double size) {
+		double levelSize = MIN_LEVEL_SIZE;
+		while(levelSize < size && levelSize < MAX_LEVEL_SIZE) {
+			levelSize *= 2;
+		}
+		return levelSize;
+	}
+}
@@ -0,0 +1,230 @@
+package tickettoride.ui;
+
+import java.util.Arrays;
+
+/**
+ * Grid index for finding what's under the mouse on the map without every destination and connection
+ * needing its own mouse handlers.
+ * </br></br>
+ * Things are added in the same fractional coordinates that {@link tickettoride.model.MapData.Destination}s
+ * use (0 to 1 across the width and height of the map), so the index doesn't have to be rebuilt when the map
+ * is resized. There are two kinds of things: points (destinations), which are hit within a radius, and segments
+ * (connections), which are hit inside a rectangle running between two points (or alongside the line between
+ * them, for parallel connections). Radiuses, widths and offsets are in pixels because that's how they're drawn,
+ * so the exact tests are done in pixels for the current size of the map.
+ * </br></br>
+ * Each thing gets an id (counting up from 0 in the order they're added). Points take priority over segments,
+ * since destinations are drawn on top of connections.
+ * @author nate
+ */
+public class MapHitIndex {
+
+	/** Returned by {@link #find(double, double, double, double)} when nothing is hit */
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** Number of cells across the width and height of the map */
+	private final int cellsPerSide;
+	/** Ids of the things overlapping each cell (cell index is row * cellsPerSide + column) */
+	private final int[][] cells;
+	private final int[] cellSizes;
+
+	//Everything that has been added, by id
+	private int size = 0;
+	private boolean[] isPoint = new boolean[INITIAL_CAPACITY];
+	private double[] startX = new double[INITIAL_CAPACITY];
+	private double[] startY = new double[INITIAL_CAPACITY];
+	private double[] endX = new double[INITIAL_CAPACITY];
+	private double[] endY = new double[INITIAL_CAPACITY];
+	/** Radius of a point, or half the width of a segment, in pixels */
+	private double[] halfWidths = new double[INITIAL_CAPACITY];
+	/** How far in from each end of a segment it starts being hit, in pixels */
+	private double[] insets = new double[INITIAL_CAPACITY];
+	/** How far to the side of the line between its ends a segment's middle is, in pixels */
+	private double[] offsets = new double[INITIAL_CAPACITY];
+	/** Largest {@link #halfWidths} entry plus offset, which is how far around the mouse has to be searched */
+	private double maxHalfWidth = 0;
+
+	/**
+	 * @param cellsPerSide {@link #cellsPerSide}
+	 */
+	public MapHitIndex(int cellsPerSide) {
+		this.cellsPerSide = cellsPerSide;
+		cells = new int[cellsPerSide * cellsPerSide][];
+		cellSizes = new int[cells.length];
+	}
+
+	/**
+	 * Adds a point, such as a destination
+	 * @param xFraction horizontal position as a fraction of the map's width
+	 * @param yFraction vertical position as a fraction of the map's height
+	 * @param radius distance from the point that counts as a hit, in pixels
+	 * @return id of the point
+	 */
+	public int addPoint(double xFraction, double yFraction, double radius) {
+		return add(true, xFraction, yFraction, xFraction, yFraction, radius, 0, 0);
+	}
+
+	/**
+	 * Adds a segment, such as a connection (or a group of parallel connections)
+	 * @param startXFraction horizontal position of one end as a fraction of the map's width
+	 * @param startYFraction vertical position of one end as a fraction of the map's height
+	 * @param endXFraction horizontal position of the other end
+	 * @param endYFraction vertical position of the other end
+	 * @param halfWidth distance from the line between the ends that counts as a hit, in pixels
+	 * @param inset distance in from each end that the segment starts, in pixels
+	 * @return id of the segment
+	 */
+	public int addSegment(double startXFraction, double startYFraction, double endXFraction, double endYFraction,
+							double halfWidth, double inset) {
+		return addSegment(startXFraction, startYFraction, endXFraction, endYFraction, halfWidth, inset, 0);
+	}
+
+	/**
+	 * Adds a segment that runs alongside the line between two points instead of along it, such as one
+	 * of several parallel connections
+	 * @param startXFraction horizontal position of one end as a fraction of the map's width
+	 * @param startYFraction vertical position of one end as a fraction of the map's height
+	 * @param endXFraction horizontal position of the other end
+	 * @param endYFraction vertical position of the other end
+	 * @param halfWidth distance from the middle of the segment that counts as a hit, in pixels
+	 * @param inset distance in from each end that the segment starts, in pixels
+	 * @param offset distance from the line between the ends to the middle of the segment, in pixels. Positive
+	 * is to the left when going from the start to the end on the screen (which is up for a segment going
+	 * to the right).
+	 * @return id of the segment
+	 */
+	public int addSegment(double startXFraction, double startYFraction, double endXFraction, double endYFraction,
+							double halfWidth, double inset, double offset) {
+		return add(false, startXFraction, startYFraction, endXFraction, endYFraction, halfWidth, inset, offset);
+	}
+
+	private int add(boolean point, double x1, double y1, double x2, double y2, double halfWidth, double inset, double offset) {
+		if(size == isPoint.length) {
+			int capacity = size * 2;
+			isPoint = Arrays.copyOf(isPoint, capacity);
+			startX = Arrays.copyOf(startX, capacity);
+			startY = Arrays.copyOf(startY, capacity);
+			endX = Arrays.copyOf(endX, capacity);
+			endY = Arrays.copyOf(endY, capacity);
+			halfWidths = Arrays.copyOf(halfWidths, capacity);
+			insets = Arrays.copyOf(insets, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+		}
+		int id = size++;
+		isPoint[id] = point;
+		startX[id] = x1;
+		startY[id] = y1;
+		endX[id] = x2;
+		endY[id] = y2;
+		halfWidths[id] = halfWidth;
+		insets[id] = inset;
+		offsets[id] = offset;
+		maxHalfWidth = Math.max(maxHalfWidth, halfWidth + Math.abs(offset));
+
+		//The widths are in pixels, so they're covered by searching around the mouse instead
+		int minColumn = getCell(Math.min(x1, x2));
+		int maxColumn = getCell(Math.max(x1, x2));
+		int minRow = getCell(Math.min(y1, y2));
+		int maxRow = getCell(Math.max(y1, y2));
+		for(int row = minRow; row <= maxRow; row++) {
+			for(int column = minColumn; column <= maxColumn; column++) {
+				addToCell(row * cellsPerSide + column, id);
+			}
+		}
+		return id;
+	}
+
+	private void addToCell(int cell, int id) {
+		if(cells[cell] == null) {
+			cells[cell] = new int[4];
+		}
+		else if(cellSizes[cell] == cells[cell].length) {
+			cells[cell] = Arrays.copyOf(cells[cell], cellSizes[cell] * 2);
+		}
+		cells[cell][cellSizes[cell]++] = id;
+	}
+
+	/**
+	 * @return the row or column of the cell containing the fractional coordinate (things off the edge of
+	 * the map go in the edge cells)
+	 */
+	private int getCell(double fraction) {
+		return Math.max(0, Math.min(cellsPerSide - 1, (int)Math.floor(fraction * cellsPerSide)));
+	}
+
+	/**
+	 * @return the number of points and segments that have been added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Finds what's at a position on the map. If several things are there, points win over segments, and
+	 * after that whichever is closest wins.
+	 * @param x horizontal position in pixels
+	 * @param y vertical position in pixels
+	 * @param width current width of the map in pixels
+	 * @param height current height of the map in pixels
+	 * @return id of the point or segment at the position, or {@link #NONE}
+	 */
+	public int find(double x, double y, double width, double height) {
+		if(width <= 0 || height <= 0) {
+			return NONE;
+		}
+		int minColumn = getCell((x - maxHalfWidth) / width);
+		int maxColumn = getCell((x + maxHalfWidth) / width);
+		int minRow = getCell((y - maxHalfWidth) / height);
+		int maxRow = getCell((y + maxHalfWidth) / height);
+
+		int best = NONE;
+		double bestDistance = Double.MAX_VALUE;
+		for(int row = minRow; row <= maxRow; row++) {
+			for(int column = minColumn; column <= maxColumn; column++) {
+				int cell = row * cellsPerSide + column;
+				for(int i = 0; i < cellSizes[cell]; i++) {
+					int id = cells[cell][i];
+					double distance = getDistance(id, x, y, width, height);
+					if(distance < 0) {
+						continue;
+					}
+					boolean better = best == NONE ||
+							(isPoint[id] != isPoint[best] ? isPoint[id] : distance < bestDistance);
+					if(better) {
+						best = id;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return how far the position is from the point, or from the line through the middle of the segment, in
+	 * pixels, or -1 if it's not a hit at all
+	 */
+	private double getDistance(int id, double x, double y, double width, double height) {
+		double x1 = startX[id] * width;
+		double y1 = startY[id] * height;
+		if(isPoint[id]) {
+			double distance = Math.sqrt((x - x1) * (x - x1) + (y - y1) * (y - y1));
+			return distance <= halfWidths[id] ? distance : -1;
+		}
+		double dx = endX[id] * width - x1;
+		double dy = endY[id] * height - y1;
+		double length = Math.sqrt(dx * dx + dy * dy);
+		if(length == 0) {
+			return -1;
+		}
+		//Position along the segment and across it (y is down on the screen, so this is positive to the left)
+		double along = ((x - x1) * dx + (y - y1) * dy) / length;
+		double across = Math.abs(((x - x1) * dy - (y - y1) * dx) / length - offsets[id]);
+		if(along < insets[id] || along > length - insets[id] || across > halfWidths[id]) {
+			return -1;
+		}
+		return across;
+	}
+}
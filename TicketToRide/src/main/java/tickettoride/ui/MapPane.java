@@ -1,28 +1,29 @@
 package tickettoride.ui;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.DoubleBinding;
-import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.Property;
-import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Point2D;
+import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.effect.Effect;
-import javafx.scene.effect.GaussianBlur;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import tickettoride.model.MapData;
 import tickettoride.model.MapData.Connection;
@@ -44,19 +45,89 @@ import tickettoride.utilities.MappedBinding;
  */
 public class MapPane extends AnchorPane {
 
+	/**
+	 * How the nodes for the destinations and connections are kept in the right place as the map is resized
+	 */
+	public enum RenderMode {
+		/**
+		 * Every node's position and size is bound to the size of the map. This takes around a dozen
+		 * bindings for every single segment of every connection, all of which get recalculated on every resize.
+		 */
+		BINDINGS,
+		/**
+		 * Nodes are positioned in one loop in {@link MapPane#layoutChildren()} from where things are on the map
+		 * as fractions of its size, which is a lot cheaper on big maps
+		 */
+		LAYOUT,
+		/**
+		 * There aren't any nodes at all. Everything is drawn straight onto the background canvas in one pass
+		 * (see {@link MapPane#paintCanvas()}) and the mouse is tracked with a {@link MapHitIndex}. This is the
+		 * cheapest by far when the map has to be redrawn a lot, such as when watching a game.
+		 */
+		CANVAS
+	}
+
 	private Property<MapData> mapDataProperty = new SimpleObjectProperty<>();
 	
+	private ObjectProperty<RenderMode> renderModeProperty = new SimpleObjectProperty<>(RenderMode.LAYOUT);
+	
 	private Canvas backgroundCanvas;
-
-	private final double DEST_RADIUS = 5.0;
-
-	private final double HIGHLIGHTED_DEST_RADIUS = 7.0;
 	
+	/**
+	 * Repaints the whole background canvas. In {@link RenderMode#CANVAS} mode the map is drawn on top of
+	 * whatever else is on the canvas, so all of it has to be redrawn when the map changes.
+	 */
+	private Runnable canvasRepainter;
+
 	private final double DEST_CENTER_TO_CONNECTION_START = 8.0;
 	private final double PATH_SEGMENT_BUFFER = 5.0;
+	/** Gap between a destination's circle and its name */
+	private final double DEST_NAME_OFFSET = 5.0;
+	
+	private static final double PATH_OPACITY = 0.2;
+	private static final double HIGHLIGHTED_PATH_OPACITY = 0.5;
+	private static final double SEGMENT_OPACITY = 0.8;
+	/** Number of cells across the {@link #hitIndex} */
+	private static final int HIT_INDEX_CELLS = 32;
+	
+	/** Render mode that the current nodes were set up for */
+	private RenderMode activeRenderMode;
+	/**
+	 * Destinations and connections, which get positioned in {@link #layoutChildren()} or drawn in {@link #paintCanvas()}
+	 * (depending on the render mode). In {@link RenderMode#CANVAS} mode, they don't have any nodes.
+	 */
+	private final List<DestinationLayout> destinationLayouts = new ArrayList<>();
+	private final List<ConnectionLayout> connectionLayouts = new ArrayList<>();
+	
+	/**
+	 * Everything on the map, for working out what the mouse is over. Destinations have the same ids as their
+	 * index in {@link #destinationLayouts}, and then every connection has its own id, in the same order as
+	 * {@link #indexedConnections}.
+	 */
+	private MapHitIndex hitIndex;
+	/** Connections in the {@link #hitIndex}, and the layouts they're drawn in */
+	private final List<Connection> indexedConnections = new ArrayList<>();
+	private final List<ConnectionLayout> indexedConnectionLayouts = new ArrayList<>();
+	/** Id in the {@link #hitIndex} of whatever the mouse is over */
+	private int hovered = MapHitIndex.NONE;
+	
+	/** Called when a connection is clicked on */
+	private Consumer<Connection> onConnectionClicked;
 	
 	public MapPane() {
 		mapDataProperty.addListener((m) -> setupMap());
+		renderModeProperty.addListener((m) -> setupMap());
+		
+		//None of the nodes on the map handle the mouse themselves (they're all mouse transparent).
+		//Everything is looked up in the hit index instead.
+		setOnMouseMoved((evt) -> setHovered(findTarget(evt)));
+		setOnMouseExited((evt) -> setHovered(MapHitIndex.NONE));
+		setOnMouseClicked((evt) -> {
+			int target = findTarget(evt);
+			if(target >= destinationLayouts.size() && onConnectionClicked != null) {
+				onConnectionClicked.accept(indexedConnections.get(target - destinationLayouts.size()));
+			}
+		});
 	}
 	
 	//TODO, see if this can somehow just be set automatically by FXML
@@ -64,10 +135,32 @@ public class MapPane extends AnchorPane {
 		this.backgroundCanvas = canvas;
 	}
 	
+	/**
+	 * @param canvasRepainter {@link #canvasRepainter}. It should call {@link #paintCanvas()} once it has drawn
+	 * everything else. If there isn't one, the map is just drawn over whatever is already on the canvas.
+	 */
+	public void setCanvasRepainter(Runnable canvasRepainter) {
+		this.canvasRepainter = canvasRepainter;
+	}
+	
+	/**
+	 * @param onConnectionClicked {@link #onConnectionClicked}
+	 */
+	public void setOnConnectionClicked(Consumer<Connection> onConnectionClicked) {
+		this.onConnectionClicked = onConnectionClicked;
+	}
+	
 	public Property<MapData> getMapProperty() {
 		return mapDataProperty;
 	}
 	
+	/**
+	 * @return {@link #renderModeProperty}. Changing it rebuilds all of the nodes.
+	 */
+	public ObjectProperty<RenderMode> getRenderModeProperty() {
+		return renderModeProperty;
+	}
+	
 	private void setupMap() {
 		
 
@@ -76,8 +169,19 @@ public class MapPane extends AnchorPane {
 			return;
 		}
 		
-		this.getChildren().clear();
-		this.getChildren().add(backgroundCanvas);
+		RenderMode renderMode = renderModeProperty.get();
+		boolean wasCanvas = activeRenderMode == RenderMode.CANVAS;
+		activeRenderMode = renderMode;
+		destinationLayouts.clear();
+		connectionLayouts.clear();
+		hitIndex = null;
+		hovered = MapHitIndex.NONE;
+		
+		Collection<List<Connection>> parallelConnections = groupParallelConnections(mapData);
+		if(renderMode == RenderMode.CANVAS) {
+			setupCanvasMap(mapData, parallelConnections);
+			return;
+		}
 		
 		Map<Destination, Circle> circles = new HashMap<>();
 		Set<Text> cityNames = new HashSet<>();
@@ -87,50 +191,25 @@ public class MapPane extends AnchorPane {
 			
 			Circle destCircle = new Circle();
 			destCircle.setStrokeWidth(2);
-			destCircle.setStroke(Color.color(0.15, 0.05, 0));
-			
-			destCircle.centerXProperty().bind(backgroundCanvas.widthProperty().multiply(dest.getXFraction()));
-			destCircle.centerYProperty().bind(backgroundCanvas.heightProperty().multiply(dest.getYFraction()));
-			
-			//Set up highlighting effects for when mouse is over circle
-			BooleanProperty highlighted = new SimpleBooleanProperty(false);
-			destCircle.setOnMouseEntered((evt) -> highlighted.set(true));
-			destCircle.setOnMouseExited((evt) -> highlighted.set(false));
-			
-			Color fillColor = Color.color(1, 1, 1, 0.1);
-			Color highlightedFillColor = Color.color(1,  1,  1, 0.5);
-			
-			destCircle.fillProperty().set(Color.WHITE);
-			destCircle.radiusProperty().set(DEST_RADIUS);
-			destCircle.fillProperty().bind(
-					MappedBinding.createBinding(highlighted,  (h) -> h ? highlightedFillColor : fillColor)
-					);
-			
-			
-			destCircle.radiusProperty().bind(
-					MappedBinding.createBinding(highlighted, (h) -> h ? HIGHLIGHTED_DEST_RADIUS : DEST_RADIUS)
-					);
-			
-
-			Effect normalEffects = new GaussianBlur(2);
-			DropShadow glow = new DropShadow(HIGHLIGHTED_DEST_RADIUS * 1.2, Color.LIGHTYELLOW);
-			glow.setInput(normalEffects);
-			destCircle.effectProperty().bind(
-					MappedBinding.createBinding(highlighted, (h) -> h ? glow : normalEffects)
-					);
-			
+			destCircle.setStroke(MapStyles.DEST_STROKE);
 			
 			Text cityName = new Text(dest.getName());
-			cityName.yProperty().bind(destCircle.centerYProperty());
-			cityName.xProperty().bind(destCircle.centerXProperty().add(destCircle.radiusProperty().add(5)));
 			
-			cityName.effectProperty().bind(
-					MappedBinding.createBinding(highlighted, (h) -> h ? glow : normalEffects)
-					);
-			cityName.fontProperty().bind(
-					MappedBinding.createBinding(highlighted, (h) -> h ? new Font(24) : new Font(10))
-					);
+			//The styles are all shared, so highlighting when the mouse is over the circle is just swapping
+			//which ones the circle and name use (see setHovered)
+			setDestinationHighlighted(destCircle, cityName, false);
 			
+			if(renderMode == RenderMode.BINDINGS) {
+				destCircle.centerXProperty().bind(backgroundCanvas.widthProperty().multiply(dest.getXFraction()));
+				destCircle.centerYProperty().bind(backgroundCanvas.heightProperty().multiply(dest.getYFraction()));
+				cityName.yProperty().bind(destCircle.centerYProperty());
+				cityName.xProperty().bind(destCircle.centerXProperty().add(destCircle.radiusProperty().add(DEST_NAME_OFFSET)));
+			}
+			else {
+				//The name has to move over when the circle grows
+				destCircle.radiusProperty().addListener((r) -> requestLayout());
+			}
+			destinationLayouts.add(new DestinationLayout(dest, destCircle, cityName));
 			
 			circles.put(dest, destCircle);
 			cityNames.add(cityName);
@@ -138,15 +217,26 @@ public class MapPane extends AnchorPane {
 		
 		//Setup connections
 		
-		//Keep track of connections that have already been drawn. This is needed because
-		//when there are two connections between 2 cities, they are drawn at the same time
-		//even if they aren't listed one after the other in the collection of connections
-		//from the map, so we need to skip the second connection once we iterate to it
-		//in the collection of connections.
-		Set<Connection> connectionsAlreadyDrawn = new HashSet<>();
+		//All of the nodes are collected first and then added at once. Adding them one at a time
+		//makes the pane go through its change listeners for every single one.
+		List<Node> nodes = new ArrayList<>();
+		nodes.add(backgroundCanvas);
 		
-		for(Connection conn : mapData.getConnections()) {
-			if(connectionsAlreadyDrawn.contains(conn)) {
+		for(List<Connection> currentConnections : parallelConnections) {
+			Connection conn = currentConnections.get(0);
+			int numSegments = conn.getNumSegments();
+			
+			//Same nodes, but nothing is bound. They get positioned in layoutChildren.
+			if(renderMode == RenderMode.LAYOUT) {
+				Rectangle pathRect = createPathRect(currentConnections.size());
+				nodes.add(pathRect);
+				Rectangle[] segmentRects = new Rectangle[numSegments * currentConnections.size()];
+				for(int i = 0; i < segmentRects.length; i++) {
+					segmentRects[i] = createSegmentRect(currentConnections.get(i % currentConnections.size()));
+					segmentRects[i].setHeight(pathRect.getHeight() / currentConnections.size() * 0.8);
+					nodes.add(segmentRects[i]);
+				}
+				connectionLayouts.add(new ConnectionLayout(currentConnections, pathRect, segmentRects));
 				continue;
 			}
 			
@@ -166,41 +256,15 @@ public class MapPane extends AnchorPane {
 			DoubleBinding pathCenterX = startCircle.centerXProperty().add(endCircle.centerXProperty()).divide(2.0);
 			DoubleBinding pathCenterY = startCircle.centerYProperty().add(endCircle.centerYProperty()).divide(2.0);
 			
-			//Find if there are multiple paths
-			List<Connection> currentConnections = 
-					mapData.getConnections()
-							.stream()
-							.filter(c -> 
-									(c.getStart().equals(conn.getStart()) && c.getEnd().equals(conn.getEnd())) ||
-									(c.getStart().equals(conn.getEnd()) && c.getEnd().equals(conn.getStart()))
-									)
-							.collect(Collectors.toList());
-			
-			if(currentConnections.size() == 0) {
-				throw new RuntimeException("Couldn't find connections from " + conn.getStart() + " to " +
-											conn.getEnd() + ", but one exists. This is likely Nate's fault.");
-			}
-			
-			int numSegments = currentConnections.get(0).getNumSegments();
-			if(currentConnections.stream().anyMatch(c -> c.getNumSegments() != numSegments)) {
-				throw new IllegalArgumentException("All connections between the same two cities must have the same"
-						+ " number of segments");
-			}
-			
-			connectionsAlreadyDrawn.addAll(currentConnections);
-			
-			
-			Rectangle pathRect = new Rectangle();
-			pathRect.setOpacity(0.2);
-			pathRect.setArcHeight(5);
-			pathRect.setArcWidth(5);
+			Rectangle pathRect = createPathRect(currentConnections.size());
 			pathRect.widthProperty().bind(pathLength);
-			pathRect.setHeight(DEST_RADIUS * 2 * currentConnections.size());
 			
 			pathRect.xProperty().bind(pathCenterX.subtract(pathLength.divide(2.0)));
 			pathRect.yProperty().bind(pathCenterY.subtract(pathRect.heightProperty().divide(2.0)));
 			
-			this.getChildren().add(pathRect);
+			nodes.add(pathRect);
+			Rectangle[] segmentRects = new Rectangle[numSegments * currentConnections.size()];
+			connectionLayouts.add(new ConnectionLayout(currentConnections, pathRect, segmentRects));
 			
 			DoubleBinding rotationRadians = 
 					Bindings.createDoubleBinding(
@@ -223,44 +287,7 @@ public class MapPane extends AnchorPane {
 			for(int segmentNumber = 1; segmentNumber <= conn.getNumSegments(); segmentNumber++) {
 				for(int connectionNumber = 1; connectionNumber <= currentConnections.size(); connectionNumber++) {
 					
-					Rectangle segmentRect = new Rectangle();
-					segmentRect.setArcHeight(5);
-					segmentRect.setArcWidth(5);
-					segmentRect.setOpacity(0.8);
-					
-					Paint fillColor = null;
-					
-					switch(currentConnections.get(connectionNumber - 1).getColor()) {
-					case ANY:
-						fillColor = Color.LIGHTGREY;
-						break;
-					case BLACK:
-						fillColor = Color.BLACK;
-						break;
-					case BLUE:
-						fillColor = Color.BLUE;
-						break;
-					case GREEN:
-						fillColor = Color.GREEN;
-						break;
-					case ORANGE:
-						fillColor = Color.ORANGE;
-						break;
-					case PURPLE:
-						fillColor = Color.PURPLE;
-						break;
-					case RED:
-						fillColor = Color.RED;
-						break;
-					case WHITE:
-						fillColor = Color.WHITE;
-						break;
-					case YELLOW:
-						fillColor = Color.YELLOW;
-						break;
-					}
-					
-					segmentRect.setFill(fillColor);
+					Rectangle segmentRect = createSegmentRect(currentConnections.get(connectionNumber - 1));
 					
 					segmentRect.heightProperty().bind(pathRect.heightProperty()
 																.divide(currentConnections.size())
@@ -301,24 +328,439 @@ public class MapPane extends AnchorPane {
 					
 					segmentRect.rotateProperty().bind(pathRect.rotateProperty());
 					
-					this.getChildren().add(segmentRect);
+					segmentRects[(segmentNumber - 1) * currentConnections.size() + connectionNumber - 1] = segmentRect;
+					nodes.add(segmentRect);
 				}
 				
 			}
 			
 		}
-		//Note that it's important that the name is added before the circle. Otherwise, when the
-		//mouse is on the right hand side of the circle, the text enlarging basically steals the mouse
-		//and makes a mouse exit event for the circle, which causes the highlighted state to fluctuate
-		//back and forth rapidly. By putting the dest circle on top, the circle has precedence.
+		//Note that the name is added before the circle, so that the circle is on top when the highlighted
+		//name grows over it.
 		//It's important that both are added after the rectangles just to make sure that they show
 		//up in the event that a rectangle and a label occupy the same space. Eventually, I'd like
 		//to make code to guarantee that there never is an overlap, but this way, if there is, it
 		//will still show up.
-		this.getChildren().addAll(cityNames);
-		this.getChildren().addAll(circles.values());
+		nodes.addAll(cityNames);
+		nodes.addAll(circles.values());
+		
+		for(Node node : nodes) {
+			if(node != backgroundCanvas) {
+				node.setMouseTransparent(true);
+				//In layout mode these are positioned by hand, so the anchor pane should leave them alone (and
+				//moving them around shouldn't make it lay everything out again)
+				node.setManaged(renderMode != RenderMode.LAYOUT);
+			}
+		}
+		
+		buildHitIndex();
+		this.getChildren().setAll(nodes);
+		
+		if(wasCanvas) {
+			//Get the old map off of the canvas
+			repaintCanvas();
+		}
+	}
+	
+	/**
+	 * Switches a destination's nodes between their normal and highlighted (mouse over) styles
+	 */
+	private void setDestinationHighlighted(Circle destCircle, Text cityName, boolean highlighted) {
+		destCircle.setFill(highlighted ? MapStyles.HIGHLIGHTED_DEST_FILL : MapStyles.DEST_FILL);
+		destCircle.setRadius(highlighted ? MapStyles.HIGHLIGHTED_DEST_RADIUS : MapStyles.DEST_RADIUS);
+		destCircle.setEffect(highlighted ? MapStyles.HIGHLIGHTED_DEST_EFFECT : MapStyles.DEST_EFFECT);
+		cityName.setEffect(highlighted ? MapStyles.HIGHLIGHTED_DEST_EFFECT : MapStyles.DEST_EFFECT);
+		cityName.setFont(highlighted ? MapStyles.HIGHLIGHTED_NAME_FONT : MapStyles.NAME_FONT);
+	}
+	
+	/**
+	 * Sets up {@link RenderMode#CANVAS} mode, where the only node is the background canvas
+	 */
+	private void setupCanvasMap(MapData mapData, Collection<List<Connection>> parallelConnections) {
+		for(Destination dest : mapData.getDestinations()) {
+			destinationLayouts.add(new DestinationLayout(dest, null, null));
+		}
+		for(List<Connection> currentConnections : parallelConnections) {
+			connectionLayouts.add(new ConnectionLayout(currentConnections, null, null));
+		}
+		
+		buildHitIndex();
+		backgroundCanvas.setManaged(true);
+		this.getChildren().setAll(backgroundCanvas);
+		repaintCanvas();
+	}
+	
+	/**
+	 * Fills the {@link #hitIndex} with everything in the {@link #destinationLayouts} and {@link #connectionLayouts}.
+	 * Each of a group of parallel connections gets its own strip of the group's rectangle.
+	 */
+	private void buildHitIndex() {
+		hitIndex = new MapHitIndex(HIT_INDEX_CELLS);
+		indexedConnections.clear();
+		indexedConnectionLayouts.clear();
+		for(DestinationLayout destination : destinationLayouts) {
+			hitIndex.addPoint(destination.xFraction, destination.yFraction, MapStyles.HIGHLIGHTED_DEST_RADIUS);
+		}
+		for(ConnectionLayout connection : connectionLayouts) {
+			double laneHeight = connection.pathHeight / connection.numConnections;
+			for(int i = 0; i < connection.numConnections; i++) {
+				hitIndex.addSegment(connection.startXFraction, connection.startYFraction,
+									connection.endXFraction, connection.endYFraction,
+									laneHeight / 2, DEST_CENTER_TO_CONNECTION_START,
+									laneHeight * connection.pathsAwayFromCenter[i]);
+				indexedConnections.add(connection.connections.get(i));
+				indexedConnectionLayouts.add(connection);
+			}
+		}
+	}
+	
+	/**
+	 * @return id in the {@link #hitIndex} of whatever the mouse event is over, or {@link MapHitIndex#NONE}
+	 */
+	private int findTarget(MouseEvent evt) {
+		if(hitIndex == null) {
+			return MapHitIndex.NONE;
+		}
+		Point2D point = backgroundCanvas.sceneToLocal(evt.getSceneX(), evt.getSceneY());
+		return hitIndex.find(point.getX(), point.getY(), backgroundCanvas.getWidth(), backgroundCanvas.getHeight());
+	}
+	
+	/**
+	 * Groups the connections between the same two cities (in one pass), since they're all drawn together.
+	 * The groups are in the same order as the connections are listed in the map.
+	 */
+	private static Collection<List<Connection>> groupParallelConnections(MapData mapData) {
+		Map<DestinationPair, List<Connection>> parallelConnections = new LinkedHashMap<>();
+		for(Connection conn : mapData.getConnections()) {
+			parallelConnections.computeIfAbsent(new DestinationPair(conn.getStart(), conn.getEnd()), (k) -> new ArrayList<>())
+								.add(conn);
+		}
 		
+		for(List<Connection> currentConnections : parallelConnections.values()) {
+			int numSegments = currentConnections.get(0).getNumSegments();
+			if(currentConnections.stream().anyMatch(c -> c.getNumSegments() != numSegments)) {
+				throw new IllegalArgumentException("All connections between the same two cities must have the same"
+						+ " number of segments");
+			}
+		}
+		return parallelConnections.values();
+	}
+	
+	private void setHovered(int id) {
+		if(id == hovered) {
+			return;
+		}
+		int previous = hovered;
+		hovered = id;
+		if(activeRenderMode == RenderMode.CANVAS) {
+			repaintCanvas();
+		}
+		else {
+			setHighlighted(previous, false);
+			setHighlighted(hovered, true);
+		}
+	}
+	
+	/**
+	 * Highlights (or unhighlights) the nodes for something in the {@link #hitIndex}. The whole group is
+	 * highlighted for a connection.
+	 */
+	private void setHighlighted(int id, boolean highlighted) {
+		if(id == MapHitIndex.NONE) {
+			return;
+		}
+		if(id < destinationLayouts.size()) {
+			DestinationLayout destination = destinationLayouts.get(id);
+			setDestinationHighlighted(destination.circle, destination.name, highlighted);
+		}
+		else {
+			ConnectionLayout connection = indexedConnectionLayouts.get(id - destinationLayouts.size());
+			connection.pathRect.setOpacity(highlighted ? HIGHLIGHTED_PATH_OPACITY : PATH_OPACITY);
+		}
+	}
+	
+	private void repaintCanvas() {
+		if(canvasRepainter != null) {
+			canvasRepainter.run();
+		}
+		else {
+			paintCanvas();
+		}
+	}
+	
+	/**
+	 * Draws the connections and destinations onto the background canvas, on top of whatever is already
+	 * there. This only does anything in {@link RenderMode#CANVAS} mode.
+	 */
+	public void paintCanvas() {
+		if(activeRenderMode != RenderMode.CANVAS || backgroundCanvas == null) {
+			return;
+		}
+		GraphicsContext gc = backgroundCanvas.getGraphicsContext2D();
+		double width = backgroundCanvas.getWidth();
+		double height = backgroundCanvas.getHeight();
 		
+		ConnectionLayout hoveredConnection = hovered >= destinationLayouts.size() ?
+				indexedConnectionLayouts.get(hovered - destinationLayouts.size()) : null;
+		for(ConnectionLayout connection : connectionLayouts) {
+			connection.paint(gc, width, height, connection == hoveredConnection);
+		}
+		//Names go under the circles, same as with the nodes
+		for(int i = 0; i < destinationLayouts.size(); i++) {
+			destinationLayouts.get(i).paintName(gc, width, height, hovered == i);
+		}
+		for(int i = 0; i < destinationLayouts.size(); i++) {
+			destinationLayouts.get(i).paintCircle(gc, width, height, hovered == i);
+		}
+	}
+	
+	@Override
+	protected void layoutChildren() {
+		super.layoutChildren();
+		if(activeRenderMode != RenderMode.LAYOUT || backgroundCanvas == null) {
+			return;
+		}
+		double width = backgroundCanvas.getWidth();
+		double height = backgroundCanvas.getHeight();
+		for(DestinationLayout destination : destinationLayouts) {
+			destination.layout(width, height);
+		}
+		for(ConnectionLayout connection : connectionLayouts) {
+			connection.layout(width, height);
+		}
+	}
+	
+	/**
+	 * @return the background rectangle for a group of parallel connections (the width and position still need to be set)
+	 */
+	private Rectangle createPathRect(int numConnections) {
+		Rectangle pathRect = new Rectangle();
+		pathRect.setOpacity(PATH_OPACITY);
+		pathRect.setArcHeight(5);
+		pathRect.setArcWidth(5);
+		pathRect.setHeight(MapStyles.DEST_RADIUS * 2 * numConnections);
+		return pathRect;
+	}
+	
+	/**
+	 * @return a rectangle for one segment of the connection (the size and position still need to be set)
+	 */
+	private Rectangle createSegmentRect(Connection connection) {
+		Rectangle segmentRect = new Rectangle();
+		segmentRect.setArcHeight(5);
+		segmentRect.setArcWidth(5);
+		segmentRect.setOpacity(SEGMENT_OPACITY);
+		segmentRect.setFill(MapStyles.getSegmentFill(connection.getColor()));
+		return segmentRect;
+	}
+	
+	/**
+	 * A destination's circle and name, positioned for the size of the map in {@link MapPane#layoutChildren()}
+	 * (or drawn in {@link MapPane#paintCanvas()}, in which case there isn't a circle or name node)
+	 */
+	private final class DestinationLayout {
+		private final Destination destination;
+		private final Circle circle;
+		private final Text name;
+		/** Position of the destination as fractions of the map's size */
+		private final double xFraction;
+		private final double yFraction;
+		
+		private DestinationLayout(Destination destination, Circle circle, Text name) {
+			this.destination = destination;
+			this.circle = circle;
+			this.name = name;
+			this.xFraction = destination.getXFraction();
+			this.yFraction = destination.getYFraction();
+		}
+		
+		private void layout(double width, double height) {
+			double centerX = width * xFraction;
+			double centerY = height * yFraction;
+			circle.setCenterX(centerX);
+			circle.setCenterY(centerY);
+			name.setX(centerX + circle.getRadius() + DEST_NAME_OFFSET);
+			name.setY(centerY);
+		}
+		
+		private void paintName(GraphicsContext gc, double width, double height, boolean highlighted) {
+			double radius = highlighted ? MapStyles.HIGHLIGHTED_DEST_RADIUS : MapStyles.DEST_RADIUS;
+			gc.setEffect(highlighted ? MapStyles.CANVAS_HIGHLIGHTED_DEST_EFFECT : null);
+			gc.setFont(highlighted ? MapStyles.HIGHLIGHTED_NAME_FONT : MapStyles.NAME_FONT);
+			gc.setFill(MapStyles.NAME_FILL);
+			gc.fillText(destination.getName(), width * xFraction + radius + DEST_NAME_OFFSET, height * yFraction);
+			gc.setEffect(null);
+		}
+		
+		private void paintCircle(GraphicsContext gc, double width, double height, boolean highlighted) {
+			double radius = highlighted ? MapStyles.HIGHLIGHTED_DEST_RADIUS : MapStyles.DEST_RADIUS;
+			double left = width * xFraction - radius;
+			double top = height * yFraction - radius;
+			//The nodes have a blur as well, but that's far too slow to do for every destination on every repaint
+			gc.setEffect(highlighted ? MapStyles.CANVAS_HIGHLIGHTED_DEST_EFFECT : null);
+			gc.setFill(highlighted ? MapStyles.HIGHLIGHTED_DEST_FILL : MapStyles.DEST_FILL);
+			gc.fillOval(left, top, radius * 2, radius * 2);
+			gc.setStroke(MapStyles.DEST_STROKE);
+			gc.setLineWidth(2);
+			gc.strokeOval(left, top, radius * 2, radius * 2);
+			gc.setEffect(null);
+		}
+	}
+	
+	/**
+	 * The rectangles for a group of parallel connections, positioned for the size of the map in
+	 * {@link MapPane#layoutChildren()} (or drawn in {@link MapPane#paintCanvas()}, in which case there aren't
+	 * any rectangle nodes). This works out the same geometry as the bindings that are used in
+	 * {@link RenderMode#BINDINGS} mode, just all at once.
+	 */
+	private final class ConnectionLayout {
+		/** The parallel connections */
+		private final List<Connection> connections;
+		/** Ends of the connections as fractions of the map's size */
+		private final double startXFraction;
+		private final double startYFraction;
+		private final double endXFraction;
+		private final double endYFraction;
+		private final Rectangle pathRect;
+		/** Segment rectangles, ordered by segment and then by connection */
+		private final Rectangle[] segmentRects;
+		/** How far each segment rectangle is from the middle of the path, along it and across it, in segments and connections */
+		private final double[] segmentsAwayFromCenter;
+		private final double[] pathsAwayFromCenter;
+		/** Colors of the connections' segments */
+		private final Paint[] fills;
+		private final int numSegments;
+		private final int numConnections;
+		private final double pathHeight;
+		
+		//Geometry for the current size of the map, worked out by computeGeometry
+		private double pathLength;
+		private double pathCenterX;
+		private double pathCenterY;
+		private double rotationRadians;
+		
+		private ConnectionLayout(List<Connection> connections, Rectangle pathRect, Rectangle[] segmentRects) {
+			this.connections = connections;
+			Connection conn = connections.get(0);
+			startXFraction = conn.getStart().getXFraction();
+			startYFraction = conn.getStart().getYFraction();
+			endXFraction = conn.getEnd().getXFraction();
+			endYFraction = conn.getEnd().getYFraction();
+			this.pathRect = pathRect;
+			this.segmentRects = segmentRects;
+			numSegments = conn.getNumSegments();
+			numConnections = connections.size();
+			pathHeight = MapStyles.DEST_RADIUS * 2 * numConnections;
+			fills = new Paint[numConnections];
+			for(int i = 0; i < numConnections; i++) {
+				fills[i] = MapStyles.getSegmentFill(connections.get(i).getColor());
+			}
+			segmentsAwayFromCenter = new double[numSegments * numConnections];
+			pathsAwayFromCenter = new double[numSegments * numConnections];
+			for(int i = 0; i < segmentsAwayFromCenter.length; i++) {
+				segmentsAwayFromCenter[i] = i / numConnections + 1 - (numSegments + 1)/2.0;
+				pathsAwayFromCenter[i] = i % numConnections + 1 - (numConnections + 1)/2.0;
+			}
+		}
+		
+		private void computeGeometry(double width, double height) {
+			double startX = width * startXFraction;
+			double startY = height * startYFraction;
+			double endX = width * endXFraction;
+			double endY = height * endYFraction;
+			
+			pathLength = Math.sqrt((endX - startX) * (endX - startX) + (endY - startY) * (endY - startY))
+								- DEST_CENTER_TO_CONNECTION_START * 2;
+			pathCenterX = (startX + endX) / 2.0;
+			pathCenterY = (startY + endY) / 2.0;
+			rotationRadians = Math.atan2(endY - startY, endX - startX);
+		}
+		
+		private void layout(double width, double height) {
+			computeGeometry(width, height);
+			double rotationDegrees = Math.toDegrees(rotationRadians);
+			double cos = Math.cos(rotationRadians);
+			double sin = Math.sin(rotationRadians);
+			
+			pathRect.setWidth(pathLength);
+			pathRect.setX(pathCenterX - pathLength / 2.0);
+			pathRect.setY(pathCenterY - pathHeight / 2.0);
+			pathRect.setRotate(rotationDegrees);
+			
+			double pathDividedByN = pathLength / numSegments;
+			double pathHeightDividedByNumConnections = pathHeight / numConnections;
+			for(int i = 0; i < segmentRects.length; i++) {
+				Rectangle segmentRect = segmentRects[i];
+				double segmentCenterX = pathCenterX + 
+						cos * pathDividedByN * segmentsAwayFromCenter[i] +
+						sin * pathHeightDividedByNumConnections * pathsAwayFromCenter[i];
+				double segmentCenterY = pathCenterY + 
+						sin * pathDividedByN * segmentsAwayFromCenter[i] -
+						cos * pathHeightDividedByNumConnections * pathsAwayFromCenter[i];
+				segmentRect.setWidth(pathDividedByN - PATH_SEGMENT_BUFFER);
+				segmentRect.setX(segmentCenterX - segmentRect.getWidth() / 2);
+				segmentRect.setY(segmentCenterY - segmentRect.getHeight() / 2);
+				segmentRect.setRotate(rotationDegrees);
+			}
+		}
+		
+		/**
+		 * Draws the connections. The canvas is rotated to line up with them, so the segments are just
+		 * laid out along the x axis.
+		 */
+		private void paint(GraphicsContext gc, double width, double height, boolean highlighted) {
+			computeGeometry(width, height);
+			double pathDividedByN = pathLength / numSegments;
+			double pathHeightDividedByNumConnections = pathHeight / numConnections;
+			double segmentWidth = pathDividedByN - PATH_SEGMENT_BUFFER;
+			double segmentHeight = pathHeightDividedByNumConnections * 0.8;
+			
+			gc.save();
+			gc.translate(pathCenterX, pathCenterY);
+			gc.rotate(Math.toDegrees(rotationRadians));
+			gc.setGlobalAlpha(highlighted ? HIGHLIGHTED_PATH_OPACITY : PATH_OPACITY);
+			gc.setFill(MapStyles.PATH_FILL);
+			gc.fillRoundRect(-pathLength / 2.0, -pathHeight / 2.0, pathLength, pathHeight, 5, 5);
+			
+			gc.setGlobalAlpha(SEGMENT_OPACITY);
+			for(int i = 0; i < segmentsAwayFromCenter.length; i++) {
+				gc.setFill(fills[i % numConnections]);
+				//Across the path is negative y once the canvas is rotated
+				gc.fillRoundRect(pathDividedByN * segmentsAwayFromCenter[i] - segmentWidth / 2,
+									-pathHeightDividedByNumConnections * pathsAwayFromCenter[i] - segmentHeight / 2,
+									segmentWidth, segmentHeight, 5, 5);
+			}
+			gc.restore();
+		}
+	}
+	
+	/**
+	 * Key for grouping connections between the same two destinations (in either direction)
+	 */
+	private static final class DestinationPair {
+		private final Destination first;
+		private final Destination second;
+		
+		private DestinationPair(Destination first, Destination second) {
+			this.first = first;
+			this.second = second;
+		}
+		
+		@Override
+		public int hashCode() {
+			//Symmetric, so that it's the same whichever way around the connection was listed
+			return first.hashCode() + second.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof DestinationPair)) {
+				return false;
+			}
+			DestinationPair other = (DestinationPair)o;
+			return (first.equals(other.first) && second.equals(other.second)) ||
+					(first.equals(other.second) && second.equals(other.first));
+		}
 	}
 	
 }
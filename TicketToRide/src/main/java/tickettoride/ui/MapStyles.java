@@ -0,0 +1,76 @@
+package tickettoride.ui;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import javafx.scene.effect.DropShadow;
+import javafx.scene.effect.Effect;
+import javafx.scene.effect.GaussianBlur;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import tickettoride.model.MapData.CardColor;
+
+/**
+ * Colors, fonts and effects for drawing the map. There's only ever one of each of these, shared by every
+ * node (and every canvas drawing) that uses it, instead of each destination and connection making its own.
+ * None of them are ever changed, so sharing them is safe.
+ * @author nate
+ */
+public final class MapStyles {
+
+	/** Radius of a destination's circle */
+	public static final double DEST_RADIUS = 5.0;
+	/** Radius of a destination's circle when the mouse is over it */
+	public static final double HIGHLIGHTED_DEST_RADIUS = 7.0;
+
+	public static final Color DEST_FILL = Color.color(1, 1, 1, 0.1);
+	public static final Color HIGHLIGHTED_DEST_FILL = Color.color(1, 1, 1, 0.5);
+	public static final Color DEST_STROKE = Color.color(0.15, 0.05, 0);
+	/** Color of the rectangle behind a group of connections */
+	public static final Color PATH_FILL = Color.BLACK;
+	public static final Color NAME_FILL = Color.BLACK;
+
+	public static final Font NAME_FONT = new Font(10);
+	public static final Font HIGHLIGHTED_NAME_FONT = new Font(24);
+
+	/** Effect on destinations and their names normally */
+	public static final Effect DEST_EFFECT = new GaussianBlur(2);
+	/** Effect on destinations and their names when the mouse is over them */
+	public static final Effect HIGHLIGHTED_DEST_EFFECT = createGlow(DEST_EFFECT);
+	/** Same glow without the blur, which is too slow to draw on the canvas */
+	public static final Effect CANVAS_HIGHLIGHTED_DEST_EFFECT = createGlow(null);
+
+	/** Color of the segments of connections of each color */
+	private static final Map<CardColor, Color> SEGMENT_FILLS = new EnumMap<>(CardColor.class);
+
+	static {
+		SEGMENT_FILLS.put(CardColor.ANY, Color.LIGHTGREY);
+		SEGMENT_FILLS.put(CardColor.BLACK, Color.BLACK);
+		SEGMENT_FILLS.put(CardColor.BLUE, Color.BLUE);
+		SEGMENT_FILLS.put(CardColor.GREEN, Color.GREEN);
+		SEGMENT_FILLS.put(CardColor.ORANGE, Color.ORANGE);
+		SEGMENT_FILLS.put(CardColor.PURPLE, Color.PURPLE);
+		SEGMENT_FILLS.put(CardColor.RED, Color.RED);
+		SEGMENT_FILLS.put(CardColor.WHITE, Color.WHITE);
+		SEGMENT_FILLS.put(CardColor.YELLOW, Color.YELLOW);
+	}
+
+	private MapStyles() {
+		//Just constants
+	}
+
+	/**
+	 * @param color color of a connection
+	 * @return fill for the connection's segments
+	 */
+	public static Paint getSegmentFill(CardColor color) {
+		return SEGMENT_FILLS.get(color);
+	}
+
+	private static Effect createGlow(Effect input) {
+		DropShadow glow = new DropShadow(HIGHLIGHTED_DEST_RADIUS * 1.2, Color.LIGHTYELLOW);
+		glow.setInput(input);
+		return glow;
+	}
+}
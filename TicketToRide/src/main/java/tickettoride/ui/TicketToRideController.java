@@ -2,15 +2,14 @@ package tickettoride.ui;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.IntConsumer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.Property;
@@ -18,19 +17,24 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.ScrollPane.ScrollBarPolicy;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.ImagePattern;
+import javafx.scene.paint.Paint;
 import javafx.scene.shape.Rectangle;
 import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinitionLoader;
 import tickettoride.model.GameState;
 import tickettoride.model.MapData;
 import tickettoride.model.MapData.CardColor;
-import tickettoride.model.MapData.Destination;
 import tickettoride.players.RandomAI;
 import tickettoride.utilities.ImageLoader;
 
@@ -45,6 +49,13 @@ import tickettoride.utilities.ImageLoader;
  */
 public class TicketToRideController {
 
+	/** Game definition file that is loaded by {@link #createNewGame()} */
+	private static final String DEFAULT_GAME_DEFINITION = "resources/gameDefinitions/default.json";
+
+	/** Size that card images are loaded at (twice the size of the card rectangles, so they're still sharp when zoomed) */
+	private static final double CARD_IMAGE_WIDTH = 240;
+	private static final double CARD_IMAGE_HEIGHT = 150;
+
 	/** Property containing the current {@link GameState} */
 	private Property<GameState> game = new SimpleObjectProperty<>();
 	
@@ -106,6 +117,22 @@ public class TicketToRideController {
 	/** Minimum width that the map should be sized to before using the scroll bars (this will probably change) */	
 	private final double MIN_MAP_HEIGHT = 400;
 	
+	/** Draws the background image onto the {@link #mapCanvas} */
+	private final MapBackgroundRenderer mapBackground = new MapBackgroundRenderer(this::requestPaintMap);
+	/** True if {@link #paintMap()} is already going to be called, so there's no need to ask again */
+	private boolean mapPaintRequested = false;
+	
+	/** Fill for a face up transportation card of each color */
+	private final Map<CardColor, Paint> transportationCardPatterns = new EnumMap<>(CardColor.class);
+	/** The face up card rectangles, in the same order as the {@link GameState#getFaceUpTransportationCards() cards} */
+	private List<Rectangle> drawCardRects;
+	/** Face up cards of the current game, which {@link #faceUpCardsListener} is listening to */
+	private ObservableList<CardColor> faceUpCards;
+	/** Listens for changes to the {@link #faceUpCards} */
+	private final ListChangeListener<CardColor> faceUpCardsListener = (change) -> requestFaceUpCardUpdate();
+	/** True if {@link #updateFaceUpCards()} is already going to be called, so there's no need to ask again */
+	private boolean faceUpCardUpdateRequested = false;
+	
 	
 	/** This is a special method called by the FXML loader. It is used to set up various properties 
 	 * of the graphical components after all of the members with the "FXML" notation have been
@@ -128,10 +155,17 @@ public class TicketToRideController {
 		
 		mapAnchorPane.getMapProperty().bind(mapData);
 		mapAnchorPane.setBackgroundCanvas(mapCanvas);
+		mapAnchorPane.setCanvasRepainter(this::requestPaintMap);
 		
-		game.addListener((mapData) -> paintMap());
-		mapCanvas.widthProperty().addListener((mapData) -> paintMap());
-		mapCanvas.heightProperty().addListener((mapData) -> paintMap());
+		//Resizing changes both the width and the height, and scrolling changes what's visible, but they
+		//only need one repaint between them
+		InvalidationListener repaint = (x) -> requestPaintMap();
+		game.addListener(repaint);
+		mapCanvas.widthProperty().addListener(repaint);
+		mapCanvas.heightProperty().addListener(repaint);
+		mapScrollPane.viewportBoundsProperty().addListener(repaint);
+		mapScrollPane.hvalueProperty().addListener(repaint);
+		mapScrollPane.vvalueProperty().addListener(repaint);
 		
 		setUpSidePanelCardBindings();
 	}
@@ -144,69 +178,87 @@ public class TicketToRideController {
 	private void setUpSidePanelCardBindings() {
 		
 		try {
-			Image transportCardBack = ImageLoader.load("images/transportationBack.jpg");
+			Image transportCardBack = loadCardImage("images/transportationBack.jpg");
 			transportationDeck.setFill(new ImagePattern(transportCardBack));
 			
-			Image destinationCardBack = ImageLoader.load("images/destinationBack.jpg");
+			Image destinationCardBack = loadCardImage("images/destinationBack.jpg");
 			destinationDeck.setFill(new ImagePattern(destinationCardBack));
 			
-			Map<CardColor, Image> transportationCardImages = new HashMap<>();
-			transportationCardImages.put(CardColor.ANY, ImageLoader.load("images/wild.jpg"));
-			transportationCardImages.put(CardColor.BLACK, ImageLoader.load("images/black.jpg"));
-			transportationCardImages.put(CardColor.BLUE, ImageLoader.load("images/blue.jpg"));
-			transportationCardImages.put(CardColor.GREEN, ImageLoader.load("images/green.jpg"));
-			transportationCardImages.put(CardColor.ORANGE, ImageLoader.load("images/orange.jpg"));
-			transportationCardImages.put(CardColor.PURPLE, ImageLoader.load("images/purple.jpg"));
-			transportationCardImages.put(CardColor.RED, ImageLoader.load("images/red.jpg"));
-			transportationCardImages.put(CardColor.WHITE, ImageLoader.load("images/white.jpg"));
-			transportationCardImages.put(CardColor.YELLOW, ImageLoader.load("images/yellow.jpg"));
-			
-			List<Rectangle> drawCardRects = Arrays.asList(
-					cardToDraw1,
-					cardToDraw2,
-					cardToDraw3,
-					cardToDraw4,
-					cardToDraw5);
-			
-			game.addListener((x) -> {
-				
-				if(game.getValue() != null) {
-					ObservableList<CardColor> cardProperties = game.getValue().getFaceUpTransportationCards();
-					
-					//Little function to update a GUI rect based on a card value. Consumes the index of the card
-					IntConsumer updateDrawRect = i -> {
-						CardColor color = cardProperties.get(i);
-						ImagePattern pattern = color == null ? null : new ImagePattern(transportationCardImages.get(color));
-						drawCardRects.get(i).setFill(pattern);
-					};
-					
-					//Set to initial card values, then add listener for changes
-					IntStream.range(0, cardProperties.size()).forEach(updateDrawRect);
-					
-					cardProperties.addListener(new ListChangeListener<CardColor>() {
-
-						@Override
-						public void onChanged(Change<? extends CardColor> change) {
-							//Most likely, this while loop will only ever iterate once per call
-							while(change.next()) {
-								//Most likely, this int stream will just have one element, but better to be safe.
-								IntStream.range(change.getFrom(), change.getTo()).forEach(updateDrawRect);
-							}
-						}
-						
-					});
-				}
-				else {
-					//If the game is null, clear them all (I don't think this will ever actually happen)
-					drawCardRects.forEach(r -> r.setFill(null));
-				}
-			});
-			
-			
+			//One pattern per color, shared by every face up card of that color
+			transportationCardPatterns.put(CardColor.ANY, new ImagePattern(loadCardImage("images/wild.jpg")));
+			transportationCardPatterns.put(CardColor.BLACK, new ImagePattern(loadCardImage("images/black.jpg")));
+			transportationCardPatterns.put(CardColor.BLUE, new ImagePattern(loadCardImage("images/blue.jpg")));
+			transportationCardPatterns.put(CardColor.GREEN, new ImagePattern(loadCardImage("images/green.jpg")));
+			transportationCardPatterns.put(CardColor.ORANGE, new ImagePattern(loadCardImage("images/orange.jpg")));
+			transportationCardPatterns.put(CardColor.PURPLE, new ImagePattern(loadCardImage("images/purple.jpg")));
+			transportationCardPatterns.put(CardColor.RED, new ImagePattern(loadCardImage("images/red.jpg")));
+			transportationCardPatterns.put(CardColor.WHITE, new ImagePattern(loadCardImage("images/white.jpg")));
+			transportationCardPatterns.put(CardColor.YELLOW, new ImagePattern(loadCardImage("images/yellow.jpg")));
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
 		
+		drawCardRects = Arrays.asList(
+				cardToDraw1,
+				cardToDraw2,
+				cardToDraw3,
+				cardToDraw4,
+				cardToDraw5);
+		
+		game.addListener((x, oldGame, newGame) -> {
+			//Stop listening to the old game's cards, otherwise every game that has ever been
+			//played would still be updating the side panel (and would never be garbage collected)
+			if(faceUpCards != null) {
+				faceUpCards.removeListener(faceUpCardsListener);
+			}
+			faceUpCards = newGame == null ? null : newGame.getFaceUpTransportationCards();
+			if(faceUpCards != null) {
+				faceUpCards.addListener(faceUpCardsListener);
+			}
+			requestFaceUpCardUpdate();
+		});
+	}
+	
+	/**
+	 * Asks for {@link #updateFaceUpCards()} to be called once everything that's changing right now has
+	 * finished changing, so that a turn that replaces several cards (or all of them) only updates the
+	 * side panel once.
+	 */
+	private void requestFaceUpCardUpdate() {
+		if(!faceUpCardUpdateRequested) {
+			faceUpCardUpdateRequested = true;
+			Platform.runLater(() -> {
+				faceUpCardUpdateRequested = false;
+				updateFaceUpCards();
+			});
+		}
+	}
+	
+	/**
+	 * Sets each of the {@link #drawCardRects} to show the current face up card in its position (or nothing
+	 * if there isn't one)
+	 */
+	private void updateFaceUpCards() {
+		for(int i = 0; i < drawCardRects.size(); i++) {
+			CardColor color = faceUpCards == null || i >= faceUpCards.size() ? null : faceUpCards.get(i);
+			Paint fill = color == null ? null : transportationCardPatterns.get(color);
+			Rectangle rect = drawCardRects.get(i);
+			//The patterns are shared, so an unchanged card is the same object and doesn't need to be set again
+			if(rect.getFill() != fill) {
+				rect.setFill(fill);
+			}
+		}
+	}
+	
+	/**
+	 * Loads a card image in the background, scaled down to {@link #CARD_IMAGE_WIDTH} by {@link #CARD_IMAGE_HEIGHT}.
+	 * The image patterns using it fill themselves in once it's loaded.
+	 * @param path path of the image relative to the resources directory
+	 * @return the image
+	 * @throws FileNotFoundException
+	 */
+	private static Image loadCardImage(String path) throws FileNotFoundException {
+		return ImageLoader.loadInBackground(path, CARD_IMAGE_WIDTH, CARD_IMAGE_HEIGHT);
 	}
 	
 	/**
@@ -219,68 +271,64 @@ public class TicketToRideController {
 	 */
 	@FXML
 	public void createNewGame() {
-		//TODO Allow the user to select a game definition file to load, then load the
-		//file.
-		
-		//For now, we'll just manually build a simple game definition so that we
-		//can test out the drawing code. Replace this hard coded definition with
-		//one loaded from the specified file.
-		Destination d1 = new Destination("Awesomeville", 0.5, 0.5);
-		Destination d2 = new Destination("Paradise City", 0.6, 0.7);
-		Destination d3 = new Destination("SuperdyDuperBurgh", 0.2, 0.8);
-		Destination d4 = new Destination("Justokayville", 0.3, 0.4);
-				
-		MapData hardCodedMapData = new MapData() {
-
-			@Override
-			public Collection<Destination> getDestinations() {
-				return Arrays.asList(d1, d2, d3, d4);
-			}
-
-			@Override
-			public Collection<Connection> getConnectionsToOrFromDest(Destination dest) {
-				return getConnections().stream().filter(c -> c.getStart().equals(dest) || c.getEnd().equals(dest))
-									.collect(Collectors.toList());
-			}
-
-			@Override
-			public Collection<Connection> getConnections() {
-				return Arrays.asList(new Connection(d1, d3, CardColor.BLACK, 3),
-						new Connection(d1, d2, CardColor.YELLOW, 1),
-						new Connection(d2, d3, CardColor.ORANGE, 2),
-						new Connection(d3, d4, CardColor.ANY, 3),
-						new Connection(d4, d3, CardColor.BLUE, 3),
-						new Connection(d4, d1, CardColor.GREEN, 3));
-			}
-			
-			@Override
-			public MapData clone() {
-				return this;	//For simplicity here, we're not actually going to clone it. It won't matter
-								//for this case, but needs to be implemented in the real version.
-			}
-			
-		};
-		GameDefinition hardCodedGameDefinition = new GameDefinition(new File("maps/usaMap.jpg"), 
-																	hardCodedMapData, 24);
+		//TODO Allow the user to select a game definition file to load. For now, we'll just
+		//load the default game definition.
+		GameDefinition gameDefinition;
+		try {
+			gameDefinition = GameDefinitionLoader.load(new File(DEFAULT_GAME_DEFINITION));
+		}
+		catch(IOException e) {
+			Alert alert = new Alert(AlertType.ERROR, "Unable to load " + DEFAULT_GAME_DEFINITION + ":\n" + e.getMessage());
+			alert.setHeaderText("Error loading game definition");
+			alert.showAndWait();
+			return;
+		}
 		
 		//Once your game definition is created, set the game property to a new GameState value initialized
 		//with the newly loaded game definition and collection of players. This will cause the map to be drawn
-		game.setValue(new GameState(Arrays.asList(new RandomAI(), new RandomAI()), hardCodedGameDefinition));
+		game.setValue(new GameState(Arrays.asList(new RandomAI(), new RandomAI()), gameDefinition));
 		
 	}
 	
 	/**
-	 * Paints the background image. This method probably isn't actually necessary. I may take it out
-	 * later.
+	 * Asks for {@link #paintMap()} to be called once everything that's changing right now has finished
+	 * changing. Calling this any number of times before then still only paints the map once.
+	 */
+	private void requestPaintMap() {
+		if(!mapPaintRequested) {
+			mapPaintRequested = true;
+			Platform.runLater(() -> {
+				mapPaintRequested = false;
+				paintMap();
+			});
+		}
+	}
+	
+	/**
+	 * Paints the background image, and then the map on top of it if the {@link #mapAnchorPane} is drawing
+	 * onto the canvas (see {@link MapPane.RenderMode#CANVAS}). Only the part of the background that can be
+	 * seen in the {@link #mapScrollPane} is drawn. Use {@link #requestPaintMap()} instead of calling this directly.
 	 */
 	private void paintMap() {
 		GraphicsContext gc = mapCanvas.getGraphicsContext2D();
 		
 		gc.clearRect(0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
 		
-		if(game.getValue() != null && game.getValue().getBackgroundImage() != null) {
-			gc.drawImage(game.getValue().getBackgroundImage(), 
-							0, 0, mapCanvas.getWidth(), mapCanvas.getHeight());
-		}
+		mapBackground.setFile(game.getValue() == null ? null :
+								game.getValue().gameDefinition().getBackground().getFile());
+		mapBackground.paint(gc, mapCanvas.getWidth(), mapCanvas.getHeight(), getVisibleMapBounds());
+		
+		mapAnchorPane.paintCanvas();
+	}
+	
+	/**
+	 * @return the part of the {@link #mapCanvas} that can be seen in the {@link #mapScrollPane}, in the canvas's
+	 * coordinates
+	 */
+	private Bounds getVisibleMapBounds() {
+		//The viewport's position is how far the content has been scrolled, so it's negative
+		Bounds viewport = mapScrollPane.getViewportBounds();
+		return mapCanvas.parentToLocal(new BoundingBox(-viewport.getMinX(), -viewport.getMinY(),
+														viewport.getWidth(), viewport.getHeight()));
 	}
 }
@@ -2,39 +2,276 @@ package tickettoride.utilities;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
 import javafx.scene.image.Image;
 
 /**
  * Provides some static utility methods for loading image resources
+ * </br></br>
+ * Images are cached, so loading the same file (at the same size) again doesn't decode it again. The cache
+ * is limited to about {@link #MAX_CACHE_BYTES} of decoded pixels, and the least recently used images are
+ * dropped once it's full. The cache only holds soft references too, so the garbage collector can take
+ * images back if memory gets tight (they're just loaded again the next time they're asked for). It's safe
+ * to use from any thread.
+ * </br></br>
+ * Images can be loaded at a smaller size than the file (which is much cheaper for big images that are
+ * only ever displayed small), and they can be decoded in the background so that the UI thread doesn't
+ * have to wait for them.
+ * </br></br>
+ * When running headless (see {@link #setHeadless(boolean)}) nothing is ever decoded and all of the load
+ * methods return null.
  * @author nate
  *
  */
 public class ImageLoader {
 
+	/** Approximate limit on the size of all of the decoded images in the cache (4 bytes per pixel) */
+	public static final long MAX_CACHE_BYTES = 64L << 20;
+
+	/** Set this system property to true to start out headless */
+	public static final String HEADLESS_PROPERTY = "tickettoride.headless";
+
+	/** Cached images, in least recently used order */
+	private static final Map<Key, CacheEntry> cache = new LinkedHashMap<>(16, 0.75f, true);
+	/** Total size of the images in the {@link #cache} */
+	private static long cachedBytes = 0;
+
+	private static volatile boolean headless = Boolean.getBoolean(HEADLESS_PROPERTY);
+
+	/**
+	 * @param headless true if images should never be decoded (because nothing is going to display them)
+	 */
+	public static void setHeadless(boolean headless) {
+		ImageLoader.headless = headless;
+	}
+
+	/**
+	 * @return {@link #headless}
+	 */
+	public static boolean isHeadless() {
+		return headless;
+	}
+
 	/**
 	 * Loads an image based on the path relative to the resources directory, or as
 	 * an absolute location if an absolute path is specified
 	 * @param path relative path to image file relative to resources directory, or
 	 * and absolute path
-	 * @return Image
-	 * @throws FileNotFoundException 
+	 * @return Image, or null if running headless
+	 * @throws FileNotFoundException
 	 */
 	public static Image load(String path) throws FileNotFoundException {
 		return load(new File(path));
 	}
-	
+
 	/**
 	 * Loads an image based on the path relative to the resources directory, or and
 	 * absolute path if specified
 	 * @param file path relative path to image file relative to resources directory, or an
 	 * absolute file path
-	 * @return Image
-	 * @throws FileNotFoundException 
+	 * @return Image, or null if running headless
+	 * @throws FileNotFoundException
 	 */
 	public static Image load(File path) throws FileNotFoundException {
+		return load(path, 0, 0, false);
+	}
+
+	/**
+	 * Loads an image scaled down to fit in the requested size (keeping its aspect ratio). This is much
+	 * cheaper than loading the full size image for big images that are only ever displayed small.
+	 * @param path path relative to the resources directory, or an absolute path
+	 * @param requestedWidth width to fit the image in, or 0 to use the image's width
+	 * @param requestedHeight height to fit the image in, or 0 to use the image's height
+	 * @return Image, or null if running headless
+	 * @throws FileNotFoundException
+	 */
+	public static Image load(String path, double requestedWidth, double requestedHeight) throws FileNotFoundException {
+		return load(new File(path), requestedWidth, requestedHeight, false);
+	}
+
+	/**
+	 * Same as {@link #load(String, double, double)}, except that the image is decoded on a background thread.
+	 * The image is returned straight away, and it's empty until it finishes loading (see
+	 * {@link Image#progressProperty()} and {@link #whenLoaded(Image, Consumer)}). Things that display
+	 * images, such as image views and image patterns, update themselves once it's loaded.
+	 * @param path path relative to the resources directory, or an absolute path
+	 * @param requestedWidth width to fit the image in, or 0 to use the image's width
+	 * @param requestedHeight height to fit the image in, or 0 to use the image's height
+	 * @return Image, or null if running headless
+	 * @throws FileNotFoundException
+	 */
+	public static Image loadInBackground(String path, double requestedWidth, double requestedHeight) throws FileNotFoundException {
+		return loadInBackground(new File(path), requestedWidth, requestedHeight);
+	}
+
+	/**
+	 * See {@link #loadInBackground(String, double, double)}
+	 */
+	public static Image loadInBackground(File path, double requestedWidth, double requestedHeight) throws FileNotFoundException {
+		return load(path, requestedWidth, requestedHeight, true);
+	}
+
+	/**
+	 * Calls the action with the image once it has finished loading (right away if it already has). If the
+	 * image is being loaded in the background, the action is called on the JavaFX application thread.
+	 * @param image image, which may be null (in which case nothing happens)
+	 * @param action what to do with the image
+	 */
+	public static void whenLoaded(Image image, Consumer<Image> action) {
+		if(image == null) {
+			return;
+		}
+		if(image.getProgress() >= 1) {
+			action.accept(image);
+			return;
+		}
+		image.progressProperty().addListener((progress, before, after) -> {
+			if(after.doubleValue() >= 1) {
+				action.accept(image);
+			}
+		});
+	}
+
+	private static Image load(File path, double requestedWidth, double requestedHeight, boolean background) throws FileNotFoundException {
 		if(!path.isAbsolute()) {
 			path = new File("resources/" + path.getPath());
 		}
-		return new Image(path.toURI().toString());
+		if(!path.isFile()) {
+			throw new FileNotFoundException(path.getPath());
+		}
+		if(headless) {
+			return null;
+		}
+
+		Key key = new Key(path.getAbsoluteFile(), requestedWidth, requestedHeight);
+		synchronized(cache) {
+			CacheEntry entry = cache.get(key);
+			Image image = entry == null ? null : entry.image.get();
+			if(image != null) {
+				return image;
+			}
+			if(entry != null) {
+				//The garbage collector took it
+				remove(key);
+			}
+		}
+
+		//Decoded outside of the lock so that other images can be loaded at the same time. If two threads
+		//load the same image at once, it's decoded twice but only the first one is kept.
+		Image image = new Image(path.toURI().toString(), requestedWidth, requestedHeight, true, true, background);
+
+		synchronized(cache) {
+			CacheEntry entry = cache.get(key);
+			Image existing = entry == null ? null : entry.image.get();
+			if(existing != null) {
+				return existing;
+			}
+			if(entry != null) {
+				remove(key);
+			}
+			long bytes = estimateBytes(image, path, requestedWidth, requestedHeight);
+			cache.put(key, new CacheEntry(image, bytes));
+			cachedBytes += bytes;
+			evict();
+		}
+		return image;
+	}
+
+	/**
+	 * @return the number of bytes that the decoded image takes up (or will once it finishes loading)
+	 */
+	private static long estimateBytes(Image image, File path, double requestedWidth, double requestedHeight) {
+		if(image.getProgress() >= 1 && image.getWidth() > 0) {
+			return (long)(image.getWidth() * image.getHeight()) * 4;
+		}
+		if(requestedWidth > 0 && requestedHeight > 0) {
+			return (long)(requestedWidth * requestedHeight) * 4;
+		}
+		//Still loading, so this is a guess from the file size (JPEGs are usually about a tenth of their decoded size)
+		return path.length() * 10;
+	}
+
+	/**
+	 * Drops least recently used images until the cache fits in {@link #MAX_CACHE_BYTES} (but always keeps the
+	 * one that was just added). Has to be called with the {@link #cache} locked.
+	 */
+	private static void evict() {
+		Iterator<CacheEntry> entries = cache.values().iterator();
+		while(cachedBytes > MAX_CACHE_BYTES && cache.size() > 1 && entries.hasNext()) {
+			cachedBytes -= entries.next().bytes;
+			entries.remove();
+		}
+	}
+
+	private static void remove(Key key) {
+		CacheEntry removed = cache.remove(key);
+		if(removed != null) {
+			cachedBytes -= removed.bytes;
+		}
+	}
+
+	/**
+	 * Empties the cache
+	 */
+	public static void clearCache() {
+		synchronized(cache) {
+			cache.clear();
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * @return number of images in the cache (including any that the garbage collector has taken but that
+	 * haven't been noticed yet)
+	 */
+	public static int getCacheSize() {
+		synchronized(cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * File and requested size of a cached image
+	 */
+	private static final class Key {
+		private final File file;
+		private final double requestedWidth;
+		private final double requestedHeight;
+
+		private Key(File file, double requestedWidth, double requestedHeight) {
+			this.file = file;
+			this.requestedWidth = requestedWidth;
+			this.requestedHeight = requestedHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(file, requestedWidth, requestedHeight);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)o;
+			return file.equals(other.file) && requestedWidth == other.requestedWidth && requestedHeight == other.requestedHeight;
+		}
+	}
+
+	private static final class CacheEntry {
+		private final SoftReference<Image> image;
+		private final long bytes;
+
+		private CacheEntry(Image image, long bytes) {
+			this.image = new SoftReference<>(image);
+			this.bytes = bytes;
+		}
 	}
 }
@@ -0,0 +1,60 @@
+package tickettoride.utilities;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import javafx.scene.image.Image;
+
+/**
+ * Handle to an image file that isn't loaded until the first time something asks for it, and is then
+ * kept for anything else that asks (so everything sharing the handle shares the one image). Nothing is
+ * loaded while {@link ImageLoader#isHeadless() running headless}.
+ * @author nate
+ *
+ */
+public class LazyImage {
+
+	/** File to load the image from (see {@link ImageLoader#load(File)}) */
+	private final File file;
+	private volatile Image image;
+
+	/**
+	 * @param file {@link #file}. May be null if there isn't an image.
+	 */
+	public LazyImage(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return {@link #file}
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the image has already been loaded
+	 */
+	public boolean isLoaded() {
+		return image != null;
+	}
+
+	/**
+	 * Loads the image the first time it's called and returns the same image after that
+	 * @return the image, or null if there is no file or if running headless
+	 * @throws FileNotFoundException if the file doesn't exist
+	 */
+	public Image get() throws FileNotFoundException {
+		Image result = image;
+		if(result == null && file != null) {
+			synchronized(this) {
+				result = image;
+				if(result == null) {
+					//Headless loads return null, so they aren't remembered and a UI can still load it later
+					result = image = ImageLoader.load(file);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,160 @@
+package tickettoride;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.LongestRouteCalculator;
+import tickettoride.model.MapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.TestMap;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class GameControllerTest {
+
+	@Test
+	public void testFinalRound() {
+		//Everybody is dealt red cards, so each player builds one red connection on their second turn
+		GameDefinition definition = createDefinition(5, Map.of(CardColor.RED, 100));
+		Map<String, Player> players = createPlayers(new Builder(), new Builder());
+		GameState gameState = new GameState(players.values(), definition, 11);
+		GameController controller = new GameController(gameState, players);
+		controller.runGame();
+
+		//2 destination card turns, then the first player's build leaves them with 2 trains, so the
+		//second player gets one more turn and so does the first player
+		assertEquals(5, controller.getNumTurns());
+		IndexedMapData map = gameState.getIndexedMap();
+		assertSame(gameState.getPlayer(0), map.getOwner(0));
+		assertSame(gameState.getPlayer(1), map.getOwner(2));
+		assertEquals(2, gameState.getNumTrainsRemaining(0));
+		assertEquals(2, gameState.getNumTrainsRemaining(1));
+
+		//The destination cards are worth nothing, so both players have 4 points for their connection plus the
+		//longest route bonus. Ties go to whoever went first.
+		assertEquals(List.of(14, 14), List.copyOf(controller.getScores().values()));
+		assertSame(gameState.getPlayer(0), controller.getWinner());
+	}
+
+	@Test
+	public void testStuckGameEnds() {
+		GameDefinition definition = createDefinition(5, Map.of(CardColor.RED, 100));
+		Map<String, Player> players = createPlayers(new Passive(), new Passive());
+		GameController controller = new GameController(new GameState(players.values(), definition, 11), players);
+		assertNull(controller.getWinner());
+		controller.runGame();
+
+		//The first round doesn't count, and then nobody does anything for a whole round
+		assertEquals(4, controller.getNumTurns());
+		assertEquals(List.of(0, 0), List.copyOf(controller.getScores().values()));
+	}
+
+	@Test
+	public void testTurnLimit() {
+		//Nothing is green, so nothing can ever be built, but there are enough cards to keep drawing forever
+		GameDefinition definition = createDefinition(5, Map.of(CardColor.GREEN, 5000));
+		Map<String, Player> players = createPlayers(new Builder(), new Builder());
+		GameController controller = new GameController(new GameState(players.values(), definition, 11), players);
+		controller.runGame();
+
+		assertEquals(GameController.MAX_TURNS, controller.getNumTurns());
+	}
+
+	@Test
+	public void testCalculateScores() {
+		Player first = new RandomAI(1);
+		Player second = new RandomAI(2);
+		DestinationCard ac = new DestinationCard(A, C, 5);
+		DestinationCard bd = new DestinationCard(B, D, 3);
+		DestinationCard cd = new DestinationCard(C, D, 4);
+		GameState gameState = new GameState(List.of(first, second),
+				createDefinition(45, Map.of(CardColor.RED, 100), List.of(ac, bd, cd)), 11);
+		IndexedMapData map = gameState.getIndexedMap();
+		map.claim(0, first);
+		map.claim(1, first);
+		map.claim(2, second);
+		gameState.addDestinationCardsToPlayersHand(first, List.of(ac, bd));
+		gameState.addDestinationCardsToPlayersHand(second, List.of(cd));
+
+		int[] scores = GameController.calculateScores(gameState, new LongestRouteCalculator(map));
+		//First: 4 + 2 for the connections, +5 for A-C, -3 for B-D, and 10 for the longest route (5 trains)
+		//Second: 4 for building C-D and +4 for the C-D destination card
+		assertArrayEquals(new int[] {18, 8}, scores);
+	}
+
+	/**
+	 * @return definition on the little map, with 4 destination cards that are worth nothing
+	 */
+	private GameDefinition createDefinition(int numTrains, Map<CardColor, Integer> cardCounts) {
+		return createDefinition(numTrains, cardCounts,
+				List.of(new DestinationCard(A, B, 0), new DestinationCard(C, D, 0),
+						new DestinationCard(A, C, 0), new DestinationCard(B, D, 0)));
+	}
+
+	private GameDefinition createDefinition(int numTrains, Map<CardColor, Integer> cardCounts,
+											List<DestinationCard> destinationCards) {
+		//A-B and C-D are red and 3 long, B-C is blue and 2 long
+		IndexedMapData map = new TestMap(A, B, C, D)
+				.connect(A, B, CardColor.RED, 3)
+				.connect(B, C, CardColor.BLUE, 2)
+				.connect(C, D, CardColor.RED, 3)
+				.build();
+		return new GameDefinition(null, map, numTrains, cardCounts, destinationCards);
+	}
+
+	private static Map<String, Player> createPlayers(Player first, Player second) {
+		Map<String, Player> players = new LinkedHashMap<>();
+		players.put("First", first);
+		players.put("Second", second);
+		return players;
+	}
+
+	/**
+	 * Builds the first connection it can, otherwise keeps the first destination cards it's offered, otherwise
+	 * draws from the deck
+	 */
+	private static class Builder extends RandomAI {
+		private final MoveList moves = new MoveList(16);
+
+		@Override
+		public void executeMove(MapData mapData, Mover mover) {
+			GameMover gameMover = (GameMover)mover;
+			gameMover.generateLegalMoves(moves);
+			while(!moves.isEmpty()) {
+				gameMover.makeMove(chooseMove());
+				gameMover.generateLegalMoves(moves);
+			}
+		}
+
+		private int chooseMove() {
+			for(int type : new int[] {Move.TYPE_BUILD_CONNECTION, Move.TYPE_SELECT_DESTINATION_CARDS}) {
+				for(int i = 0; i < moves.size(); i++) {
+					if(Move.getType(moves.get(i)) == type) {
+						return moves.get(i);
+					}
+				}
+			}
+			int deck = Move.drawTransportationCard(GameState.NUM_FACE_UP_CARDS);
+			return moves.contains(deck) ? deck : moves.get(0);
+		}
+	}
+
+	/**
+	 * Never does anything
+	 */
+	private static class Passive extends RandomAI {
+		@Override
+		public void executeMove(MapData mapData, Mover mover) {
+		}
+	}
+}
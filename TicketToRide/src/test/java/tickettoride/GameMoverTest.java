@@ -0,0 +1,308 @@
+package tickettoride;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+/**
+ * Tests for the rules in {@link GameMover}, through both the {@link Mover} methods and the move generator.
+ */
+class GameMoverTest {
+
+	private final Player player1 = new RandomAI();
+	private final Player player2 = new RandomAI();
+	private GameState gameState;
+	private final MoveList moves = new MoveList(4);
+
+	@BeforeEach
+	public void setup() throws IOException {
+		gameState = new GameState(List.of(player1, player2),
+				GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json")), 99);
+	}
+
+	@Test
+	public void testFirstTurnOnlyDrawsDestinationCards() {
+		GameMover mover = new GameMover(gameState, player1, true);
+		mover.generateLegalMoves(moves);
+		assertEquals(1, moves.size());
+		assertEquals(Move.drawDestinationCards(), moves.get(0));
+
+		mover.makeMove(moves.get(0));
+		mover.generateLegalMoves(moves);
+		//3 options, at least 2 must be kept
+		assertEquals(4, moves.size());
+		assertFalse(moves.contains(Move.selectDestinationCards(0b001)));
+		assertTrue(moves.contains(Move.selectDestinationCards(0b111)));
+
+		mover.makeMove(Move.selectDestinationCards(0b011));
+		assertThat(gameState.getPlayersDestinationCards(player1), hasSize(2));
+		mover.generateLegalMoves(moves);
+		assertTrue(moves.isEmpty(), "Nothing can be done once the turn is over");
+	}
+
+	@Test
+	public void testGeneratedBuildsMatchCanBuildConnection() {
+		SplittableRandom random = new SplittableRandom(5);
+		IndexedMapData map = gameState.getIndexedMap();
+		for(int i = 0; i < 30; i++) {
+			gameState.addTransportationCardToPlayersHand(0, CardColor.values()[random.nextInt(CardColor.values().length)]);
+		}
+		//Claim a few connections so that some of the parallel connection rules come into play
+		for(int i = 0; i < 15; i++) {
+			map.claim(random.nextInt(map.getNumConnections()), i % 2 == 0 ? player1 : player2);
+		}
+
+		GameMover mover = new GameMover(gameState, player1, false);
+		mover.generateLegalMoves(moves);
+
+		//Try every possible way of paying for every connection through the Mover interface
+		int numBuilds = 0;
+		for(int conn = 0; conn < map.getNumConnections(); conn++) {
+			int length = map.getConnectionLength(conn);
+			for(CardColor color : CardColor.values()) {
+				for(int wilds = 0; wilds <= length; wilds++) {
+					if((color == CardColor.ANY) != (wilds == length)) {
+						continue;
+					}
+					List<CardColor> cards = new ArrayList<>(Collections.nCopies(length - wilds, color));
+					cards.addAll(Collections.nCopies(wilds, CardColor.ANY));
+					boolean legal = mover.canBuildConnection(map.getConnection(conn), cards);
+					int move = Move.buildConnection(conn, color, wilds);
+					assertEquals(legal, moves.contains(move), Move.toString(move));
+					assertEquals(legal, mover.canMakeMove(move), Move.toString(move));
+					numBuilds += legal ? 1 : 0;
+				}
+			}
+		}
+		assertThat(numBuilds, greaterThan(0));
+
+		for(int cardNumber = 0; cardNumber <= GameState.NUM_FACE_UP_CARDS; cardNumber++) {
+			assertEquals(mover.canDrawTransportationCard(cardNumber),
+					moves.contains(Move.drawTransportationCard(cardNumber)));
+		}
+		assertTrue(moves.contains(Move.drawDestinationCards()));
+	}
+
+	@Test
+	public void testMakeBuildMove() {
+		IndexedMapData map = gameState.getIndexedMap();
+		int conn = 0;
+		int length = map.getConnectionLength(conn);
+		for(int i = 0; i < length; i++) {
+			gameState.addTransportationCardToPlayersHand(0, CardColor.ANY);
+		}
+		int wildsBefore = gameState.getNumTransportationCards(0, CardColor.ANY);
+
+		GameMover mover = new GameMover(gameState, player1, false);
+		mover.makeMove(Move.buildConnection(conn, CardColor.ANY, length));
+
+		assertSame(player1, map.getOwner(conn));
+		assertEquals(wildsBefore - length, gameState.getNumTransportationCards(0, CardColor.ANY));
+		assertTrue(mover.getTurnCompletedBinding().get());
+		assertThrows(Mover.IllegalMoveException.class, () -> mover.makeMove(Move.drawTransportationCard(5)));
+	}
+
+	@Test
+	public void testCanBuildConnection() {
+		IndexedMapData map = gameState.getIndexedMap();
+		//Find a pair of parallel connections that can be paid for with red cards
+		int conn = 0;
+		while(map.getNextParallelConnection(conn) == conn ||
+				(map.getConnectionColor(conn) != CardColor.RED && map.getConnectionColor(conn) != CardColor.ANY)) {
+			conn++;
+		}
+		Connection connection = map.getConnection(conn);
+		int length = map.getConnectionLength(conn);
+		for(int i = 0; i < length; i++) {
+			gameState.addTransportationCardToPlayersHand(0, CardColor.RED);
+			gameState.addTransportationCardToPlayersHand(0, CardColor.ANY);
+		}
+		List<CardColor> reds = Collections.nCopies(length, CardColor.RED);
+
+		GameMover mover = new GameMover(gameState, player1, false);
+		assertTrue(mover.canBuildConnection(connection, reds));
+		List<CardColor> withWild = new ArrayList<>(reds.subList(1, length));
+		withWild.add(CardColor.ANY);
+		assertTrue(mover.canBuildConnection(connection, withWild));
+
+		assertFalse(mover.canBuildConnection(connection, reds.subList(1, length)), "Too few cards");
+		assertFalse(mover.canBuildConnection(null, reds));
+		assertFalse(mover.canBuildConnection(connection, null));
+		List<CardColor> mixed = new ArrayList<>(reds.subList(1, length));
+		mixed.add(CardColor.BLUE);
+		assertFalse(mover.canBuildConnection(connection, mixed), "The cards have to be the same color");
+		assertFalse(mover.canBuildConnection(connection, Collections.nCopies(length, CardColor.YELLOW)),
+				"Player doesn't have any yellow cards");
+		assertFalse(new GameMover(gameState, player1, true).canBuildConnection(connection, reds),
+				"Nothing can be built on the first turn");
+
+		//In a two player game, once one of a pair of parallel connections is taken, the other one is closed
+		map.claim(map.getNextParallelConnection(conn), player2);
+		assertFalse(mover.canBuildConnection(connection, reds));
+		map.claim(map.getNextParallelConnection(conn), null);
+		map.claim(conn, player2);
+		assertFalse(mover.canBuildConnection(connection, reds), "Already claimed");
+	}
+
+	@Test
+	public void testCanDrawTransportationCard() {
+		GameMover firstTurn = new GameMover(gameState, player1, true);
+		assertFalse(firstTurn.canDrawTransportationCard(GameState.NUM_FACE_UP_CARDS),
+				"The first turn has to be destination cards");
+
+		GameMover mover = new GameMover(gameState, player1, false);
+		assertFalse(mover.canDrawTransportationCard(-1));
+		assertFalse(mover.canDrawTransportationCard(GameState.NUM_FACE_UP_CARDS + 1));
+		for(int cardNumber = 0; cardNumber <= GameState.NUM_FACE_UP_CARDS; cardNumber++) {
+			assertTrue(mover.canDrawTransportationCard(cardNumber));
+		}
+		mover.getDestinationCardsSelectionMove();
+		assertFalse(mover.canDrawTransportationCard(GameState.NUM_FACE_UP_CARDS),
+				"Can't draw transportation cards after drawing destination cards");
+	}
+
+	@Test
+	public void testCanSelectDestinationCards() {
+		Mover.DestinationCardSelectionMove firstTurn = new GameMover(gameState, player1, true).getDestinationCardsSelectionMove();
+		List<DestinationCard> options = new ArrayList<>(firstTurn.getDestinationCardOptions());
+		assertFalse(firstTurn.canSelectDestinationCards(Set.of(options.get(0))), "At least 2 have to be kept on the first turn");
+		assertTrue(firstTurn.canSelectDestinationCards(Set.of(options.get(0), options.get(1))));
+		assertFalse(firstTurn.canSelectDestinationCards(null));
+
+		Mover.DestinationCardSelectionMove selection = new GameMover(gameState, player2, false).getDestinationCardsSelectionMove();
+		DestinationCard other = selection.getDestinationCardOptions().iterator().next();
+		assertTrue(selection.canSelectDestinationCards(Set.of(other)));
+		assertFalse(selection.canSelectDestinationCards(Set.of()), "At least one has to be kept");
+		assertFalse(selection.canSelectDestinationCards(Set.of(options.get(0))), "Not one of the options");
+
+		selection.selectDestinationCards(Set.of(other));
+		assertFalse(selection.canSelectDestinationCards(Set.of(other)), "Already selected");
+	}
+
+	@Test
+	public void testDrawingTransportationCards() {
+		gameState.setFaceUpTransportationCard(0, CardColor.ANY);
+		gameState.setFaceUpTransportationCard(1, CardColor.RED);
+
+		//A face up wild is the whole turn
+		GameMover wildDraw = new GameMover(gameState, player1, false);
+		int wilds = gameState.getNumTransportationCards(0, CardColor.ANY);
+		assertEquals(CardColor.ANY, wildDraw.drawTransportationCard(0));
+		assertEquals(wilds + 1, gameState.getNumTransportationCards(0, CardColor.ANY));
+		assertTrue(wildDraw.getTurnCompletedBinding().get());
+
+		//Otherwise it's two cards, and the second one can't be a face up wild
+		gameState.setFaceUpTransportationCard(0, CardColor.ANY);
+		GameMover mover = new GameMover(gameState, player2, false);
+		int handSize = getHandSize(player2);
+		assertEquals(CardColor.RED, mover.drawTransportationCard(1));
+		assertFalse(mover.getTurnCompletedBinding().get());
+		gameState.setFaceUpTransportationCard(0, CardColor.ANY);
+		assertThrows(Mover.IllegalMoveException.class, () -> mover.drawTransportationCard(0));
+		mover.drawTransportationCard(GameState.NUM_FACE_UP_CARDS);
+		assertTrue(mover.getTurnCompletedBinding().get());
+		assertEquals(handSize + 2, getHandSize(player2));
+		assertThrows(Mover.IllegalMoveException.class, () -> mover.drawTransportationCard(GameState.NUM_FACE_UP_CARDS));
+	}
+
+	@Test
+	public void testSelectingDestinationCardsReturnsTheRest() {
+		int deckSize = gameState.getDestinationCardsDeckRemainingProperty().get();
+		GameMover mover = new GameMover(gameState, player1, false);
+		Mover.DestinationCardSelectionMove selection = mover.getDestinationCardsSelectionMove();
+		assertEquals(deckSize - 3, gameState.getDestinationCardsDeckRemainingProperty().get());
+		//Can't start anything else once destination cards have been drawn
+		assertFalse(mover.canDrawTransportationCard(GameState.NUM_FACE_UP_CARDS));
+
+		DestinationCard kept = selection.getDestinationCardOptions().iterator().next();
+		selection.selectDestinationCards(Set.of(kept));
+		assertEquals(Set.of(kept), gameState.getPlayersDestinationCards(player1));
+		assertEquals(deckSize - 1, gameState.getDestinationCardsDeckRemainingProperty().get());
+		assertTrue(mover.getTurnCompletedBinding().get());
+	}
+
+	@Test
+	public void testSelectingDestinationCardsByMask() {
+		int deckSize = gameState.getDestinationCardsDeckRemainingProperty().get();
+		GameMover mover = new GameMover(gameState, player1, true);
+		List<DestinationCard> options = new ArrayList<>(mover.getDestinationCardsSelectionMove().getDestinationCardOptions());
+
+		//At least 2 on the first turn, and only bits for the cards that were drawn
+		assertFalse(mover.canMakeMove(Move.selectDestinationCards(0b001)));
+		assertFalse(mover.canMakeMove(Move.selectDestinationCards(0b1011)));
+		assertTrue(mover.canMakeMove(Move.selectDestinationCards(0b101)));
+
+		mover.makeMove(Move.selectDestinationCards(0b101));
+		assertEquals(Set.of(options.get(0), options.get(2)), gameState.getPlayersDestinationCards(player1));
+		assertEquals(deckSize - 2, gameState.getDestinationCardsDeckRemainingProperty().get());
+		assertFalse(mover.canMakeMove(Move.selectDestinationCards(0b101)), "The turn is over");
+	}
+
+	@Test
+	public void testBuildingUsesTrainsAndCards() {
+		IndexedMapData map = gameState.getIndexedMap();
+		int conn = 0;
+		int length = map.getConnectionLength(conn);
+		CardColor color = map.getConnectionColor(conn) == CardColor.ANY ? CardColor.RED : map.getConnectionColor(conn);
+		for(int i = 0; i < length; i++) {
+			gameState.addTransportationCardToPlayersHand(0, color);
+		}
+		gameState.addTransportationCardToPlayersHand(0, CardColor.ANY);
+		int colorBefore = gameState.getNumTransportationCards(0, color);
+		int wildsBefore = gameState.getNumTransportationCards(0, CardColor.ANY);
+		int trainsBefore = gameState.getNumTrainsRemaining(0);
+
+		List<CardColor> cards = new ArrayList<>(Collections.nCopies(length - 1, color));
+		cards.add(CardColor.ANY);
+		new GameMover(gameState, player1, false).buildConnection(map.getConnection(conn), cards);
+
+		assertSame(player1, map.getOwner(conn));
+		assertEquals(trainsBefore - length, gameState.getNumTrainsRemaining(0));
+		assertEquals(colorBefore - (length - 1), gameState.getNumTransportationCards(0, color));
+		assertEquals(wildsBefore - 1, gameState.getNumTransportationCards(0, CardColor.ANY));
+	}
+
+	@Test
+	public void testEncoding() {
+		int move = Move.buildConnection(Move.MAX_CONNECTION_INDEX, CardColor.PURPLE, 6);
+		assertEquals(Move.TYPE_BUILD_CONNECTION, Move.getType(move));
+		assertEquals(Move.MAX_CONNECTION_INDEX, Move.getConnectionIndex(move));
+		assertEquals(CardColor.PURPLE, Move.getColor(move));
+		assertEquals(6, Move.getNumWilds(move));
+
+		//The longest connection a definition can have, paid for entirely with wilds
+		move = Move.buildConnection(GameDefinitionLoader.MAX_CONNECTIONS - 1, CardColor.ANY, GameDefinitionLoader.MAX_CONNECTION_LENGTH);
+		assertEquals(GameDefinitionLoader.MAX_CONNECTIONS - 1, Move.getConnectionIndex(move));
+		assertEquals(CardColor.ANY, Move.getColor(move));
+		assertEquals(GameDefinitionLoader.MAX_CONNECTION_LENGTH, Move.getNumWilds(move));
+		assertThrows(IllegalArgumentException.class, () -> Move.buildConnection(0, CardColor.RED, Move.MAX_WILDS + 1));
+		assertThrows(IllegalArgumentException.class, () -> Move.buildConnection(Move.MAX_CONNECTION_INDEX + 1, CardColor.RED, 0));
+
+		assertEquals(3, Move.getCardNumber(Move.drawTransportationCard(3)));
+		assertEquals(0b101, Move.getDestinationCardMask(Move.selectDestinationCards(0b101)));
+	}
+
+	private int getHandSize(Player player) {
+		return gameState.getPlayersTransportationCardsHand(player).values().stream().mapToInt(Integer::intValue).sum();
+	}
+}
@@ -0,0 +1,132 @@
+package tickettoride;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import tickettoride.MoveJournal.RecordedGame;
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.LongestRouteCalculator;
+import tickettoride.model.MapData;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class MoveJournalTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void testReplayMatchesRecordedGames() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		Simulator simulator = new Simulator(definition, List.of(() -> new RandomAI(1), () -> new RandomAI(2)), 99);
+		Path file = tempDir.resolve("games.journal");
+
+		List<int[]> scores = new ArrayList<>();
+		try(MoveJournal journal = new MoveJournal(file)) {
+			simulator.setMoveJournal(journal);
+			scores.add(play(simulator));
+			scores.add(play(simulator));
+		}
+		//Opening it again adds to the end
+		try(MoveJournal journal = new MoveJournal(file)) {
+			simulator.setMoveJournal(journal);
+			scores.add(play(simulator));
+		}
+
+		try(MoveJournal.Reader reader = new MoveJournal.Reader(file)) {
+			for(int[] expected : scores) {
+				RecordedGame game = reader.next();
+				assertNotNull(game);
+				assertEquals(2, game.getNumPlayers());
+				assertTrue(game.getNumMoves() > 0);
+
+				GameState replayed = game.replay(definition, List.of(new RandomAI(), new RandomAI()));
+				assertArrayEquals(expected,
+						GameController.calculateScores(replayed, new LongestRouteCalculator(replayed.getIndexedMap())));
+			}
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void testGameAddedAfterUnfinishedGame() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		Simulator simulator = new Simulator(definition, List.of(() -> new RandomAI(1), () -> new RandomAI(2)), 7);
+		Path file = tempDir.resolve("games.journal");
+
+		//Stopped part way through the first turn, without ever ending the game
+		try(MoveJournal journal = new MoveJournal(file)) {
+			journal.startGame(1234, 2);
+			journal.recordMove(Move.drawDestinationCards());
+		}
+		int[] expected;
+		try(MoveJournal journal = new MoveJournal(file)) {
+			simulator.setMoveJournal(journal);
+			expected = play(simulator);
+		}
+
+		try(MoveJournal.Reader reader = new MoveJournal.Reader(file)) {
+			RecordedGame unfinished = reader.next();
+			assertEquals(1234, unfinished.getSeed());
+			assertEquals(1, unfinished.getNumMoves());
+
+			GameState replayed = reader.next().replay(definition, List.of(new RandomAI(), new RandomAI()));
+			assertArrayEquals(expected,
+					GameController.calculateScores(replayed, new LongestRouteCalculator(replayed.getIndexedMap())));
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void testGameIsEndedWhenAPlayerFails() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		Path file = tempDir.resolve("games.journal");
+		Map<String, Player> players = new LinkedHashMap<>();
+		players.put("A", new RandomAI(1));
+		players.put("B", new RandomAI(2) {
+			@Override
+			public void executeMove(MapData map, Mover mover) {
+				throw new IllegalStateException("Broken player");
+			}
+		});
+
+		try(MoveJournal journal = new MoveJournal(file)) {
+			GameController controller = new GameController(new GameState(players.values(), definition, 3), players);
+			controller.setMoveJournal(journal);
+			assertThrows(IllegalStateException.class, controller::runGame);
+			journal.startGame(4, 2);
+		}
+
+		try(MoveJournal.Reader reader = new MoveJournal.Reader(file)) {
+			assertEquals(3, reader.next().getSeed());
+			assertEquals(4, reader.next().getSeed());
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void testRejectsOtherFiles() throws IOException {
+		Path file = tempDir.resolve("notAJournal");
+		Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+		assertThrows(IOException.class, () -> new MoveJournal.Reader(file));
+		assertThrows(IOException.class, () -> new MoveJournal(file));
+	}
+
+	private static int[] play(Simulator simulator) {
+		GameController controller = simulator.playGame();
+		return controller.getScores().values().stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,95 @@
+package tickettoride;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tickettoride.Tournament.Standings;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class TournamentTest {
+
+	private ForkJoinPool pool;
+	private Tournament tournament;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		pool = new ForkJoinPool(2);
+		Map<String, Supplier<? extends Player>> entrants = new LinkedHashMap<>();
+		//Seeded so that the players make the same choices every time the tournament is played
+		entrants.put("A", () -> new RandomAI(1));
+		entrants.put("B", () -> new RandomAI(2));
+		entrants.put("C", () -> new RandomAI(3));
+		tournament = new Tournament(GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json")),
+				entrants, pool, 42);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testRoundRobin() {
+		Standings standings = tournament.playRoundRobin(10);
+
+		assertEquals(30, standings.getTotalGames());
+		int totalWins = 0;
+		for(String name : standings.getRankedNames()) {
+			assertEquals(20, standings.getGamesPlayed(name), "Each entrant plays both of the others 10 times");
+			totalWins += standings.getWins(name);
+		}
+		assertEquals(30, totalWins, "Every game has exactly one winner");
+		assertThat(standings.getRankedNames(), containsInAnyOrder("A", "B", "C"));
+	}
+
+	@Test
+	public void testSwissGivesEachEntrantOneBye() {
+		Standings standings = tournament.playSwiss(3, 2);
+
+		//One pairing per round with 3 entrants
+		assertEquals(6, standings.getTotalGames());
+		for(String name : standings.getRankedNames()) {
+			assertEquals(4, standings.getGamesPlayed(name), "Each entrant should sit out exactly one round");
+		}
+	}
+
+	@Test
+	public void testSwissWithMoreRoundsThanEntrants() {
+		Standings standings = tournament.playSwiss(6, 2);
+
+		//Once everybody has had a bye, they go around again, so everybody gets exactly two
+		assertEquals(12, standings.getTotalGames());
+		for(String name : standings.getRankedNames()) {
+			assertEquals(8, standings.getGamesPlayed(name), "Each entrant should sit out exactly two rounds");
+		}
+	}
+
+	@Test
+	public void testSameSeedSameResults() throws IOException {
+		Standings first = tournament.playRoundRobin(10);
+		tearDown();
+		setup();
+		Standings second = tournament.playRoundRobin(10);
+		assertEquals(first.toString(), second.toString());
+	}
+
+	@Test
+	public void testUnknownEntrant() {
+		Standings standings = tournament.playRoundRobin(1);
+		assertThrows(IllegalArgumentException.class, () -> standings.getWinRate("D"));
+	}
+}
@@ -0,0 +1,132 @@
+package tickettoride.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+
+class GameDefinitionLoaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	private File copyDefaultDefinition() throws IOException {
+		Path copy = tempDir.resolve("default.json");
+		Files.copy(Path.of("resources/gameDefinitions/default.json"), copy);
+		return copy.toFile();
+	}
+
+	@Test
+	public void testLoadDefaultDefinition() throws IOException {
+		File json = copyDefaultDefinition();
+		GameDefinition definition = GameDefinitionLoader.load(json);
+
+		MapData map = definition.getInitialMapData();
+		assertThat(map.getDestinations(), hasSize(36));
+		assertThat(map.getConnections(), not(empty()));
+		assertEquals(24, definition.getInitialNumberOfTrainsPerPlayer());
+		assertEquals(14, definition.getNumberOfTransportationCards(CardColor.ANY));
+		assertEquals(12, definition.getNumberOfTransportationCards(CardColor.RED));
+		assertThat(definition.getDestinationCards(), hasSize(30));
+		assertEquals(tempDir.resolve("../maps/usaMap.jpg").toFile(), definition.getBackgroundImage(),
+				"Relative image paths should be resolved against the definition's directory");
+
+		for(DestinationCard card : definition.getDestinationCards()) {
+			assertThat(map.getDestinations(), hasItems(card.getStart(), card.getEnd()));
+		}
+	}
+
+	@Test
+	public void testSecondLoadUsesSnapshot() throws IOException {
+		File json = copyDefaultDefinition();
+		GameDefinition parsed = GameDefinitionLoader.load(json);
+		File cache = GameDefinitionLoader.getCacheFile(json);
+		assertTrue(cache.isFile(), "Loading should write a snapshot");
+
+		GameDefinition cached = GameDefinitionLoader.load(json);
+		assertEquals(describe(parsed), describe(cached));
+		assertEquals(parsed.getBackgroundImage(), cached.getBackgroundImage());
+		for(CardColor color : CardColor.values()) {
+			assertEquals(parsed.getNumberOfTransportationCards(color), cached.getNumberOfTransportationCards(color));
+		}
+	}
+
+	@Test
+	public void testCorruptSnapshotIgnored() throws IOException {
+		File json = copyDefaultDefinition();
+		GameDefinition parsed = GameDefinitionLoader.load(json);
+		Files.write(GameDefinitionLoader.getCacheFile(json).toPath(), new byte[] { 1, 2, 3 });
+
+		assertEquals(describe(parsed), describe(GameDefinitionLoader.load(json)));
+	}
+
+	@Test
+	public void testLongConnectionSurvivesSnapshot() throws IOException {
+		//More segments than fit in a byte
+		Path json = tempDir.resolve("long.json");
+		Files.writeString(json, "{\"backgroundImage\":\"map.jpg\"," +
+				"\"map\":{\"destinations\":[{\"name\":\"A\",\"xFraction\":0.1,\"yFraction\":0.2}," +
+				"{\"name\":\"B\",\"xFraction\":0.8,\"yFraction\":0.9}]," +
+				"\"connections\":[{\"start\":\"A\",\"end\":\"B\",\"numSegments\":200,\"color\":\"red\"}]}," +
+				"\"gameRules\":{\"numTrainsPerPlayer\":300,\"cardInfo\":{\"transportationCardCounts\":{\"red\":5}}}}");
+
+		GameDefinitionLoader.load(json.toFile());
+		GameDefinition cached = GameDefinitionLoader.load(json.toFile());
+		assertEquals(200, cached.getInitialMapData().getConnections().iterator().next().getNumSegments());
+	}
+
+	@Test
+	public void testTooLongConnectionRejected() throws IOException {
+		Path json = tempDir.resolve("tooLong.json");
+		Files.writeString(json, "{\"backgroundImage\":\"map.jpg\"," +
+				"\"map\":{\"destinations\":[{\"name\":\"A\",\"xFraction\":0.1,\"yFraction\":0.2}," +
+				"{\"name\":\"B\",\"xFraction\":0.8,\"yFraction\":0.9}]," +
+				"\"connections\":[{\"start\":\"A\",\"end\":\"B\",\"numSegments\":" + (GameDefinitionLoader.MAX_CONNECTION_LENGTH + 1) +
+				",\"color\":\"red\"}]}," +
+				"\"gameRules\":{\"numTrainsPerPlayer\":300,\"cardInfo\":{\"transportationCardCounts\":{\"red\":5}}}}");
+
+		assertThrows(IOException.class, () -> GameDefinitionLoader.load(json.toFile()));
+	}
+
+	@Test
+	public void testUnknownDestinationRejected() throws IOException {
+		Path json = tempDir.resolve("bad.json");
+		Files.writeString(json, "{\"backgroundImage\":\"map.jpg\"," +
+				"\"map\":{\"destinations\":[{\"name\":\"A\",\"xFraction\":0.1,\"yFraction\":0.2}]," +
+				"\"connections\":[{\"start\":\"A\",\"end\":\"B\",\"numSegments\":1,\"color\":\"red\"}]}," +
+				"\"gameRules\":{\"numTrainsPerPlayer\":10,\"cardInfo\":{\"transportationCardCounts\":{\"red\":5}}}}");
+
+		IOException e = assertThrows(IOException.class, () -> GameDefinitionLoader.load(json.toFile()));
+		assertThat(e.getMessage(), containsString("\"B\""));
+	}
+
+	/**
+	 * @return string listing every destination, connection and destination card, in order
+	 */
+	private static List<String> describe(GameDefinition definition) {
+		List<String> description = new ArrayList<>();
+		MapData map = definition.getInitialMapData();
+		map.getDestinations().forEach(d -> description.add(d.getName() + " " + d.getXFraction() + " " + d.getYFraction()));
+		for(Connection conn : map.getConnections()) {
+			description.add(conn.getStart().getName() + "-" + conn.getEnd().getName() + " " +
+					conn.getColor() + " " + conn.getNumSegments());
+		}
+		for(DestinationCard card : definition.getDestinationCards()) {
+			description.add(card.getStart().getName() + "-" + card.getEnd().getName() + " " + card.getNumPoints());
+		}
+		return description;
+	}
+}
@@ -0,0 +1,226 @@
+package tickettoride.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableMap;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+import tickettoride.utilities.ImageLoader;
+
+class GameStateTest {
+
+	private final Player player1 = new RandomAI();
+	private final Player player2 = new RandomAI();
+
+	private GameDefinition definition;
+	private GameState gameState;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		gameState = new GameState(List.of(player1, player2), definition);
+	}
+
+	@Test
+	public void testInitialDeal() {
+		for(Player player : List.of(player1, player2)) {
+			int handSize = gameState.getPlayersTransportationCardsHand(player).values()
+					.stream().mapToInt(Integer::intValue).sum();
+			assertEquals(GameState.INITIAL_HAND_SIZE, handSize, "Each player should be dealt an initial hand");
+			assertEquals(definition.getInitialNumberOfTrainsPerPlayer(),
+					gameState.getNumTrainsRemaining().get(player).intValue());
+		}
+		assertThat(gameState.getFaceUpTransportationCards(), hasSize(GameState.NUM_FACE_UP_CARDS));
+		assertThat(gameState.getFaceUpTransportationCards(), not(hasItem(nullValue())));
+		assertEquals(definition.getDestinationCards().size(),
+				gameState.getDestinationCardsDeckRemainingProperty().get());
+	}
+
+	@Test
+	public void testHandViewReflectsAndReportsChanges() {
+		ObservableMap<CardColor, Integer> hand = gameState.getPlayersTransportationCardsHand(player1);
+		int initialRed = hand.get(CardColor.RED);
+		List<MapChangeListener.Change<? extends CardColor, ? extends Integer>> changes = new ArrayList<>();
+		hand.addListener((MapChangeListener<CardColor, Integer>) changes::add);
+
+		gameState.addTransportationCardToPlayersHand(player1, CardColor.RED);
+		assertEquals(initialRed + 1, hand.get(CardColor.RED).intValue());
+		assertEquals(initialRed + 1, gameState.getNumTransportationCards(0, CardColor.RED));
+		assertThat(changes, hasSize(1));
+		assertEquals(CardColor.RED, changes.get(0).getKey());
+		assertEquals(initialRed + 1, changes.get(0).getValueAdded().intValue());
+
+		gameState.removeTransportationCardsFromPlayersHand(player1, List.of(CardColor.RED));
+		assertEquals(initialRed, hand.get(CardColor.RED).intValue());
+		assertThat(changes, hasSize(2));
+
+		assertThrows(UnsupportedOperationException.class, () -> hand.put(CardColor.RED, 100),
+				"Hand view should not be modifiable");
+	}
+
+	@Test
+	public void testDestinationCardsGoToBottomOfDeck() {
+		Collection<DestinationCard> drawn = gameState.drawDestinationCards();
+		int total = definition.getDestinationCards().size();
+		assertThat(drawn, hasSize(GameState.DESTINATION_CARDS_PER_DRAW));
+		assertEquals(total - drawn.size(), gameState.getDestinationCardsDeckRemainingProperty().get());
+
+		DestinationCard kept = drawn.iterator().next();
+		List<DestinationCard> returned = new ArrayList<>(drawn);
+		returned.remove(kept);
+		gameState.addDestinationCardsToPlayersHand(player1, List.of(kept));
+		gameState.placeDestinationCardsAtBottomOfDeck(returned);
+
+		assertThat(gameState.getPlayersDestinationCards(player1), contains(kept));
+		assertThat(gameState.getPlayersDestinationCards(player2), empty());
+		assertEquals(total - 1, gameState.getDestinationCardsDeckRemainingProperty().get());
+
+		//Draw everything that is left. The returned cards should come out last.
+		List<DestinationCard> rest = new ArrayList<>();
+		while(gameState.getDestinationCardsDeckRemainingProperty().get() > 0) {
+			rest.addAll(gameState.drawDestinationCards());
+		}
+		assertEquals(returned, rest.subList(rest.size() - returned.size(), rest.size()));
+	}
+
+	@Test
+	public void testSameSeedDealsSameCards() {
+		GameState first = new GameState(List.of(player1, player2), definition, 1234);
+		GameState second = new GameState(List.of(player1, player2), definition, 1234);
+		assertEquals(1234, first.getSeed());
+
+		assertEquals(first.getFaceUpTransportationCards(), second.getFaceUpTransportationCards());
+		for(Player player : List.of(player1, player2)) {
+			assertEquals(first.getPlayersTransportationCardsHand(player), second.getPlayersTransportationCardsHand(player));
+		}
+		List<CardColor> firstDraws = new ArrayList<>();
+		List<CardColor> secondDraws = new ArrayList<>();
+		for(int i = 0; i < 20; i++) {
+			firstDraws.add(first.drawTransportationCard(GameState.NUM_FACE_UP_CARDS));
+			secondDraws.add(second.drawTransportationCard(GameState.NUM_FACE_UP_CARDS));
+		}
+		assertEquals(firstDraws, secondDraws);
+		assertEquals(first.drawDestinationCards(), second.drawDestinationCards());
+	}
+
+	@Test
+	public void testBackgroundImageIsNotLoadedHeadless() {
+		ImageLoader.setHeadless(true);
+		try {
+			GameState other = new GameState(List.of(player1, player2), definition);
+			assertNull(gameState.getBackgroundImage());
+			assertNull(new GameState(other, 1).getBackgroundImage());
+			//Every game shares the definition's handle, and nothing has been loaded into it
+			assertFalse(definition.getBackground().isLoaded());
+		}
+		finally {
+			ImageLoader.setHeadless(false);
+		}
+	}
+
+	@Test
+	public void testDiscardPileLargerThanDeck() {
+		//Cards added directly to a hand (rather than drawn) end up in the discard pile when they're used
+		for(int i = 0; i < 500; i++) {
+			gameState.addTransportationCardToPlayersHand(0, CardColor.RED);
+		}
+		gameState.removeTransportationCardsFromPlayersHand(0, CardColor.RED, 500);
+		for(int i = 0; i < 550; i++) {
+			assertNotNull(gameState.drawTransportationCard(GameState.NUM_FACE_UP_CARDS));
+		}
+	}
+
+	@Test
+	public void testClaimingConnectionUpdatesBitSets() {
+		Connection connection = gameState.getMap().getConnections().iterator().next();
+		int index = gameState.getConnectionIndex(connection);
+		assertFalse(gameState.isConnectionClaimed(index));
+
+		connection.claim(player2);
+		assertTrue(gameState.isConnectionClaimed(index));
+		assertTrue(gameState.isConnectionClaimedBy(index, 1));
+		assertFalse(gameState.isConnectionClaimedBy(index, 0));
+	}
+
+	@Test
+	public void testNetworksFollowClaims() {
+		IndexedMapData map = gameState.getIndexedMap();
+		//Find a path a - b - c made of two connections
+		int first = 0;
+		int a = map.getConnectionStart(first);
+		int b = map.getConnectionEnd(first);
+		int second = -1;
+		for(int k = 0; k < map.getNumConnectionsAt(b) && second < 0; k++) {
+			int conn = map.getConnectionAt(b, k);
+			if(map.getOtherEnd(conn, b) != a) {
+				second = conn;
+			}
+		}
+		int c = map.getOtherEnd(second, b);
+
+		map.claim(first, player1);
+		map.claim(second, player2);
+		assertTrue(gameState.areConnected(0, a, b));
+		assertFalse(gameState.areConnected(0, a, c), "Other players' connections don't count");
+
+		map.claim(second, player1);
+		assertTrue(gameState.areConnected(0, a, c));
+		assertFalse(gameState.areConnected(1, b, c));
+
+		map.claim(first, null);
+		assertFalse(gameState.areConnected(0, a, c), "Unclaiming should disconnect the destinations");
+		assertTrue(gameState.areConnected(0, b, c));
+	}
+
+	@Test
+	public void testRedealHiddenCards() {
+		gameState.addDestinationCardsToPlayersHand(player1, gameState.drawDestinationCards());
+		List<DestinationCard> player1Cards = new ArrayList<>(gameState.getPlayersDestinationCards(player1));
+		int[] player1Hand = new int[CardColor.values().length];
+		for(CardColor color : CardColor.values()) {
+			player1Hand[color.ordinal()] = gameState.getNumTransportationCards(0, color);
+		}
+
+		GameState copy = new GameState(gameState, 5);
+		copy.redealHiddenCards(0, new int[] {0, 9}, new int[] {0, 2});
+
+		//Player 1's point of view is unchanged, in the copy and the original
+		assertThat(copy.getPlayersDestinationCards(player1), containsInAnyOrder(player1Cards.toArray()));
+		assertThat(copy.getPlayersDestinationCards(player2), hasSize(2));
+		assertThat(copy.getPlayersDestinationCards(player2), everyItem(not(isIn(player1Cards))));
+		assertThat(gameState.getPlayersDestinationCards(player2), empty());
+		assertEquals(gameState.getFaceUpTransportationCards(), copy.getFaceUpTransportationCards());
+
+		//Every card is somewhere
+		int total = 0;
+		for(CardColor color : CardColor.values()) {
+			assertEquals(player1Hand[color.ordinal()], copy.getNumTransportationCards(0, color));
+			total += copy.getNumTransportationCards(0, color) + copy.getNumTransportationCards(1, color);
+		}
+		assertEquals(GameState.INITIAL_HAND_SIZE + 9, total);
+		total += GameState.NUM_FACE_UP_CARDS;
+		while(copy.drawTransportationCard(GameState.NUM_FACE_UP_CARDS) != null) {
+			total++;
+		}
+		int expected = 0;
+		for(CardColor color : CardColor.values()) {
+			expected += definition.getNumberOfTransportationCards(color);
+		}
+		assertEquals(expected, total);
+	}
+}
@@ -0,0 +1,112 @@
+package tickettoride.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.model.MapData.Destination;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class IndexedMapDataTest {
+
+	private final IndexedMapData map = new TestMap(A, B, C, D)
+			.connect(A, B, CardColor.RED, 2)
+			.connect(B, C, CardColor.BLUE, 3)
+			.connect(C, A, CardColor.ANY, 1)
+			.connect(C, B, CardColor.GREEN, 3)
+			.build();
+
+	//The map hands out its own connection objects
+	private final Connection ab = map.getConnection(0);
+	private final Connection bc1 = map.getConnection(1);
+	private final Connection ca = map.getConnection(2);
+	private final Connection cb2 = map.getConnection(3);
+
+	@Test
+	public void testConnectionsToOrFromDest() {
+		assertThat(map.getConnectionsToOrFromDest(A), containsInAnyOrder(ab, ca));
+		assertThat(map.getConnectionsToOrFromDest(B), containsInAnyOrder(ab, bc1, cb2));
+		assertThat(map.getConnectionsToOrFromDest(C), containsInAnyOrder(bc1, ca, cb2));
+		assertThat(map.getConnectionsToOrFromDest(D), empty());
+		assertThat(map.getConnectionsToOrFromDest(new Destination("Nowhere", 0, 0)), empty());
+
+		//Equal destinations should find the same connections
+		assertThat(map.getConnectionsToOrFromDest(new Destination("A", 0.1, 0.1)), containsInAnyOrder(ab, ca));
+
+		assertSame(map.getConnectionsToOrFromDest(B), map.getConnectionsToOrFromDest(B),
+				"Adjacency lists should be cached");
+		assertSame(map.getConnections(), map.getConnections(), "Connections should be cached");
+	}
+
+	@Test
+	public void testIndices() {
+		int indexC = map.getDestinationIndex(C);
+		assertEquals(2, indexC);
+		assertEquals(3, map.getNumConnectionsAt(indexC));
+		assertEquals(0, map.getNumConnectionsAt(map.getDestinationIndex(D)));
+
+		int indexCa = map.getConnectionIndex(ca);
+		assertEquals(map.getDestinationIndex(A), map.getOtherEnd(indexCa, indexC));
+		assertEquals(-1, map.getConnectionIndex(new Connection(A, B, CardColor.RED, 2)),
+				"Connection indices are by identity");
+	}
+
+	@Test
+	public void testParallelConnections() {
+		int bc1Index = map.getConnectionIndex(bc1);
+		int cb2Index = map.getConnectionIndex(cb2);
+		assertEquals(cb2Index, map.getNextParallelConnection(bc1Index));
+		assertEquals(bc1Index, map.getNextParallelConnection(cb2Index));
+
+		int abIndex = map.getConnectionIndex(ab);
+		assertEquals(abIndex, map.getNextParallelConnection(abIndex));
+	}
+
+	@Test
+	public void testConnectionToUnknownDestinationRejected() {
+		Connection bad = new Connection(A, new Destination("Elsewhere", 0, 0), CardColor.RED, 1);
+		assertThrows(IllegalArgumentException.class, () -> new IndexedMapData(List.of(A, B), List.of(bad)));
+	}
+
+	@Test
+	public void testCloneCopiesOwnership() {
+		RandomAI owner = new RandomAI();
+		ab.claim(owner);
+		IndexedMapData clone = map.clone();
+
+		assertSame(owner, clone.getConnection(0).getOwnerProperty().getValue());
+		assertNotSame(ab, clone.getConnection(0));
+		assertEquals(-1, clone.getConnectionIndex(ab), "Connections belong to a single map");
+		assertSame(map.getDestination(0), clone.getDestination(0), "Destinations should be shared");
+
+		clone.getConnection(1).claim(owner);
+		assertNull(bc1.getOwnerProperty().getValue(), "Claiming in the clone should not change the original");
+		assertNull(map.getOwner(1));
+	}
+
+	@Test
+	public void testClaimNotifiesListenerAndProperty() {
+		RandomAI owner = new RandomAI();
+		List<Integer> claimed = new ArrayList<>();
+		map.setClaimListener((index, newOwner) -> claimed.add(index));
+		List<Player> propertyValues = new ArrayList<>();
+		ca.getOwnerProperty().addListener((obs, oldOwner, newOwner) -> propertyValues.add(newOwner));
+
+		ca.claim(owner);
+		map.claim(3, owner);
+		map.claim(3, owner);	//Not a change
+
+		assertEquals(List.of(2, 3), claimed);
+		assertEquals(List.of(owner), propertyValues);
+		assertSame(owner, cb2.getOwnerProperty().getValue());
+	}
+}
@@ -0,0 +1,98 @@
+package tickettoride.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.MapData.CardColor;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class LongestRouteCalculatorTest {
+
+	/** A triangle a b c with a tail c d, plus e d off to the side */
+	private final IndexedMapData map = new TestMap(A, B, C, D, E)
+			.connect(A, B, CardColor.RED, 2)
+			.connect(B, C, CardColor.BLUE, 3)
+			.connect(C, A, CardColor.ANY, 1)
+			.connect(C, D, CardColor.GREEN, 4)
+			.connect(E, D, CardColor.GREEN, 5)
+			.build();
+
+	private final Player player = new RandomAI();
+	private final Player other = new RandomAI();
+
+	@Test
+	public void testSmallMap() {
+		LongestRouteCalculator calculator = new LongestRouteCalculator(map);
+		assertEquals(0, calculator.getLongestRoute(map, player));
+
+		map.claim(0, player);
+		map.claim(1, player);
+		assertEquals(5, calculator.getLongestRoute(map, player));
+
+		//Closing the triangle makes every destination even, so the whole triangle is the route
+		map.claim(2, player);
+		assertEquals(6, calculator.getLongestRoute(map, player));
+
+		//Start at d, go around the triangle and back to c
+		map.claim(3, player);
+		assertEquals(10, calculator.getLongestRoute(map, player));
+
+		map.claim(4, other);
+		assertEquals(10, calculator.getLongestRoute(map, player));
+		assertEquals(5, calculator.getLongestRoute(map, other));
+
+		map.claim(4, player);
+		assertEquals(15, calculator.getLongestRoute(map, player));
+		assertEquals(0, calculator.getLongestRoute(map, other));
+	}
+
+	@Test
+	public void testMatchesExhaustiveSearch() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		IndexedMapData usa = new GameState(List.of(player, other), definition, 1).getIndexedMap();
+		LongestRouteCalculator calculator = new LongestRouteCalculator(usa);
+		SplittableRandom random = new SplittableRandom(11);
+		long[] mask = new long[(usa.getNumConnections() + 63) / 64];
+		for(int trial = 0; trial < 200; trial++) {
+			Arrays.fill(mask, 0);
+			int numClaimed = 1 + random.nextInt(18);
+			for(int i = 0; i < numClaimed; i++) {
+				int conn = random.nextInt(usa.getNumConnections());
+				mask[conn / 64] |= 1L << conn;
+			}
+			int expected = 0;
+			for(int dest = 0; dest < usa.getNumDestinations(); dest++) {
+				expected = Math.max(expected, exhaustive(usa, mask, dest, new boolean[usa.getNumConnections()]));
+			}
+			assertEquals(expected, calculator.getLongestRoute(mask));
+			//Again, from the cache
+			assertEquals(expected, calculator.getLongestRoute(mask));
+		}
+	}
+
+	/**
+	 * Tries every trail starting at the destination
+	 */
+	private int exhaustive(IndexedMapData map, long[] mask, int dest, boolean[] used) {
+		int longest = 0;
+		for(int i = 0; i < map.getNumConnectionsAt(dest); i++) {
+			int conn = map.getConnectionAt(dest, i);
+			if((mask[conn / 64] & 1L << conn) != 0 && !used[conn]) {
+				used[conn] = true;
+				longest = Math.max(longest, map.getConnectionLength(conn) +
+						exhaustive(map, mask, map.getOtherEnd(conn, dest), used));
+				used[conn] = false;
+			}
+		}
+		return longest;
+	}
+}
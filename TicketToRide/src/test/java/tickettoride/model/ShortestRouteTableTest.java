@@ -0,0 +1,80 @@
+package tickettoride.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.MapData.CardColor;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class ShortestRouteTableTest {
+
+	private final IndexedMapData map = new TestMap(A, B, C, D)
+			.connect(A, B, CardColor.RED, 2)
+			.connect(B, C, CardColor.BLUE, 3)
+			.connect(C, A, CardColor.ANY, 6)
+			.connect(C, B, CardColor.GREEN, 3)
+			.build();
+
+	private final Player player = new RandomAI();
+	private final Player other = new RandomAI();
+
+	@Test
+	public void testSmallMap() {
+		ShortestRouteTable table = new ShortestRouteTable(map, player);
+		assertEquals(5, table.getDistance(0, 2));
+		assertEquals(5, table.getDistance(2, 0));
+		assertEquals(0, table.getDistance(1, 1));
+		assertEquals(ShortestRouteTable.UNREACHABLE, table.getDistance(0, 3));
+
+		//Blocking one of the parallel connections doesn't change anything
+		map.claim(1, other);
+		table.update(map);
+		assertEquals(5, table.getDistance(0, 2));
+
+		map.claim(3, other);
+		table.update(map);
+		assertEquals(6, table.getDistance(0, 2));
+		assertEquals(8, table.getDistance(1, 2));
+
+		map.claim(0, player);
+		table.update(map);
+		assertEquals(0, table.getDistance(0, 1));
+		assertEquals(6, table.getDistance(1, 2));
+	}
+
+	@Test
+	public void testIncrementalUpdatesMatchRebuilding() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		IndexedMapData usa = new GameState(List.of(player, other), definition, 3).getIndexedMap();
+		ShortestRouteTable table = new ShortestRouteTable(usa, player);
+		ShortestRouteTable copy = null;
+		SplittableRandom random = new SplittableRandom(3);
+		for(int i = 0; i < 60; i++) {
+			int conn = random.nextInt(usa.getNumConnections());
+			//Mostly claims, with the odd unclaim
+			usa.claim(conn, random.nextInt(5) == 0 ? null : random.nextBoolean() ? player : other);
+			table.update(usa);
+			if(i == 30) {
+				copy = new ShortestRouteTable(table);
+			}
+
+			ShortestRouteTable rebuilt = new ShortestRouteTable(usa, player);
+			for(int from = 0; from < usa.getNumDestinations(); from++) {
+				for(int to = 0; to < usa.getNumDestinations(); to++) {
+					assertEquals(rebuilt.getDistance(from, to), table.getDistance(from, to));
+				}
+			}
+		}
+		//The copy keeps working from where it was copied
+		copy.update(usa);
+		assertEquals(table.getDistance(0, usa.getNumDestinations() - 1), copy.getDistance(0, usa.getNumDestinations() - 1));
+	}
+}
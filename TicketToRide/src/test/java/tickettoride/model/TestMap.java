@@ -0,0 +1,56 @@
+package tickettoride.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.MapData.Connection;
+import tickettoride.model.MapData.Destination;
+
+/**
+ * Builds little maps for tests. The destinations are always the same ones ({@link #A} to {@link #F}), so each
+ * test only has to say which of them it uses and how they're connected:
+ * <pre>
+ * IndexedMapData map = new TestMap(A, B, C)
+ * 		.connect(A, B, CardColor.RED, 2)
+ * 		.connect(B, C, CardColor.BLUE, 3)
+ * 		.build();
+ * </pre>
+ * Connections get indices in the order they're added.
+ * @author nate
+ */
+public class TestMap {
+
+	public static final Destination A = new Destination("A", 0.1, 0.1);
+	public static final Destination B = new Destination("B", 0.5, 0.1);
+	public static final Destination C = new Destination("C", 0.5, 0.5);
+	public static final Destination D = new Destination("D", 0.9, 0.9);
+	public static final Destination E = new Destination("E", 0.9, 0.1);
+	public static final Destination F = new Destination("F", 0.9, 0.5);
+
+	private final List<Destination> destinations;
+	private final List<Connection> connections = new ArrayList<>();
+
+	/**
+	 * @param destinations destinations on the map, in index order (they don't all need connections)
+	 */
+	public TestMap(Destination... destinations) {
+		this.destinations = List.of(destinations);
+	}
+
+	/**
+	 * Adds a connection
+	 * @return this
+	 */
+	public TestMap connect(Destination start, Destination end, CardColor color, int numSegments) {
+		connections.add(new Connection(start, end, color, numSegments));
+		return this;
+	}
+
+	/**
+	 * @return a new map with the destinations and connections
+	 */
+	public IndexedMapData build() {
+		return new IndexedMapData(destinations, connections);
+	}
+}
@@ -0,0 +1,71 @@
+package tickettoride.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.players.Player;
+import tickettoride.players.RandomAI;
+
+class TicketCostEstimatorTest {
+
+	private final IndexedMapData map = new TestMap(A, B, C, D, E, F)
+			.connect(A, B, CardColor.RED, 2)
+			.connect(B, C, CardColor.BLUE, 3)
+			.connect(C, A, CardColor.ANY, 6)
+			.connect(B, E, CardColor.GREEN, 4)
+			.connect(E, F, CardColor.RED, 1)
+			.build();
+
+	private final DestinationCard ab = new DestinationCard(A, B, 2);
+	private final DestinationCard ac = new DestinationCard(A, C, 5);
+	private final DestinationCard ad = new DestinationCard(A, D, 9);
+	private final DestinationCard ef = new DestinationCard(E, F, 1);
+	private final GameDefinition definition = new GameDefinition(null, map, 45, Map.of(), List.of(ab, ac, ad, ef));
+
+	private final Player player = new RandomAI();
+	private final Player other = new RandomAI();
+
+	@Test
+	public void testEstimates() {
+		TicketCostEstimator estimator = new TicketCostEstimator(map, definition, player);
+		assertEquals(0, estimator.estimateCost(List.of()));
+		assertEquals(5, estimator.estimateCost(List.of(ac)));
+		//A to B is on the way from A to C
+		assertEquals(5, estimator.estimateCost(List.of(ab, ac)));
+		//Connecting A-B and E-F separately is cheaper than joining them up
+		assertEquals(3, estimator.estimateCost(List.of(ab, ef)));
+		assertEquals(TicketCostEstimator.UNREACHABLE, estimator.estimateCost(List.of(ab, ad)));
+		assertEquals(7, estimator.getPoints(estimator.getMask(List.of(ab, ac))));
+	}
+
+	@Test
+	public void testCacheFollowsOwnership() {
+		TicketCostEstimator estimator = new TicketCostEstimator(map, definition, player);
+		long mask = estimator.getMask(List.of(ab, ac));
+		assertEquals(5, estimator.estimateCost(mask));
+		assertEquals(5, estimator.estimateCost(mask));
+		assertEquals(1, estimator.getCacheSize());
+
+		map.claim(0, player);
+		estimator.update(map);
+		assertEquals(3, estimator.estimateCost(mask));
+		assertEquals(2, estimator.getCacheSize());
+
+		map.claim(1, other);
+		estimator.update(map);
+		assertEquals(6, estimator.estimateCost(mask));
+
+		//Back to the same owners as before, so the estimate is already cached
+		map.claim(1, null);
+		estimator.update(map);
+		assertEquals(3, estimator.estimateCost(mask));
+		assertEquals(3, estimator.getCacheSize());
+	}
+}
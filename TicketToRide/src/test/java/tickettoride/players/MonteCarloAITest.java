@@ -0,0 +1,93 @@
+package tickettoride.players;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static tickettoride.model.TestMap.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import tickettoride.GameController;
+import tickettoride.GameMover;
+import tickettoride.model.GameDefinition;
+import tickettoride.model.GameDefinition.DestinationCard;
+import tickettoride.model.GameDefinitionLoader;
+import tickettoride.model.GameState;
+import tickettoride.model.IndexedMapData;
+import tickettoride.model.MapData.CardColor;
+import tickettoride.model.TestMap;
+
+class MonteCarloAITest {
+
+	@Test
+	public void testBeatsRandomAI() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		//Limited by iterations rather than time so that the test doesn't depend on how fast the machine is
+		MonteCarloAI monteCarlo = new MonteCarloAI(60000, 2, 100, 7);
+		RandomAI random = new RandomAI(7);
+		Map<String, Player> players = new LinkedHashMap<>();
+		players.put("Monte Carlo", monteCarlo);
+		players.put("Random", random);
+
+		GameController controller = new GameController(new GameState(players.values(), definition, 7), players);
+		controller.runGame();
+
+		Map<Player, Integer> scores = controller.getScores();
+		assertThat(scores.get(monteCarlo), greaterThan(scores.get(random)));
+		assertThat(scores.get(monteCarlo), greaterThan(0));
+	}
+
+	@Test
+	public void testFirstTurnKeepsDestinationCards() throws IOException {
+		GameDefinition definition = GameDefinitionLoader.load(new File("resources/gameDefinitions/default.json"));
+		MonteCarloAI monteCarlo = new MonteCarloAI(60000, 1, 200, 7);
+		GameState gameState = new GameState(List.of(monteCarlo, new RandomAI(7)), definition, 7);
+
+		assertTrue(playFirstTurn(gameState, monteCarlo), "The first turn should be completed");
+		assertThat(gameState.getPlayersDestinationCards(monteCarlo), hasSize(greaterThanOrEqualTo(2)));
+	}
+
+	@Test
+	public void testKeepsDestinationCardsItCanComplete() {
+		//5 trains is enough for A-B and B-C, but not for C-D
+		IndexedMapData map = new TestMap(A, B, C, D)
+				.connect(A, B, CardColor.RED, 2)
+				.connect(B, C, CardColor.RED, 2)
+				.connect(C, D, CardColor.RED, 6)
+				.build();
+		DestinationCard ab = new DestinationCard(A, B, 2);
+		DestinationCard bc = new DestinationCard(B, C, 2);
+		DestinationCard cd = new DestinationCard(C, D, 10);
+		GameDefinition definition = new GameDefinition(null, map, 5, Map.of(CardColor.RED, 20), List.of(ab, bc, cd));
+		//Hardly any searching, so it's up to the cost estimate to leave out C-D
+		MonteCarloAI monteCarlo = new MonteCarloAI(60000, 1, 1, 7);
+		GameState gameState = new GameState(List.of(monteCarlo, new RandomAI(7)), definition, 7);
+
+		//All 3 cards are drawn, and at least 2 have to be kept on the first turn
+		assertTrue(playFirstTurn(gameState, monteCarlo), "The first turn should be completed");
+		assertEquals(Set.of(ab, bc), gameState.getPlayersDestinationCards(monteCarlo));
+	}
+
+	/**
+	 * Plays the player's first turn the same way that {@link GameController} does
+	 * @return true if the turn was completed
+	 */
+	private static boolean playFirstTurn(GameState gameState, Player player) {
+		player.initialize(gameState.gameDefinition(), gameState.getNumTrainsRemaining().size());
+		player.setTransportationCardsMapView(gameState.getPlayersTransportationCardsHand(player));
+		player.setDestinationCardsView(gameState.getPlayersDestinationCards(player));
+		player.setNumberOfTrainsRemainingView(gameState.getNumTrainsRemaining());
+		player.setFaceUpTransportationCardsView(gameState.getFaceUpTransportationCards());
+
+		GameMover mover = new GameMover(gameState, player, true);
+		player.executeMove(gameState.getMap(), mover);
+		return mover.getTurnCompletedBinding().get();
+	}
+}
@@ -0,0 +1,18 @@
+package tickettoride.ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MapBackgroundRendererTest {
+
+	@Test
+	public void testLevelSizes() {
+		assertEquals(MapBackgroundRenderer.MIN_LEVEL_SIZE, MapBackgroundRenderer.getLevelSize(100));
+		assertEquals(MapBackgroundRenderer.MIN_LEVEL_SIZE, MapBackgroundRenderer.getLevelSize(512));
+		assertEquals(1024, MapBackgroundRenderer.getLevelSize(513));
+		assertEquals(2048, MapBackgroundRenderer.getLevelSize(1920));
+		//Never bigger than the largest level, however big the canvas gets
+		assertEquals(MapBackgroundRenderer.MAX_LEVEL_SIZE, MapBackgroundRenderer.getLevelSize(100000));
+	}
+}
@@ -0,0 +1,48 @@
+package tickettoride.ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MapHitIndexTest {
+
+	@Test
+	public void testFind() {
+		MapHitIndex index = new MapHitIndex(8);
+		int a = index.addPoint(0.1, 0.1, 7);
+		int b = index.addPoint(0.9, 0.1, 7);
+		int ab = index.addSegment(0.1, 0.1, 0.9, 0.1, 5, 8);
+		int diagonal = index.addSegment(0.1, 0.1, 0.9, 0.9, 5, 8);
+
+		//On a 1000x500 map
+		assertEquals(a, index.find(103, 52, 1000, 500));
+		assertEquals(b, index.find(900, 50, 1000, 500));
+		assertEquals(ab, index.find(500, 53, 1000, 500));
+		assertEquals(MapHitIndex.NONE, index.find(500, 60, 1000, 500));
+		//Between the destination's circle and the start of the segment
+		assertEquals(MapHitIndex.NONE, index.find(107.5, 50, 1000, 500));
+
+		//The widths are in pixels, whatever the shape of the map
+		assertEquals(diagonal, index.find(500, 250, 1000, 500));
+		assertEquals(diagonal, index.find(500, 252, 1000, 500));
+		assertEquals(MapHitIndex.NONE, index.find(500, 260, 1000, 500));
+		assertEquals(MapHitIndex.NONE, index.find(0, 0, 0, 0));
+		assertEquals(4, index.size());
+	}
+
+	@Test
+	public void testParallelSegments() {
+		MapHitIndex index = new MapHitIndex(4);
+		//Two lanes of a horizontal connection, 10 pixels wide each, with the first one on top
+		int top = index.addSegment(0.2, 0.5, 0.8, 0.5, 5, 8, 5);
+		int bottom = index.addSegment(0.2, 0.5, 0.8, 0.5, 5, 8, -5);
+
+		assertEquals(top, index.find(50, 48, 100, 100));
+		assertEquals(bottom, index.find(50, 52, 100, 100));
+		assertEquals(bottom, index.find(50, 59, 100, 100));
+		assertEquals(MapHitIndex.NONE, index.find(50, 61, 100, 100));
+		//Going the other way flips which side is which
+		int reversed = index.addSegment(0.8, 0.2, 0.2, 0.2, 5, 8, 5);
+		assertEquals(reversed, index.find(50, 22, 100, 100));
+	}
+}
@@ -0,0 +1,29 @@
+package tickettoride.utilities;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.FileNotFoundException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ImageLoaderTest {
+
+	@AfterEach
+	public void tearDown() {
+		ImageLoader.setHeadless(false);
+		ImageLoader.clearCache();
+	}
+
+	@Test
+	public void testHeadless() throws FileNotFoundException {
+		ImageLoader.setHeadless(true);
+		assertNull(ImageLoader.load("images/wild.jpg"));
+		assertNull(ImageLoader.loadInBackground("images/red.jpg", 240, 150));
+		//Nothing was decoded, so nothing was cached either
+		assertEquals(0, ImageLoader.getCacheSize());
+
+		//Missing files are still reported
+		assertThrows(FileNotFoundException.class, () -> ImageLoader.load("images/notAnImage.jpg"));
+	}
+}